@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.AdmissionRejectedException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many handles of a {@link DBI} are open at once, so that under overload callers queue
+ * or are turned away instead of all piling onto the database. Set it with
+ * {@link DBI#setAdmissionControl(AdmissionControl)}.
+ * <p>
+ * The limit adapts to the time the statements of admitted handles take, in the manner of a
+ * gradient limiter: while that time stays near its long term average the limit grows, and as it
+ * rises above it, which happens when the database has more work than it can do at once, the limit
+ * shrinks in proportion. So the limit settles around the concurrency the database handles best,
+ * within the {@link Configuration#withLimits(int, int) bounds}. The time a handle is held without
+ * running statements, such as while its caller works on results, says nothing about the database,
+ * and is not taken into account. Statements add their time up without taking a lock, and the
+ * limit adapts to the average of what was added every few statements.
+ * <p>
+ * Threads over the limit wait in the order of their {@link Priority}, as set by
+ * {@link #setPriority(Priority)} or by {@link org.skife.jdbi.v2.sqlobject.AdmissionPriority} on a
+ * sql object. Once a thread has waited for the {@link Configuration#withQueueTimeout(long, TimeUnit)
+ * queue timeout}, or the queue is full, opening the handle fails with an
+ * {@link AdmissionRejectedException}.
+ */
+public class AdmissionControl
+{
+    public enum Priority
+    {
+        /** Admitted before anything else, such as requests a user is waiting on */
+        CRITICAL,
+        /** The default */
+        NORMAL,
+        /** Admitted when nothing else is waiting, such as batch jobs */
+        BACKGROUND
+    }
+
+    private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<Priority>();
+
+    // weights of the latest latency in the short and long term averages
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT  = 1.0 / 600;
+    private static final double SMOOTHING    = 0.2;
+    private static final double TOLERANCE    = 1.5;
+
+    // samples are added up without the lock, and adapt the limit at most this often
+    private static final int  ADAPT_EVERY          = 16;
+    private static final long ADAPT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Configuration configuration;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[]   turns = new Condition[Priority.values().length];
+    private final int[]         waiting = new int[Priority.values().length];
+    private final AtomicLong    rejected = new AtomicLong();
+    private final AtomicLong    sampled = new AtomicLong();
+    private final AtomicLong    sampledNanos = new AtomicLong();
+
+    private volatile long adapted = System.nanoTime();
+
+    private double limit;
+    private int    inFlight = 0;
+    private int    queued = 0;
+    private double shortLatency = 0;
+    private double longLatency = 0;
+
+    public AdmissionControl()
+    {
+        this(new Configuration());
+    }
+
+    public AdmissionControl(Configuration configuration)
+    {
+        this.configuration = configuration;
+        this.limit = Math.max(configuration.minLimit, Math.min(configuration.maxLimit, configuration.initialLimit));
+        for (int i = 0; i < turns.length; i++) {
+            turns[i] = lock.newCondition();
+        }
+    }
+
+    /**
+     * Set the priority of the handles the current thread opens.
+     *
+     * @return the previous priority, to restore afterwards
+     */
+    public static Priority setPriority(Priority priority)
+    {
+        final Priority previous = getPriority();
+        if (priority == null || priority == Priority.NORMAL) {
+            PRIORITY.remove();
+        }
+        else {
+            PRIORITY.set(priority);
+        }
+        return previous;
+    }
+
+    /**
+     * The priority of the handles the current thread opens.
+     */
+    public static Priority getPriority()
+    {
+        final Priority priority = PRIORITY.get();
+        return priority == null ? Priority.NORMAL : priority;
+    }
+
+    /**
+     * Wait for room for a handle of the current thread's priority.
+     *
+     * @throws AdmissionRejectedException if there is no room in time, or the queue is full
+     */
+    Permit acquire()
+    {
+        final int priority = getPriority().ordinal();
+        lock.lock();
+        try {
+            if (!mustWait(priority)) {
+                inFlight++;
+                return new Permit();
+            }
+            if (queued >= configuration.maxQueued) {
+                rejected.incrementAndGet();
+                throw new AdmissionRejectedException(String.format("%d handles are queued already", queued));
+            }
+
+            queued++;
+            waiting[priority]++;
+            try {
+                long remaining = configuration.queueTimeoutNanos;
+                while (mustWait(priority)) {
+                    if (remaining <= 0) {
+                        rejected.incrementAndGet();
+                        throw new AdmissionRejectedException(String.format("not admitted within %dms, with %d of %d handles open",
+                                                                           TimeUnit.NANOSECONDS.toMillis(configuration.queueTimeoutNanos),
+                                                                           inFlight, getLimit()));
+                    }
+                    remaining = turns[priority].awaitNanos(remaining);
+                }
+                inFlight++;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new AdmissionRejectedException("interrupted while waiting to be admitted");
+            }
+            finally {
+                queued--;
+                waiting[priority]--;
+                // pass on the turn if there is room left
+                signalNext();
+            }
+            return new Permit();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean mustWait(int priority)
+    {
+        if (inFlight >= getLimit()) {
+            return true;
+        }
+        for (int i = 0; i < priority; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void signalNext()
+    {
+        if (inFlight < getLimit()) {
+            for (int i = 0; i < waiting.length; i++) {
+                if (waiting[i] > 0) {
+                    turns[i].signal();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void release()
+    {
+        lock.lock();
+        try {
+            inFlight--;
+            signalNext();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long latencyNanos)
+    {
+        sampledNanos.addAndGet(latencyNanos);
+        final long count = sampled.incrementAndGet();
+        if (count < ADAPT_EVERY && System.nanoTime() - adapted < ADAPT_INTERVAL_NANOS) {
+            return;
+        }
+        // whoever holds the lock now is busy, the samples wait for the next statement instead
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            // a sample added meanwhile may land in this total and be counted in the next, which
+            // only shifts a little latency from one average to the next
+            final long samples = sampled.getAndSet(0);
+            final long total = sampledNanos.getAndSet(0);
+            if (samples == 0) {
+                return;
+            }
+            adapted = System.nanoTime();
+            adapt(total / samples, samples, inFlight);
+            // the limit may have grown
+            signalNext();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long latencyNanos, long samples, int concurrency)
+    {
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        // as much as moving the averages towards the mean latency once for each sample would
+        shortLatency += (latencyNanos - shortLatency) * (1 - Math.pow(1 - SHORT_WEIGHT, samples));
+        longLatency += (latencyNanos - longLatency) * (1 - Math.pow(1 - LONG_WEIGHT, samples));
+        if (longLatency > 2 * shortLatency) {
+            // latency dropped well below the long term average, catch up with it faster
+            longLatency *= 0.95;
+        }
+
+        if (concurrency < limit / 2) {
+            // the limit did not hold anything back, so the latency says nothing about it
+            return;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        final double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(configuration.minLimit,
+                         Math.min(configuration.maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    /**
+     * The current limit of open handles.
+     */
+    public int getLimit()
+    {
+        lock.lock();
+        try {
+            return (int) limit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of handles open.
+     */
+    public int getInFlight()
+    {
+        lock.lock();
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of threads waiting to open a handle.
+     */
+    public int getQueued()
+    {
+        lock.lock();
+        try {
+            return queued;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of handles not opened, because they were not admitted in time or the queue was full.
+     */
+    public long getRejectedCount()
+    {
+        return rejected.get();
+    }
+
+    /**
+     * Room for one handle, from being admitted until its connection is closed.
+     */
+    final class Permit
+    {
+        private boolean released = false;
+
+        /**
+         * Wrap the connection of the handle, so closing it gives the room back.
+         */
+        Connection wrap(Connection connection)
+        {
+            return new DelegatingConnection(connection)
+            {
+                @Override
+                public void close() throws SQLException
+                {
+                    try {
+                        super.close();
+                    }
+                    finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Wrap the timing collector of the handle, so the time of its statements adapts the limit.
+         */
+        TimingCollector sampling(final TimingCollector collector)
+        {
+            return new TimingCollector()
+            {
+                public void collect(long elapsedTime, StatementContext ctx)
+                {
+                    sample(elapsedTime);
+                    collector.collect(elapsedTime, ctx);
+                }
+            };
+        }
+
+        /**
+         * Give the room back without having used it, as the connection could not be opened.
+         */
+        void cancel()
+        {
+            release();
+        }
+
+        private void release()
+        {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            AdmissionControl.this.release();
+        }
+    }
+
+    public static class Configuration
+    {
+        private final int  initialLimit;
+        private final int  minLimit;
+        private final int  maxLimit;
+        private final long queueTimeoutNanos;
+        private final int  maxQueued;
+
+        public Configuration()
+        {
+            this(20, 1, 200, TimeUnit.MILLISECONDS.toNanos(100), 1000);
+        }
+
+        private Configuration(int initialLimit, int minLimit, int maxLimit, long queueTimeoutNanos, int maxQueued)
+        {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException(String.format("limits must be at least 1 and in order, were %d and %d",
+                                                                 minLimit, maxLimit));
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.queueTimeoutNanos = queueTimeoutNanos;
+            this.maxQueued = maxQueued;
+        }
+
+        /**
+         * The limit to start with, before any handle was closed, within the bounds. Defaults to 20.
+         */
+        public Configuration withInitialLimit(int initialLimit)
+        {
+            return new Configuration(initialLimit, minLimit, maxLimit, queueTimeoutNanos, maxQueued);
+        }
+
+        /**
+         * The bounds of the limit. Defaults to 1 and 200.
+         */
+        public Configuration withLimits(int minLimit, int maxLimit)
+        {
+            return new Configuration(initialLimit, minLimit, maxLimit, queueTimeoutNanos, maxQueued);
+        }
+
+        /**
+         * How long a thread waits to be admitted before it is turned away. Defaults to 100 milliseconds.
+         */
+        public Configuration withQueueTimeout(long timeout, TimeUnit unit)
+        {
+            return new Configuration(initialLimit, minLimit, maxLimit, unit.toNanos(timeout), maxQueued);
+        }
+
+        /**
+         * The most threads to wait at once, beyond which threads are turned away at once.
+         * Defaults to 1000.
+         */
+        public Configuration withMaxQueued(int maxQueued)
+        {
+            return new Configuration(initialLimit, minLimit, maxLimit, queueTimeoutNanos, maxQueued);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.UnableToCloseResourceException;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.RewrittenStatement;
+import org.skife.jdbi.v2.tweak.SQLLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Defers the updates of a handle which run the same sql one after the other, and sends them to
+ * the database as one batch. The handle sends the pending batch whenever its connection is asked
+ * for, which every other statement, batch, commit, savepoint and close does, so the updates are
+ * applied before any of them, whether or not the statement itself is cached. A rollback discards
+ * them instead.
+ *
+ * @see Handle#setAutoBatchSize(int)
+ */
+class AutoBatch
+{
+    private final Connection connection;
+
+    private int                batchSize = 0;
+    private String             sql;
+    private PreparedStatement  stmt;
+    private int                pending = 0;
+    private SQLLog             log;
+    private TimingCollector    timingCollector;
+    private StatementContext   context;
+    private Handle             handle;
+    private UpdateCounts       counts = new UpdateCounts();
+
+    AutoBatch(Connection connection)
+    {
+        this.connection = connection;
+    }
+
+    /**
+     * Send the pending updates, and hold up to <code>rows</code> from now on.
+     */
+    void setBatchSize(int rows)
+    {
+        flush();
+        this.batchSize = rows;
+    }
+
+    boolean isEnabled()
+    {
+        return batchSize > 0;
+    }
+
+    /**
+     * Add an update to the batch, sending the batch first if it is of other sql.
+     *
+     * @return {@link Statement#SUCCESS_NO_INFO}, as the update has not been executed yet
+     */
+    int add(Update update)
+    {
+        final RewrittenStatement rewritten = update.rewrite();
+        if (stmt != null && !sql.equals(rewritten.getSql())) {
+            flush();
+        }
+        if (stmt == null) {
+            try {
+                stmt = connection.prepareStatement(rewritten.getSql());
+            }
+            catch (SQLException e) {
+                throw new UnableToCreateStatementException(e, update.getContext());
+            }
+            sql = rewritten.getSql();
+            log = update.getLog();
+            timingCollector = update.getTimingCollector();
+            context = update.getContext();
+            handle = update.getHandle();
+        }
+
+        try {
+            rewritten.bind(update.getParameters(), stmt);
+            stmt.addBatch();
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, update.getContext());
+        }
+
+        if (++pending >= batchSize) {
+            flush();
+        }
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * Send the pending updates to the database.
+     */
+    void flush()
+    {
+        if (stmt == null) {
+            return;
+        }
+        final PreparedStatement batch = stmt;
+        final int size = pending;
+        stmt = null;
+        pending = 0;
+
+        final int[] rs;
+        try {
+            final long start = System.nanoTime();
+            rs = batch.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            log.logPreparedBatch(elapsedTime / 1000000L, sql, size);
+            timingCollector.collect(elapsedTime, context);
+            Replicas.wrote(handle);
+        }
+        catch (SQLException e) {
+            close(batch, false);
+            throw new UnableToExecuteStatementException(e, context);
+        }
+        close(batch, true);
+        counts.add(rs);
+    }
+
+    /**
+     * Drop the pending updates without sending them.
+     */
+    void discard()
+    {
+        if (stmt != null) {
+            final PreparedStatement batch = stmt;
+            stmt = null;
+            pending = 0;
+            close(batch, false);
+        }
+    }
+
+    /**
+     * Send the pending updates, and return the counts of every update deferred since the last call.
+     */
+    UpdateCounts takeCounts()
+    {
+        flush();
+        final UpdateCounts rs = counts;
+        counts = new UpdateCounts();
+        return rs;
+    }
+
+    private static void close(PreparedStatement batch, boolean rethrow)
+    {
+        try {
+            batch.close();
+        }
+        catch (SQLException e) {
+            if (rethrow) {
+                throw new UnableToCloseResourceException("Unable to close statement", e);
+            }
+            // already failing, don't hide the original exception
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor background work runs on unless another is configured: a pool of daemon threads,
+ * bounded to twice the number of processors, whose threads stop once idle for a minute. Work
+ * beyond what the threads can take waits in its queue, so that a burst of callers does not start
+ * a thread, and open a connection, each. Work which waits for other background work, such as
+ * gathering from shards, gets a pool of its own like it from {@link #create(String)}, so the two
+ * cannot take all threads of one pool and wait for each other.
+ */
+final class BackgroundExecutor
+{
+    private static final ExecutorService SHARED = create("jdbi-background");
+
+    private BackgroundExecutor()
+    {
+    }
+
+    static ExecutorService shared()
+    {
+        return SHARED;
+    }
+
+    static ExecutorService create(final String name)
+    {
+        final int threads = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+                                                               threads,
+                                                               1, TimeUnit.MINUTES,
+                                                               new LinkedBlockingQueue<Runnable>(),
+                                                               new ThreadFactory()
+                                                               {
+                                                                   public Thread newThread(Runnable r)
+                                                                   {
+                                                                       Thread t = new Thread(r, name);
+                                                                       t.setDaemon(true);
+                                                                       return t;
+                                                                   }
+                                                               });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
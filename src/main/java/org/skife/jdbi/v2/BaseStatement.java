@@ -31,12 +31,13 @@ abstract class BaseStatement
     private final Collection<StatementCustomizer> customizers = new ArrayList<StatementCustomizer>();
     private final ConcreteStatementContext context;
     private final Foreman                  foreman;
+    private boolean                        customized = false;
 
     protected BaseStatement(final ConcreteStatementContext context, Foreman foreman)
     {
         this.context = context;
         this.foreman = foreman.createChild();
-        addCustomizer(new StatementCleaningCustomizer());
+        this.customizers.add(new StatementCleaningCustomizer());
     }
 
     protected final Foreman getForeman() {
@@ -58,11 +59,15 @@ abstract class BaseStatement
 
     protected void addCustomizers(final Collection<StatementCustomizer> customizers)
     {
+        if (!customizers.isEmpty()) {
+            this.customized = true;
+        }
         this.customizers.addAll(customizers);
     }
 
     protected void addCustomizer(final StatementCustomizer customizer)
     {
+        this.customized = true;
         this.customizers.add(customizer);
     }
 
@@ -71,6 +76,14 @@ abstract class BaseStatement
         return this.customizers;
     }
 
+    /**
+     * @return true if any customizer has been added, beyond the one cleaning up every statement
+     */
+    boolean isCustomized()
+    {
+        return this.customized;
+    }
+
     protected final void beforeExecution(final PreparedStatement stmt)
     {
         for (StatementCustomizer customizer : customizers) {
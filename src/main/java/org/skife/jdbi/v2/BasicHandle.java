@@ -15,6 +15,7 @@
  */
 package org.skife.jdbi.v2;
 
+import org.skife.jdbi.v2.exceptions.TransactionException;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
 import org.skife.jdbi.v2.exceptions.UnableToCloseResourceException;
 import org.skife.jdbi.v2.exceptions.UnableToManipulateTransactionIsolationLevelException;
@@ -46,7 +47,18 @@ class BasicHandle implements Handle
     private TimingCollector   timingCollector;
     private StatementBuilder  statementBuilder;
 
-    private boolean closed = false;
+    private AdmissionControl.Permit admissionPermit;
+    private Replicas                replicas;
+    private boolean                 wroteInTransaction = false;
+
+    private boolean   closed = false;
+    private AutoBatch autoBatch;
+
+    private TransactionHandler transactionStateOwner;
+    private Object             transactionState;
+    private Deadline           deadline;
+
+    private final OpenCursors openCursors = new OpenCursors();
 
     private final Map<String, Object>      globalStatementAttributes;
     private final MappingRegistry          mappingRegistry;
@@ -101,11 +113,23 @@ class BasicHandle implements Handle
     }
 
     /**
-     * Get the JDBC Connection this Handle uses
+     * Get the JDBC Connection this Handle uses, sending any updates deferred by
+     * {@link #setAutoBatchSize(int)} first, so they apply before whatever is done with it
      *
      * @return the JDBC Connection this Handle uses
      */
     public Connection getConnection()
+    {
+        if (autoBatch != null) {
+            autoBatch.flush();
+        }
+        return this.connection;
+    }
+
+    /**
+     * The connection, without sending deferred updates first.
+     */
+    Connection getDeferringConnection()
     {
         return this.connection;
     }
@@ -113,16 +137,24 @@ class BasicHandle implements Handle
     public void close()
     {
         if (!closed) {
-            statementBuilder.close(getConnection());
             try {
-                connection.close();
-            }
-            catch (SQLException e) {
-                throw new UnableToCloseResourceException("Unable to close Connection", e);
+                openCursors.reclaim(log, this);
+                if (autoBatch != null) {
+                    autoBatch.flush();
+                }
             }
             finally {
-                log.logReleaseHandle(this);
-                closed = true;
+                statementBuilder.close(getConnection());
+                try {
+                    connection.close();
+                }
+                catch (SQLException e) {
+                    throw new UnableToCloseResourceException("Unable to close Connection", e);
+                }
+                finally {
+                    log.logReleaseHandle(this);
+                    closed = true;
+                }
             }
         }
     }
@@ -154,6 +186,10 @@ class BasicHandle implements Handle
     {
         final long start = System.nanoTime();
         transactions.commit(this);
+        if (wroteInTransaction) {
+            wroteInTransaction = false;
+            replicas.wrote();
+        }
         log.logCommitTransaction((System.nanoTime() - start) / 1000000L, this);
         return this;
     }
@@ -164,6 +200,24 @@ class BasicHandle implements Handle
     public Handle rollback()
     {
         final long start = System.nanoTime();
+        if (autoBatch != null) {
+            // updates deferred outside a transaction were as good as committed, so they are sent;
+            // this asks the connection itself, as asking the handle would send them either way
+            final boolean autoCommit;
+            try {
+                autoCommit = connection.getAutoCommit();
+            }
+            catch (SQLException e) {
+                throw new TransactionException("Failed to test for transaction status", e);
+            }
+            if (autoCommit) {
+                autoBatch.flush();
+            }
+            else {
+                autoBatch.discard();
+            }
+        }
+        wroteInTransaction = false;
         transactions.rollback(this);
         log.logRollbackTransaction((System.nanoTime() - start) / 1000000L, this);
         return this;
@@ -205,13 +259,55 @@ class BasicHandle implements Handle
         this.log = log;
     }
 
+    SQLLog getSQLLog()
+    {
+        return log;
+    }
+
     public void setTimingCollector(final TimingCollector timingCollector)
     {
-        if (timingCollector == null) {
-            this.timingCollector = TimingCollector.NOP_TIMING_COLLECTOR;
+        final TimingCollector collector = timingCollector == null ? TimingCollector.NOP_TIMING_COLLECTOR : timingCollector;
+        this.timingCollector = admissionPermit == null ? collector : admissionPermit.sampling(collector);
+    }
+
+    /**
+     * Have the statements of this handle adapt the limit of the admission control which admitted it.
+     */
+    void setAdmissionPermit(AdmissionControl.Permit permit)
+    {
+        this.admissionPermit = permit;
+        this.timingCollector = permit.sampling(timingCollector);
+    }
+
+    /**
+     * Keep threads which write with this handle on the primary, for the read your writes window
+     * of the replicas.
+     */
+    void setReplicas(Replicas replicas)
+    {
+        this.replicas = replicas;
+    }
+
+    /**
+     * @see Replicas#wrote(Handle)
+     */
+    void wrote()
+    {
+        if (replicas == null) {
+            return;
+        }
+        final boolean autoCommit;
+        try {
+            autoCommit = connection.getAutoCommit();
+        }
+        catch (SQLException e) {
+            throw new TransactionException("Failed to test for transaction status", e);
+        }
+        if (autoCommit) {
+            replicas.wrote();
         }
         else {
-            this.timingCollector = timingCollector;
+            wroteInTransaction = true;
         }
     }
 
@@ -224,11 +320,63 @@ class BasicHandle implements Handle
     public Handle rollback(String checkpointName)
     {
         final long start = System.nanoTime();
+        // everything pending was deferred after the checkpoint, as setting it sent the batch
+        discardAutoBatch();
         transactions.rollback(this, checkpointName);
         log.logRollbackToCheckpoint((System.nanoTime() - start) / 1000000L, this, checkpointName);
         return this;
     }
 
+    /**
+     * @see TransactionHandlerState#get(Handle, TransactionHandler)
+     */
+    Object getTransactionHandlerState(TransactionHandler handler)
+    {
+        return transactionStateOwner == handler ? transactionState : null;
+    }
+
+    void setTransactionHandlerState(TransactionHandler handler, Object state)
+    {
+        if (state != null) {
+            this.transactionStateOwner = handler;
+            this.transactionState = state;
+        }
+        else if (transactionStateOwner == handler) {
+            this.transactionStateOwner = null;
+            this.transactionState = null;
+        }
+    }
+
+    public void setDeadline(Deadline deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    public Deadline getDeadline()
+    {
+        return deadline;
+    }
+
+    public void setMaxOpenCursors(int max)
+    {
+        openCursors.setMax(max);
+    }
+
+    public int getMaxOpenCursors()
+    {
+        return openCursors.getMax();
+    }
+
+    public int getOpenCursorCount()
+    {
+        return openCursors.size();
+    }
+
+    OpenCursors getOpenCursors()
+    {
+        return openCursors;
+    }
+
     public boolean isInTransaction()
     {
         return transactions.isInTransaction(this);
@@ -237,6 +385,7 @@ class BasicHandle implements Handle
     public Update createStatement(String sql)
     {
         return new Update(this,
+                          autoBatch,
                           statementLocator,
                           statementRewriter,
                           statementBuilder,
@@ -293,10 +442,41 @@ class BasicHandle implements Handle
                                  containerFactoryRegistry);
     }
 
+    public BulkLoad bulkLoad(String table, String... columns)
+    {
+        return new BulkLoad(this, new ConcreteStatementContext(globalStatementAttributes), table, columns);
+    }
+
+    public void setAutoBatchSize(int rows)
+    {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative, was " + rows);
+        }
+        if (autoBatch == null) {
+            if (rows == 0) {
+                return;
+            }
+            this.autoBatch = new AutoBatch(connection);
+        }
+        autoBatch.setBatchSize(rows);
+    }
+
+    public UpdateCounts flushAutoBatch()
+    {
+        return autoBatch == null ? new UpdateCounts() : autoBatch.takeCounts();
+    }
+
+    private void discardAutoBatch()
+    {
+        if (autoBatch != null) {
+            autoBatch.discard();
+        }
+    }
+
     public Batch createBatch()
     {
         return new Batch(this.statementRewriter,
-                         this.connection,
+                         this,
                          globalStatementAttributes,
                          log,
                          timingCollector,
@@ -20,7 +20,6 @@ import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.skife.jdbi.v2.tweak.SQLLog;
 import org.skife.jdbi.v2.tweak.StatementRewriter;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -34,12 +33,12 @@ public class Batch extends BaseStatement
 {
     private List<String> parts = new ArrayList<String>();
     private final StatementRewriter rewriter;
-    private final Connection connection;
+    private final Handle handle;
     private final SQLLog log;
     private final TimingCollector timingCollector;
 
     Batch(StatementRewriter rewriter,
-          Connection connection,
+          Handle handle,
           Map<String, Object> globalStatementAttributes,
           SQLLog log,
           TimingCollector timingCollector,
@@ -47,7 +46,7 @@ public class Batch extends BaseStatement
     {
         super(new ConcreteStatementContext(globalStatementAttributes), foreman);
         this.rewriter = rewriter;
-        this.connection = connection;
+        this.handle = handle;
         this.log = log;
         this.timingCollector = timingCollector;
     }
@@ -90,7 +89,7 @@ public class Batch extends BaseStatement
         {
             try
             {
-                stmt = connection.createStatement();
+                stmt = handle.getConnection().createStatement();
                 addCleanable(Cleanables.forStatement(stmt));
             }
             catch (SQLException e)
@@ -113,6 +112,7 @@ public class Batch extends BaseStatement
                 throw new UnableToExecuteStatementException("Unable to configure JDBC statement", e, getContext());
             }
 
+            final StatementCanceller.Timeout timeout = StatementCanceller.watch(handle, stmt, getContext());
             try
             {
                 final long start = System.nanoTime();
@@ -121,12 +121,17 @@ public class Batch extends BaseStatement
                 logger.log(elapsedTime / 1000000L);
                 // Null for statement, because for batches, we don't really have a good way to keep the sql around.
                 timingCollector.collect(elapsedTime, getContext());
+                Replicas.wrote(handle);
                 return rs;
 
             }
             catch (SQLException e)
             {
-                throw new UnableToExecuteStatementException(e, getContext());
+                throw timeout.failure(e, getContext());
+            }
+            finally
+            {
+                timeout.done();
             }
         }
         finally {
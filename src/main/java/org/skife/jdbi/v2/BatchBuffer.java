@@ -0,0 +1,578 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.RewrittenStatement;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binding buffer for large batches of a {@link PreparedBatch}. Values are held column by column
+ * in typed arrays which are reused from one flush to the next, and applied to the prepared
+ * statement directly, so no {@link Binding} or {@link Argument} is created per row or value.
+ * <p>
+ * Bind the values of a row and call {@link #add()} to complete it. Every parameter of the
+ * statement must be bound through the buffer; a column not bound in a row is bound as null.
+ * Rows are sent to the database whenever the buffer is full, so use a transaction if the batch
+ * must be applied atomically.
+ *
+ * @see PreparedBatch#buffer(int)
+ */
+public class BatchBuffer
+{
+    private static final int INT     = 0;
+    private static final int LONG    = 1;
+    private static final int BOOLEAN = 2;
+    private static final int DOUBLE  = 3;
+    private static final int STRING  = 4;
+    private static final int BYTES   = 5;
+    private static final int NULL    = 6;
+
+    private final PreparedBatch       batch;
+    private final int                 capacity;
+    private final List<Column>        columns  = new ArrayList<Column>();
+    private final Map<String, Column> named    = new HashMap<String, Column>();
+    private final List<Column>        positional = new ArrayList<Column>();
+
+    private long maxBytes      = Long.MAX_VALUE;
+    private long bufferedBytes = 0;
+    private int  rows          = 0;
+
+    private PreparedStatement stmt;
+    private String            sql;
+    private UpdateCounts      counts = new UpdateCounts();
+
+    BatchBuffer(PreparedBatch batch, int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        }
+        this.batch = batch;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Also send the buffered rows to the database once the values bound in them add up to
+     * roughly <code>maxBytes</code>, counting numbers as eight bytes and strings as two bytes
+     * per character.
+     *
+     * @return self
+     */
+    public BatchBuffer flushEveryBytes(long maxBytes)
+    {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive, was " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public BatchBuffer bind(String name, int value)
+    {
+        column(name, INT).longs[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(int position, int value)
+    {
+        column(position, INT).longs[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(String name, long value)
+    {
+        column(name, LONG).longs[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(int position, long value)
+    {
+        column(position, LONG).longs[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(String name, boolean value)
+    {
+        column(name, BOOLEAN).longs[rows] = value ? 1 : 0;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(int position, boolean value)
+    {
+        column(position, BOOLEAN).longs[rows] = value ? 1 : 0;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(String name, double value)
+    {
+        column(name, DOUBLE).doubles[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(int position, double value)
+    {
+        column(position, DOUBLE).doubles[rows] = value;
+        bufferedBytes += 8;
+        return this;
+    }
+
+    public BatchBuffer bind(String name, String value)
+    {
+        setString(column(name, STRING), value);
+        return this;
+    }
+
+    public BatchBuffer bind(int position, String value)
+    {
+        setString(column(position, STRING), value);
+        return this;
+    }
+
+    public BatchBuffer bind(String name, byte[] value)
+    {
+        setBytes(column(name, BYTES), value);
+        return this;
+    }
+
+    public BatchBuffer bind(int position, byte[] value)
+    {
+        setBytes(column(position, BYTES), value);
+        return this;
+    }
+
+    /**
+     * Bind NULL to a column which has not been bound with a value yet in any row, using
+     * the given {@link Types sql type}. Columns with values bind NULL with the sql type of
+     * their values.
+     */
+    public BatchBuffer bindNull(String name, int sqlType)
+    {
+        column(name, NULL).setNull(rows, sqlType);
+        return this;
+    }
+
+    public BatchBuffer bindNull(int position, int sqlType)
+    {
+        column(position, NULL).setNull(rows, sqlType);
+        return this;
+    }
+
+    /**
+     * Complete the current row, sending the buffered rows to the database if the buffer is full.
+     *
+     * @return self
+     */
+    public BatchBuffer add()
+    {
+        for (Column column : columns) {
+            if (!column.bound) {
+                column.setNull(rows, column.nullType);
+            }
+            column.bound = false;
+        }
+        rows++;
+        if (rows == capacity || bufferedBytes >= maxBytes) {
+            flush();
+        }
+        return this;
+    }
+
+    /**
+     * The number of rows added to this buffer, including any already sent to the database
+     */
+    public int size()
+    {
+        return counts.size() + rows;
+    }
+
+    /**
+     * Send the remaining rows to the database and close the statement.
+     *
+     * @return the number of rows modified or inserted per row added.
+     */
+    public UpdateCounts execute()
+    {
+        try {
+            if (rows > 0) {
+                flush();
+            }
+            if (stmt != null) {
+                batch.afterExecution(stmt);
+            }
+            return counts;
+        }
+        finally {
+            reset();
+        }
+    }
+
+    private void setString(Column column, String value)
+    {
+        column.strings[rows] = value;
+        if (value == null) {
+            column.setNull(rows, Types.VARCHAR);
+        }
+        else {
+            bufferedBytes += 2L * value.length();
+        }
+    }
+
+    private void setBytes(Column column, byte[] value)
+    {
+        column.bytes[rows] = value;
+        if (value == null) {
+            column.setNull(rows, Types.VARBINARY);
+        }
+        else {
+            bufferedBytes += value.length;
+        }
+    }
+
+    private Column column(String name, int kind)
+    {
+        Column column = named.get(name);
+        if (column == null) {
+            checkNotPrepared(name);
+            column = new Column(name, kind);
+            column.setNullBefore(rows);
+            named.put(name, column);
+            columns.add(column);
+        }
+        return column.mark(kind);
+    }
+
+    private Column column(int position, int kind)
+    {
+        while (positional.size() <= position) {
+            positional.add(null);
+        }
+        Column column = positional.get(position);
+        if (column == null) {
+            checkNotPrepared(String.valueOf(position));
+            column = new Column(position, kind);
+            column.setNullBefore(rows);
+            positional.set(position, column);
+            columns.add(column);
+        }
+        return column.mark(kind);
+    }
+
+    private void checkNotPrepared(String column)
+    {
+        if (stmt != null) {
+            throw new IllegalStateException(String.format("column %s was not bound before the first flush", column));
+        }
+    }
+
+    private void flush()
+    {
+        try {
+            if (stmt == null) {
+                prepare();
+            }
+            for (int row = 0; row < rows; row++) {
+                for (Column column : columns) {
+                    column.apply(row, stmt);
+                }
+                stmt.addBatch();
+            }
+        }
+        catch (SQLException e) {
+            reset();
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, batch.getContext());
+        }
+        catch (RuntimeException e) {
+            reset();
+            throw e;
+        }
+
+        final StatementCanceller.Timeout timeout;
+        try {
+            timeout = StatementCanceller.watch(batch.getHandle(), stmt, batch.getContext());
+        }
+        catch (RuntimeException e) {
+            reset();
+            throw e;
+        }
+        try {
+            final long start = System.nanoTime();
+            final int[] rs = stmt.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            batch.getLog().logPreparedBatch(elapsedTime / 1000000L, sql, rows);
+            batch.getTimingCollector().collect(elapsedTime, batch.getContext());
+            Replicas.wrote(batch.getHandle());
+            counts.add(rs);
+        }
+        catch (SQLException e) {
+            final UnableToExecuteStatementException failure = timeout.failure(e, batch.getContext());
+            reset();
+            throw failure;
+        }
+        finally {
+            timeout.done();
+        }
+
+        for (Column column : columns) {
+            column.clear(rows);
+        }
+        rows = 0;
+        bufferedBytes = 0;
+    }
+
+    private void prepare() throws SQLException
+    {
+        final String located;
+        try {
+            located = batch.getStatementLocator().locate(batch.getSql(), batch.getContext());
+        }
+        catch (Exception e) {
+            throw new UnableToCreateStatementException(String.format("Exception while locating statement for [%s]",
+                                                                     batch.getSql()), e, batch.getContext());
+        }
+
+        // find out where the rewriter puts each column by binding arguments which only note their position
+        final Binding markers = new Binding();
+        for (Column column : columns) {
+            if (column.name != null) {
+                markers.addNamed(column.name, column);
+            }
+            else {
+                markers.addPositional(column.position, column);
+            }
+        }
+        final RewrittenStatement rewritten = batch.getRewriter().rewrite(located, markers, batch.getContext());
+        sql = rewritten.getSql();
+        try {
+            stmt = batch.getHandle().getConnection().prepareStatement(sql);
+            batch.addCleanable(Cleanables.forStatement(stmt));
+        }
+        catch (SQLException e) {
+            throw new UnableToCreateStatementException(e, batch.getContext());
+        }
+        rewritten.bind(markers, stmt);
+        batch.beforeExecution(stmt);
+    }
+
+    private void reset()
+    {
+        try {
+            batch.cleanup();
+        }
+        finally {
+            for (Column column : columns) {
+                column.clear(rows);
+                column.positions = new int[0];
+            }
+            stmt = null;
+            sql = null;
+            counts = new UpdateCounts();
+            rows = 0;
+            bufferedBytes = 0;
+        }
+    }
+
+    private final class Column implements Argument
+    {
+        private final String name;
+        private final int    position;
+
+        private int     kind;
+        private int     nullType = Types.NULL;
+        private int[]   positions = new int[0];
+        private boolean bound;
+
+        private long[]     longs;
+        private double[]   doubles;
+        private String[]   strings;
+        private byte[][]   bytes;
+        private long[]     nulls = new long[(capacity + 63) / 64];
+
+        Column(String name, int kind)
+        {
+            this.name = name;
+            this.position = -1;
+            this.kind = kind;
+        }
+
+        Column(int position, int kind)
+        {
+            this.name = null;
+            this.position = position;
+            this.kind = kind;
+        }
+
+        Column mark(int kind)
+        {
+            if (this.kind == NULL && kind != NULL) {
+                this.kind = kind;
+            }
+            else if (this.kind != kind && kind != NULL) {
+                throw new IllegalArgumentException(String.format("column %s holds %s values, not %s",
+                                                                 this, describe(this.kind), describe(kind)));
+            }
+            if (kind != NULL && longs == null && doubles == null && strings == null && bytes == null) {
+                allocate();
+            }
+            nulls[rows >> 6] &= ~(1L << rows);
+            bound = true;
+            return this;
+        }
+
+        private void allocate()
+        {
+            switch (kind) {
+                case INT:
+                    nullType = Types.INTEGER;
+                    longs = new long[capacity];
+                    break;
+                case LONG:
+                    nullType = Types.BIGINT;
+                    longs = new long[capacity];
+                    break;
+                case BOOLEAN:
+                    nullType = Types.BOOLEAN;
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    nullType = Types.DOUBLE;
+                    doubles = new double[capacity];
+                    break;
+                case STRING:
+                    nullType = Types.VARCHAR;
+                    strings = new String[capacity];
+                    break;
+                default:
+                    nullType = Types.VARBINARY;
+                    bytes = new byte[capacity][];
+                    break;
+            }
+        }
+
+        /**
+         * Marks the rows added before this column was first bound as null.
+         */
+        void setNullBefore(int row)
+        {
+            for (int r = 0; r < row; r++) {
+                nulls[r >> 6] |= 1L << r;
+            }
+        }
+
+        void setNull(int row, int sqlType)
+        {
+            if (kind == NULL) {
+                nullType = sqlType;
+            }
+            nulls[row >> 6] |= 1L << row;
+        }
+
+        void apply(int row, PreparedStatement statement) throws SQLException
+        {
+            final boolean isNull = (nulls[row >> 6] & (1L << row)) != 0;
+            for (int p : positions) {
+                if (isNull) {
+                    statement.setNull(p, nullType);
+                    continue;
+                }
+                switch (kind) {
+                    case INT:
+                        statement.setInt(p, (int) longs[row]);
+                        break;
+                    case LONG:
+                        statement.setLong(p, longs[row]);
+                        break;
+                    case BOOLEAN:
+                        statement.setBoolean(p, longs[row] != 0);
+                        break;
+                    case DOUBLE:
+                        statement.setDouble(p, doubles[row]);
+                        break;
+                    case STRING:
+                        statement.setString(p, strings[row]);
+                        break;
+                    default:
+                        statement.setBytes(p, bytes[row]);
+                        break;
+                }
+            }
+        }
+
+        void clear(int rows)
+        {
+            // drop references so flushed values can be collected
+            if (strings != null) {
+                Arrays.fill(strings, 0, rows, null);
+            }
+            if (bytes != null) {
+                Arrays.fill(bytes, 0, rows, null);
+            }
+            Arrays.fill(nulls, 0L);
+            bound = false;
+        }
+
+        /**
+         * Records the position the statement rewriter binds this column at.
+         */
+        public void apply(int position, PreparedStatement statement, StatementContext ctx)
+        {
+            positions = Arrays.copyOf(positions, positions.length + 1);
+            positions[positions.length - 1] = position;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name != null ? name : String.valueOf(position);
+        }
+    }
+
+    private static String describe(int kind)
+    {
+        switch (kind) {
+            case INT:
+                return "int";
+            case LONG:
+                return "long";
+            case BOOLEAN:
+                return "boolean";
+            case DOUBLE:
+                return "double";
+            case STRING:
+                return "String";
+            case BYTES:
+                return "byte[]";
+            default:
+                return "null";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a batch executed with {@link PreparedBatch#executeIsolatingFailures()}: the
+ * update counts of every part, and the exception of each part which failed. Failed parts have
+ * a count of {@link Statement#EXECUTE_FAILED}.
+ */
+public final class BatchResult
+{
+    private final UpdateCounts counts;
+    private final SortedMap<Integer, UnableToExecuteStatementException> failures =
+        new TreeMap<Integer, UnableToExecuteStatementException>();
+
+    public BatchResult()
+    {
+        this(new UpdateCounts());
+    }
+
+    /**
+     * A result with the given counts and no failures.
+     */
+    public BatchResult(UpdateCounts counts)
+    {
+        this.counts = counts;
+    }
+
+    void fail(UnableToExecuteStatementException e)
+    {
+        failures.put(counts.size(), e);
+        counts.add(new int[]{Statement.EXECUTE_FAILED});
+    }
+
+    /**
+     * Append the parts of a further batch, numbering them after the parts of this one.
+     */
+    public void add(BatchResult other)
+    {
+        final int offset = counts.size();
+        for (Map.Entry<Integer, UnableToExecuteStatementException> failure : other.failures.entrySet()) {
+            failures.put(failure.getKey() + offset, failure.getValue());
+        }
+        counts.add(other.counts);
+    }
+
+    /**
+     * The update count of every part, in the order the parts were added.
+     */
+    public UpdateCounts getCounts()
+    {
+        return counts;
+    }
+
+    /**
+     * @return true if any part of the batch failed
+     */
+    public boolean hasFailures()
+    {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * The indexes of the parts which failed, in ascending order.
+     */
+    public int[] getFailedRows()
+    {
+        final int[] rows = new int[failures.size()];
+        int i = 0;
+        for (Integer row : failures.keySet()) {
+            rows[i++] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * The exception of each failed part, keyed by the index of the part.
+     */
+    public SortedMap<Integer, UnableToExecuteStatementException> getFailures()
+    {
+        return Collections.unmodifiableSortedMap(failures);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BatchResult{counts=" + counts + ", failures=" + failures.keySet() + "}";
+    }
+}
@@ -77,6 +77,45 @@ public class Binding
         namedArgumentFinder.add(args);
     }
 
+    /**
+     * Roughly the size of the bound values, counting strings as two bytes per character and
+     * everything else but byte arrays as eight bytes. Values found by name lookup, such as bound
+     * beans or maps, are counted as eight bytes per bean or map.
+     */
+    long estimateBytes()
+    {
+        long bytes = 8L * namedArgumentFinder.size();
+        for (Argument argument : positionals.values()) {
+            bytes += estimateBytes(argument);
+        }
+        for (Argument argument : named.values()) {
+            bytes += estimateBytes(argument);
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Argument argument)
+    {
+        Object value = argument;
+        if (argument instanceof StringArgument) {
+            value = ((StringArgument) argument).getValue();
+        }
+        else if (argument instanceof ByteArrayArgument) {
+            value = ((ByteArrayArgument) argument).getValue();
+        }
+        else if (argument instanceof ObjectArgument) {
+            value = ((ObjectArgument) argument).getValue();
+        }
+
+        if (value instanceof String) {
+            return 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return 8;
+    }
+
     @Override
     public String toString() {
         boolean wrote = false;
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.Argument;
+
+import java.lang.reflect.Modifier;
+
+/**
+ * The built in argument for values of one final type, resolved once instead of for every value
+ * bound. Binders which know the type of their values up front, such as those of sql object
+ * parameters, bind with it without going through the argument factories of a statement when it
+ * has no factories registered beyond the built in one. Otherwise the factories are asked as by
+ * {@link SQLStatement#bind(String, Object)}, so they see the same expected type and value.
+ */
+public final class BuiltInArguments
+{
+    private final Foreman.BuiltInArgumentFactory.P builder;
+
+    private BuiltInArguments(Foreman.BuiltInArgumentFactory.P builder)
+    {
+        this.builder = builder;
+    }
+
+    /**
+     * @param type the type of the values, which must be final, such as a primitive wrapper or String
+     * @return the built in argument for values of type, or null if type is not final or has none
+     */
+    public static BuiltInArguments forType(Class<?> type)
+    {
+        if (!type.isPrimitive() && !Modifier.isFinal(type.getModifiers())) {
+            return null;
+        }
+        final Foreman.BuiltInArgumentFactory.P builder = Foreman.BuiltInArgumentFactory.forType(type);
+        return builder == null ? null : new BuiltInArguments(builder);
+    }
+
+    /**
+     * Bind a value of the type to a named parameter, as {@link SQLStatement#bind(String, Object)} would.
+     */
+    public void bind(SQLStatement<?> statement, String name, Object value)
+    {
+        statement.bind(name, resolve(statement.getForeman(), value, statement.getContext()));
+    }
+
+    Argument resolve(Foreman foreman, Object value, StatementContext ctx)
+    {
+        if (value == null || !foreman.hasOnlyBuiltIns()) {
+            return foreman.waffle(Object.class, value, ctx);
+        }
+        return builder.build(value);
+    }
+}
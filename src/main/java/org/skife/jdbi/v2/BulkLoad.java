@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.bulk.BatchBulkLoader;
+import org.skife.jdbi.v2.bulk.DerbyBulkLoader;
+import org.skife.jdbi.v2.bulk.H2BulkLoader;
+import org.skife.jdbi.v2.bulk.PostgresCopyBulkLoader;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.BulkLoader;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads rows into a table with the fastest facility available for the database: the native
+ * bulk load of Apache Derby, H2 or PostgreSQL, or else a streaming {@link PreparedBatch}.
+ *
+ * @see Handle#bulkLoad(String, String...)
+ */
+public class BulkLoad
+{
+    private static final List<BulkLoader> NATIVE_LOADERS = Arrays.<BulkLoader>asList(new DerbyBulkLoader(),
+                                                                                     new H2BulkLoader(),
+                                                                                     new PostgresCopyBulkLoader());
+
+    private final Handle       handle;
+    private final String       table;
+    private final List<String> columns;
+    private final StatementContext context;
+    private BulkLoader loader;
+
+    BulkLoad(Handle handle, StatementContext context, String table, String... columns)
+    {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("at least one column must be loaded");
+        }
+        this.handle = handle;
+        this.context = context;
+        this.table = table;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+    }
+
+    /**
+     * Load with a specific loader instead of the one chosen for the database.
+     *
+     * @return self
+     */
+    public BulkLoad using(BulkLoader loader)
+    {
+        this.loader = loader;
+        return this;
+    }
+
+    /**
+     * Load the rows, each holding the values of the columns in order. Rows are streamed to the
+     * database as they are taken from the iterator.
+     *
+     * @return the number of rows loaded
+     */
+    public long load(Iterator<? extends Object[]> rows)
+    {
+        final BulkLoader chosen;
+        try {
+            chosen = loader != null ? loader : loaderFor(handle);
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Unable to choose a bulk loader", e, context);
+        }
+
+        try {
+            final long loaded = chosen.load(handle, table, columns, rows);
+            // loaders such as COPY may not go through statements of the handle
+            Replicas.wrote(handle);
+            return loaded;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new UnableToExecuteStatementException(String.format("Unable to bulk load into %s", table), e, context);
+        }
+    }
+
+    /**
+     * Load the rows, each holding the values of the columns in order.
+     *
+     * @return the number of rows loaded
+     */
+    public long load(Iterable<? extends Object[]> rows)
+    {
+        return load(rows.iterator());
+    }
+
+    private static BulkLoader loaderFor(Handle handle) throws SQLException
+    {
+        for (BulkLoader nativeLoader : NATIVE_LOADERS) {
+            if (nativeLoader.accepts(handle.getConnection())) {
+                return nativeLoader;
+            }
+        }
+        return new BatchBulkLoader();
+    }
+}
@@ -34,6 +34,11 @@ class ByteArrayArgument implements Argument
         this.value = value;
     }
 
+    byte[] getValue()
+    {
+        return value;
+    }
+
     public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
     {
         if (value != null) {
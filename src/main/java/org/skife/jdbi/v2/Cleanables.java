@@ -51,6 +51,20 @@ class Cleanables
         };
     }
 
+    /**
+     * Cancels the statement if it is executing, for abandoning work which is no longer needed.
+     * The statement still needs closing afterwards.
+     */
+    static Cleanable forCancel(final Statement stmt) {
+        return new Cleanable() {
+            public void cleanup() throws SQLException {
+                if (stmt != null) {
+                    stmt.cancel();
+                }
+            }
+        };
+    }
+
     static Cleanable forHandle(final Handle handle, final TransactionState state) {
         return new Cleanable() {
             public void cleanup() throws SQLException {
@@ -39,6 +39,9 @@ import java.sql.SQLException;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -53,6 +56,7 @@ public class DBI implements IDBI
     private final Foreman foreman = new Foreman();
 
     private final ConnectionFactory connectionFactory;
+    private final Replicas replicas;
 
     private AtomicReference<StatementRewriter> statementRewriter = new AtomicReference<StatementRewriter>(new ColonPrefixNamedParamStatementRewriter());
     private AtomicReference<StatementLocator> statementLocator = new AtomicReference<StatementLocator>(new ClasspathStatementLocator());
@@ -60,6 +64,9 @@ public class DBI implements IDBI
     private AtomicReference<StatementBuilderFactory> statementBuilderFactory = new AtomicReference<StatementBuilderFactory>(new DefaultStatementBuilderFactory());
     private AtomicReference<SQLLog> log = new AtomicReference<SQLLog>(new NoOpLog());
     private AtomicReference<TimingCollector> timingCollector = new AtomicReference<TimingCollector>(TimingCollector.NOP_TIMING_COLLECTOR);
+    private AtomicReference<AdmissionControl> admissionControl = new AtomicReference<AdmissionControl>();
+    private AtomicReference<ExecutorService> executor = new AtomicReference<ExecutorService>(BackgroundExecutor.shared());
+    private AtomicBoolean cacheSessionState = new AtomicBoolean(false);
 
     /**
      * Constructor for use with a DataSource which will provide
@@ -82,8 +89,22 @@ public class DBI implements IDBI
      */
     public DBI(ConnectionFactory connectionFactory)
     {
-        assert connectionFactory != null;
-        this.connectionFactory = connectionFactory;
+        this(connectionFactory, new ConnectionFactory[0]);
+    }
+
+    /**
+     * Constructor for a primary database and its read replicas. Handles from {@link #open()}
+     * use the primary, while read only handles from {@link #openReadOnly()} use the replica
+     * with the fewest handles open.
+     *
+     * @param primary  Provides JDBC connections to handles which may write
+     * @param replicas Provide JDBC connections to read only handles
+     */
+    public DBI(ConnectionFactory primary, ConnectionFactory... replicas)
+    {
+        assert primary != null;
+        this.connectionFactory = primary;
+        this.replicas = new Replicas(replicas);
     }
 
     /**
@@ -201,28 +222,158 @@ public class DBI implements IDBI
      */
     public Handle open()
     {
+        return openPrimary(true);
+    }
+
+    /**
+     * Open a handle on the primary, which keeps the thread on the primary after writing if it is
+     * opened for writing.
+     */
+    private Handle openPrimary(boolean forWriting)
+    {
+        final long start = System.nanoTime();
+        final AdmissionControl.Permit permit = admit();
+        Connection conn = null;
         try {
-            final long start = System.nanoTime();
-            Connection conn = connectionFactory.openConnection();
-            final long stop = System.nanoTime();
-            StatementBuilder cache = statementBuilderFactory.get().createStatementBuilder(conn);
-            Handle h = new BasicHandle(transactionhandler.get(),
-                                       statementLocator.get(),
-                                       cache,
-                                       statementRewriter.get(),
-                                       conn,
-                                       globalStatementAttributes,
-                                       log.get(),
-                                       timingCollector.get(),
-                                       new MappingRegistry(mappingRegistry),
-                                       foreman.createChild(),
-                                       containerFactoryRegistry.createChild());
-            log.get().logObtainHandle((stop - start) / 1000000L, h);
-            return h;
+            conn = connectionFactory.openConnection();
         }
         catch (SQLException e) {
             throw new UnableToObtainConnectionException(e);
         }
+        finally {
+            if (conn == null && permit != null) {
+                permit.cancel();
+            }
+        }
+        final long stop = System.nanoTime();
+        final Handle h = open(conn, permit, (stop - start) / 1000000L);
+        if (forWriting && replicas.isReadingYourWrites()) {
+            ((BasicHandle) h).setReplicas(replicas);
+        }
+        return h;
+    }
+
+    /**
+     * Obtain a Handle for reads only. It uses the replica with the fewest handles open, or the
+     * primary if there are no replicas, none can be connected to, or the thread is within the
+     * read your writes window after writing to the primary.
+     *
+     * @return an open Handle instance
+     */
+    public Handle openReadOnly()
+    {
+        if (readsFromPrimary()) {
+            return openPrimary(false);
+        }
+        return openReplica();
+    }
+
+    /**
+     * Whether read only handles opened by the current thread use the primary.
+     */
+    boolean readsFromPrimary()
+    {
+        return replicas.isEmpty() || replicas.isPinnedToPrimary();
+    }
+
+    /**
+     * Open a read only handle on a replica, or the primary if none can be connected to, whether
+     * or not the current thread is pinned to the primary. For threads which open it on behalf of
+     * another, which {@link #readsFromPrimary()} was asked.
+     */
+    Handle openReplica()
+    {
+        final long start = System.nanoTime();
+        final AdmissionControl.Permit permit = admit();
+        Connection conn = null;
+        try {
+            conn = replicas.open(log.get());
+        }
+        catch (SQLException e) {
+            // every replica failed, each was counted and logged, fall back to the primary below
+        }
+        finally {
+            if (conn == null && permit != null) {
+                permit.cancel();
+            }
+        }
+        if (conn == null) {
+            return openPrimary(false);
+        }
+        final long stop = System.nanoTime();
+        return open(conn, permit, (stop - start) / 1000000L);
+    }
+
+    private AdmissionControl.Permit admit()
+    {
+        final AdmissionControl admission = admissionControl.get();
+        return admission == null ? null : admission.acquire();
+    }
+
+    private Handle open(Connection conn, AdmissionControl.Permit permit, long elapsedMillis)
+    {
+        if (permit == null) {
+            return open(conn, elapsedMillis);
+        }
+        final BasicHandle h = (BasicHandle) open(permit.wrap(conn), elapsedMillis);
+        h.setAdmissionPermit(permit);
+        return h;
+    }
+
+    /**
+     * Keep a thread on the primary for a while after it wrote with a handle of the primary, so
+     * its read only handles see what it wrote instead of a replica which may lag. A write counts
+     * when its transaction commits, or as it is executed in autocommit mode; reads, and handles
+     * opened on the primary for reads only, do not keep the thread there. Zero, the default,
+     * disables this.
+     *
+     * @param window how long to keep a thread on the primary
+     * @param unit   the unit of window
+     */
+    public void setReadYourWritesWindow(long window, TimeUnit unit)
+    {
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative, was " + window);
+        }
+        replicas.setReadYourWritesNanos(unit.toNanos(window));
+    }
+
+    /**
+     * The number of read only handles open on each replica, in the order they were given.
+     */
+    public int[] getReplicaHandleCounts()
+    {
+        return replicas.getInFlight();
+    }
+
+    /**
+     * The number of times connecting to a replica failed. Each failure is also logged when the
+     * {@link SQLLog} is a {@link org.skife.jdbi.v2.logging.FormattedLog}.
+     */
+    public long getReplicaFailureCount()
+    {
+        return replicas.getFailureCount();
+    }
+
+    private Handle open(Connection conn, long elapsedMillis)
+    {
+        if (cacheSessionState.get()) {
+            conn = new SessionStateConnection(conn);
+        }
+        StatementBuilder cache = statementBuilderFactory.get().createStatementBuilder(conn);
+        Handle h = new BasicHandle(transactionhandler.get(),
+                                   statementLocator.get(),
+                                   cache,
+                                   statementRewriter.get(),
+                                   conn,
+                                   globalStatementAttributes,
+                                   log.get(),
+                                   timingCollector.get(),
+                                   new MappingRegistry(mappingRegistry),
+                                   foreman.createChild(),
+                                   containerFactoryRegistry.createChild());
+        log.get().logObtainHandle(elapsedMillis, h);
+        return h;
     }
 
     /**
@@ -313,6 +464,31 @@ public class DBI implements IDBI
         });
     }
 
+    /**
+     * A convenience function which manages the lifecycle of a read only handle from
+     * {@link #openReadOnly()} and yields it, in a transaction, to a callback.
+     *
+     * @param callback A callback which will receive an open read only Handle, in a transaction
+     *
+     * @return the value returned by callback
+     *
+     * @throws CallbackFailedException Will be thrown if callback raises an exception. This exception will
+     *                                 wrap the exception thrown by the callback.
+     */
+    public <ReturnType> ReturnType inReadOnlyTransaction(final TransactionCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        final Handle h = this.openReadOnly();
+        try {
+            return h.inTransaction(callback);
+        }
+        catch (Exception e) {
+            throw new CallbackFailedException(e);
+        }
+        finally {
+            h.close();
+        }
+    }
+
     /**
      * Open a handle and attach a new sql object of the specified type to that handle. Be sure to close the
      * sql object (via a close() method, or calling {@link IDBI#close(Object)}
@@ -476,6 +652,60 @@ public class DBI implements IDBI
         return this.timingCollector.get();
     }
 
+    /**
+     * Limit how many handles are open at once, queueing or turning away the opening of more.
+     *
+     * @param admissionControl the limiter, or null to open handles without limit, the default
+     */
+    public void setAdmissionControl(AdmissionControl admissionControl)
+    {
+        this.admissionControl.set(admissionControl);
+    }
+
+    public AdmissionControl getAdmissionControl()
+    {
+        return this.admissionControl.get();
+    }
+
+    /**
+     * Set the executor for work done on other threads on behalf of callers, such as the chunks of
+     * a parallel {@link org.skife.jdbi.v2.sqlobject.SqlBatch}. Each task opens a handle of its own,
+     * so the threads of the executor bound how many handles such work opens at once.
+     *
+     * @param executor the executor, or null for the default: a pool of twice as many daemon
+     *                 threads as there are processors, shared by all DBI instances
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor.set(executor == null ? BackgroundExecutor.shared() : executor);
+    }
+
+    public ExecutorService getExecutor()
+    {
+        return this.executor.get();
+    }
+
+    /**
+     * Have handles remember the autocommit, transaction isolation and read only state of their
+     * connection, so reading it does not go to the driver and setting it only does when it
+     * changes. {@link Handle#getConnection()} then returns a wrapper, so use
+     * {@link Connection#unwrap(Class)} to reach the connection of the driver, after which nothing
+     * is remembered any more. Only turn this on when the state is changed through the handle
+     * alone: state changed by SQL such as <code>SET TRANSACTION</code>, or through another handle
+     * of the same connection, is not noticed. Off by default.
+     *
+     * @param cacheSessionState whether handles opened from now on remember their session state
+     */
+    public void setCacheSessionState(boolean cacheSessionState)
+    {
+        this.cacheSessionState.set(cacheSessionState);
+    }
+
+    public boolean isCacheSessionState()
+    {
+        return this.cacheSessionState.get();
+    }
+
     public void registerArgumentFactory(ArgumentFactory<?> argumentFactory)
     {
         foreman.register(argumentFactory);
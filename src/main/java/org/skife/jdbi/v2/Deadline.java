@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which statements have to finish. Set one on a {@link Handle} with
+ * {@link Handle#setDeadline(Deadline)}, or for everything the current thread does with
+ * {@link #setCurrent(Deadline)}; each statement then gets whatever time is left of the earlier of
+ * the two. A statement still running once its deadline passes, or once the thread running it is
+ * interrupted, deadline or not, is cancelled with {@link java.sql.Statement#cancel()} and fails with a
+ * {@link org.skife.jdbi.v2.exceptions.DeadlineExceededException}, so long running statements
+ * give their connection back once the caller has given up on them. This covers reading the results
+ * of a query which reads them right away, such as {@link Query#list()}, but not iterating over them
+ * with {@link Query#iterator()}.
+ * <p>
+ * Unlike {@link SQLStatement#setQueryTimeout(int)} deadlines are not limited to whole seconds, and
+ * all statements share one timer thread instead of the driver starting one per statement.
+ */
+public final class Deadline
+{
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    private final long nanos;
+
+    private Deadline(long nanos)
+    {
+        this.nanos = nanos;
+    }
+
+    /**
+     * A deadline the given time from now.
+     */
+    public static Deadline after(long timeout, TimeUnit unit)
+    {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Set the deadline of the statements the current thread executes, on any handle.
+     *
+     * @param deadline the deadline, or null for none
+     * @return the deadline set before, so it can be restored
+     */
+    public static Deadline setCurrent(Deadline deadline)
+    {
+        final Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * The deadline of the statements the current thread executes, or null if there is none.
+     */
+    public static Deadline getCurrent()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * The earlier of two deadlines, either of which may be null.
+     */
+    static Deadline earlier(Deadline a, Deadline b)
+    {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.nanos - b.nanos <= 0 ? a : b;
+    }
+
+    /**
+     * The time left until the deadline, which is negative once it has passed.
+     */
+    public long remaining(TimeUnit unit)
+    {
+        return unit.convert(nanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired()
+    {
+        return nanos - System.nanoTime() <= 0;
+    }
+
+    long nanoTime()
+    {
+        return nanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms remaining]";
+    }
+}
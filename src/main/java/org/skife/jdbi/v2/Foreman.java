@@ -69,6 +69,14 @@ class Foreman
 
     private static final ArgumentFactory BUILT_INS = new BuiltInArgumentFactory();
 
+    /**
+     * @return whether no factories beyond the built in one are registered
+     */
+    boolean hasOnlyBuiltIns()
+    {
+        return factories.size() == 1 && factories.get(0) == BUILT_INS;
+    }
+
     public void register(ArgumentFactory<?> argumentFactory)
     {
         factories.add(argumentFactory);
@@ -79,7 +87,7 @@ class Foreman
         return new Foreman(factories);
     }
 
-    private static final class BuiltInArgumentFactory implements ArgumentFactory
+    static final class BuiltInArgumentFactory implements ArgumentFactory
     {
         private static final Map<Class, P> b = new IdentityHashMap<Class, P>();
 
@@ -113,6 +121,14 @@ class Foreman
             b.put(URL.class, new P(URLArgument.class));
         }
 
+        /**
+         * @return the builder of the arguments of values of exactly type, or null if there is none
+         */
+        static P forType(Class type)
+        {
+            return b.get(type);
+        }
+
         public boolean accepts(Class expectedType, Object value, StatementContext ctx)
         {
             return b.containsKey(expectedType);
@@ -131,7 +147,7 @@ class Foreman
             return p.build(value);
         }
 
-        private static class P
+        static class P
         {
             private final Constructor<?> ctor;
 
@@ -22,6 +22,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -33,10 +34,10 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
 {
     private final ResultSetMapper<Type>    mapper;
     private final SQLStatement<?>          jdbiStatement;
-    private final Statement                stmt;
     private final ResultSet                results;
     private final StatementContext         context;
     private final ContainerFactoryRegistry containerFactoryRegistry;
+    private final List<Type>               mapped;
 
     /**
      * Creates a new wrapper object for generated keys as returned by the {@link Statement#getGeneratedKeys()}
@@ -52,16 +53,49 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
                   Statement stmt,
                   StatementContext context,
                   ContainerFactoryRegistry containerFactoryRegistry) throws SQLException
+    {
+        this(mapper, jdbiStatement, stmt.getGeneratedKeys(), context, containerFactoryRegistry);
+    }
+
+    /**
+     * Creates a new wrapper object for generated keys which have already been fetched.
+     *
+     * @param results The generated keys, or null if there are none
+     */
+    GeneratedKeys(ResultSetMapper<Type> mapper,
+                  SQLStatement<?> jdbiStatement,
+                  ResultSet results,
+                  StatementContext context,
+                  ContainerFactoryRegistry containerFactoryRegistry)
     {
         this.mapper = mapper;
         this.jdbiStatement = jdbiStatement;
-        this.stmt = stmt;
-        this.results = stmt.getGeneratedKeys();
+        this.results = results;
         this.context = context;
         this.containerFactoryRegistry = containerFactoryRegistry.createChild();
+        this.mapped = null;
         this.jdbiStatement.addCleanable(Cleanables.forResultSet(results));
     }
 
+    /**
+     * Creates a new wrapper object for generated keys which have already been read and mapped,
+     * and whose statement has been cleaned up.
+     *
+     * @param mapped The mapped keys
+     */
+    GeneratedKeys(List<Type> mapped,
+                  SQLStatement<?> jdbiStatement,
+                  StatementContext context,
+                  ContainerFactoryRegistry containerFactoryRegistry)
+    {
+        this.mapper = null;
+        this.jdbiStatement = jdbiStatement;
+        this.results = null;
+        this.context = context;
+        this.containerFactoryRegistry = containerFactoryRegistry.createChild();
+        this.mapped = mapped;
+    }
+
     /**
      * Returns the first generated key.
      *
@@ -69,6 +103,9 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
      */
     public Type first()
     {
+        if (mapped != null) {
+            return mapped.isEmpty() ? null : mapped.get(0);
+        }
         try {
             if (results != null && results.next()) {
                 return mapper.map(0, results, context);
@@ -86,20 +123,32 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
         }
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T first(Class<T> containerType)
     {
-//        return containerFactoryRegistry.lookup(containerType).create(Arrays.asList(first()));
-        throw new UnsupportedOperationException("Not Yet Implemented!");
+        final ContainerBuilder<T> builder = containerFactoryRegistry.createBuilderFor(containerType);
+        final Type first = first();
+        if (first != null) {
+            builder.add(first);
+        }
+        return builder.build();
     }
 
+    @SuppressWarnings("unchecked")
     public <ContainerType> ContainerType list(Class<ContainerType> containerType)
     {
-//        return containerFactoryRegistry.lookup(containerType).create(Arrays.asList(list()));
-        throw new UnsupportedOperationException("Not Yet Implemented!");
+        final ContainerBuilder<ContainerType> builder = containerFactoryRegistry.createBuilderFor(containerType);
+        for (Type key : list()) {
+            builder.add(key);
+        }
+        return builder.build();
     }
 
     public List<Type> list(int maxRows)
     {
+        if (mapped != null) {
+            return new ArrayList<Type>(mapped.subList(0, Math.min(maxRows, mapped.size())));
+        }
         try {
             int idx = 0;
             List<Type> resultList = new ArrayList<Type>();
@@ -137,8 +186,40 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
      */
     public ResultIterator<Type> iterator()
     {
+        if (mapped != null) {
+            final Iterator<Type> keys = mapped.iterator();
+            return new ResultIterator<Type>()
+            {
+                public boolean hasNext()
+                {
+                    return keys.hasNext();
+                }
+
+                public Type next()
+                {
+                    return keys.next();
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("Deleting from a result set iterator is not yet supported");
+                }
+
+                public void close()
+                {
+                }
+            };
+        }
         try {
-            return new ResultSetResultIterator<Type>(mapper, jdbiStatement, stmt, context);
+            OpenCursors.checkBudget(jdbiStatement.getHandle(), context);
+        }
+        catch (RuntimeException e) {
+            // the keys will not be read, so let go of their statement
+            jdbiStatement.cleanup();
+            throw e;
+        }
+        try {
+            return new ResultSetResultIterator<Type>(mapper, jdbiStatement, results, context);
         }
         catch (SQLException e) {
             throw new ResultSetException("Exception thrown while attempting to traverse the result set", e, context);
@@ -157,9 +238,13 @@ public class GeneratedKeys<Type> implements ResultBearing<Type>
      * @return The return value from the last invocation of {@link Folder#fold(Object, java.sql.ResultSet)}
      *
      * @see org.skife.jdbi.v2.Folder
+     * @throws UnsupportedOperationException if the keys were mapped already, as those of a batch are
      */
     public <AccumulatorType> AccumulatorType fold(AccumulatorType accumulator, final Folder2<AccumulatorType> folder)
     {
+        if (mapped != null) {
+            throw new UnsupportedOperationException("the generated keys have been mapped already and can not be folded over");
+        }
         try {
             AccumulatorType value = accumulator;
 
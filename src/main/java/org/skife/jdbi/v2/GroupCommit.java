@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs many small transactions as one, so that they share a single commit. Callbacks are queued,
+ * and a committer thread runs them one after the other in a transaction on a handle of its own,
+ * each under a checkpoint of its own, then commits them together.
+ * <p>
+ * A callback which throws an exception, or sets its transaction status to rollback only, is
+ * rolled back to its checkpoint, and its future fails, while the others of the group go on. The
+ * futures of the others complete once the group is committed, and fail if the commit fails.
+ * Callbacks receive the shared handle already in a transaction, and must not begin, commit or
+ * roll back the transaction themselves.
+ * <p>
+ * The committer starts a group with the callbacks queued while the previous group ran, waiting
+ * for more for up to a {@link Configuration#withGroupInterval(long, TimeUnit) while}, until it has
+ * {@link Configuration#withMaxGroupSize(int) enough}. Callbacks which are submitted before
+ * {@link #close()} are committed before it returns.
+ * <p>
+ * Should the committer itself fail, every callback not yet committed fails with the cause, and
+ * submitting more throws an {@link IllegalStateException}.
+ */
+public class GroupCommit implements Closeable
+{
+    private final IDBI                     dbi;
+    private final Configuration            configuration;
+    private final BlockingQueue<Member<?>> queue;
+    private final Thread                   committer;
+
+    // submitting holds the read lock, so that nothing is queued after the member which stops the committer
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+    private volatile Throwable died;
+    private Handle handle;
+
+    public GroupCommit(IDBI dbi)
+    {
+        this(dbi, new Configuration());
+    }
+
+    public GroupCommit(IDBI dbi, Configuration configuration)
+    {
+        this.dbi = dbi;
+        this.configuration = configuration;
+        this.queue = new ArrayBlockingQueue<Member<?>>(configuration.maxQueued);
+        this.committer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                commitUntilClosed();
+            }
+        }, "jdbi-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Queue a callback to run in the next group.
+     *
+     * @return the value returned by the callback, once its group has been committed
+     */
+    public <T> Future<T> submit(TransactionCallback<T> callback)
+    {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback is null");
+        }
+        return put(new Member<T>(callback));
+    }
+
+    /**
+     * Commit all callbacks submitted so far, waiting until they are committed.
+     */
+    public void flush()
+    {
+        try {
+            put(new Member<Object>(null)).get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("unable to flush", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while flushing", e);
+        }
+    }
+
+    /**
+     * Commit all submitted callbacks and stop the committer. Callbacks may not be submitted after this.
+     */
+    public void close()
+    {
+        closing.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            if (died == null) {
+                // wakes the committer, which commits everything before it and stops
+                queue.put(new Member<Object>(null));
+            }
+            committer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while closing", e);
+        }
+    }
+
+    private <T> Future<T> put(Member<T> member)
+    {
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("group commit is closed");
+            }
+            if (died != null) {
+                throw new IllegalStateException("group committer has died", died);
+            }
+            queue.put(member);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while submitting a callback", e);
+        }
+        finally {
+            closing.readLock().unlock();
+        }
+        return member.future;
+    }
+
+    private void commitUntilClosed()
+    {
+        final List<Member<?>> group = new ArrayList<Member<?>>(configuration.maxGroupSize);
+        try {
+            while (!(closed && queue.isEmpty())) {
+                group.add(queue.take());
+                final long deadline = System.nanoTime() + configuration.groupIntervalNanos;
+                while (group.size() < configuration.maxGroupSize && !group.get(group.size() - 1).isBarrier()) {
+                    final Member<?> member = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (member == null) {
+                        break;
+                    }
+                    group.add(member);
+                }
+                commit(group);
+                group.clear();
+            }
+        }
+        catch (Throwable e) {
+            die(e, group);
+        }
+        finally {
+            closeHandle();
+        }
+    }
+
+    /**
+     * Fail every callback not yet committed, and stop callbacks being queued.
+     */
+    private void die(Throwable cause, List<Member<?>> group)
+    {
+        died = cause;
+        for (Member<?> member : group) {
+            member.future.fail(cause);
+        }
+        // threads blocked queueing into a full queue hold the read lock, so drain until they are done
+        try {
+            while (!closing.writeLock().tryLock(10, TimeUnit.MILLISECONDS)) {
+                failQueued(cause);
+            }
+        }
+        catch (InterruptedException e) {
+            closing.writeLock().lock();
+        }
+        try {
+            failQueued(cause);
+        }
+        finally {
+            closing.writeLock().unlock();
+        }
+    }
+
+    private void failQueued(Throwable cause)
+    {
+        Member<?> member;
+        while ((member = queue.poll()) != null) {
+            member.future.fail(cause);
+        }
+    }
+
+    private void commit(List<Member<?>> group)
+    {
+        if (hasWork(group)) {
+            final List<Member<?>> succeeded = new ArrayList<Member<?>>(group.size());
+            try {
+                if (handle == null) {
+                    handle = dbi.open();
+                }
+                handle.begin();
+                for (int i = 0; i < group.size(); i++) {
+                    final Member<?> member = group.get(i);
+                    if (member.isBarrier() || member.future.isCancelled()) {
+                        continue;
+                    }
+                    final String checkpoint = "group_commit_" + i;
+                    handle.checkpoint(checkpoint);
+                    if (member.run(handle)) {
+                        handle.release(checkpoint);
+                        succeeded.add(member);
+                    }
+                    else {
+                        handle.rollback(checkpoint);
+                    }
+                }
+                handle.commit();
+            }
+            catch (Throwable e) {
+                // the connection may be broken, so start afresh with the next group
+                rollbackAndCloseHandle();
+                for (Member<?> member : group) {
+                    if (!member.isBarrier()) {
+                        member.future.fail(e);
+                    }
+                }
+                succeeded.clear();
+            }
+            for (Member<?> member : succeeded) {
+                member.succeed();
+            }
+        }
+
+        for (Member<?> member : group) {
+            if (member.isBarrier()) {
+                member.succeed();
+            }
+        }
+    }
+
+    private static boolean hasWork(List<Member<?>> group)
+    {
+        for (Member<?> member : group) {
+            if (!member.isBarrier() && !member.future.isCancelled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rollbackAndCloseHandle()
+    {
+        if (handle != null) {
+            try {
+                handle.rollback();
+            }
+            catch (RuntimeException e) {
+                // already failing, closing the handle is all that is left
+            }
+        }
+        closeHandle();
+    }
+
+    private void closeHandle()
+    {
+        if (handle != null) {
+            try {
+                handle.close();
+            }
+            catch (RuntimeException e) {
+                // already failing, nothing more to do
+            }
+            handle = null;
+        }
+    }
+
+    private static final class Member<T>
+    {
+        private final TransactionCallback<T> callback;
+        private final MemberFuture<T>        future = new MemberFuture<T>();
+
+        private T       result;
+        private boolean rollbackOnly = false;
+
+        Member(TransactionCallback<T> callback)
+        {
+            this.callback = callback;
+        }
+
+        boolean isBarrier()
+        {
+            return callback == null;
+        }
+
+        /**
+         * Run the callback, failing the future if it fails.
+         *
+         * @return whether the callback succeeded
+         */
+        boolean run(Handle handle)
+        {
+            try {
+                result = callback.inTransaction(handle, new TransactionStatus()
+                {
+                    public void setRollbackOnly()
+                    {
+                        rollbackOnly = true;
+                    }
+                });
+            }
+            catch (Throwable e) {
+                future.fail(e);
+                return false;
+            }
+            if (rollbackOnly) {
+                future.fail(new TransactionFailedException("Transaction failed due to transaction status being set " +
+                                                           "to rollback only."));
+                return false;
+            }
+            return true;
+        }
+
+        void succeed()
+        {
+            future.succeed(result);
+        }
+    }
+
+    private static final class MemberFuture<T> extends FutureTask<T>
+    {
+        MemberFuture()
+        {
+            super(new Callable<T>()
+            {
+                public T call()
+                {
+                    return null;
+                }
+            });
+        }
+
+        void succeed(T result)
+        {
+            set(result);
+        }
+
+        void fail(Throwable cause)
+        {
+            setException(cause);
+        }
+    }
+
+    public static class Configuration
+    {
+        private final int  maxQueued;
+        private final int  maxGroupSize;
+        private final long groupIntervalNanos;
+
+        public Configuration()
+        {
+            this(10000, 100, 0);
+        }
+
+        private Configuration(int maxQueued, int maxGroupSize, long groupIntervalNanos)
+        {
+            this.maxQueued = maxQueued;
+            this.maxGroupSize = maxGroupSize;
+            this.groupIntervalNanos = groupIntervalNanos;
+        }
+
+        /**
+         * The most callbacks to hold in the queue before threads submitting callbacks block.
+         * Defaults to 10000.
+         */
+        public Configuration withMaxQueued(int maxQueued)
+        {
+            return new Configuration(maxQueued, maxGroupSize, groupIntervalNanos);
+        }
+
+        /**
+         * The most callbacks to commit together. Defaults to 100.
+         */
+        public Configuration withMaxGroupSize(int maxGroupSize)
+        {
+            return new Configuration(maxQueued, maxGroupSize, groupIntervalNanos);
+        }
+
+        /**
+         * How long to wait for more callbacks after the first of a group before running them.
+         * Defaults to 0, which groups the callbacks queued while the previous group ran.
+         */
+        public Configuration withGroupInterval(long interval, TimeUnit unit)
+        {
+            return new Configuration(maxQueued, maxGroupSize, unit.toNanos(interval));
+        }
+    }
+}
@@ -37,7 +37,13 @@ public interface Handle extends Closeable
 {
 
     /**
-     * Get the JDBC Connection this Handle uses
+     * Get the JDBC Connection this Handle uses. Any updates deferred by {@link #setAutoBatchSize(int)}
+     * are sent first.
+     * <p>
+     * The connection is a wrapper which remembers the autocommit, isolation and read only state of
+     * the connection of the driver, so it cannot be cast to a driver type; use
+     * {@link Connection#unwrap(Class)} for that. Once unwrapped, the wrapper stops remembering the
+     * state, as it may be changed on the connection of the driver.
      * @return the JDBC Connection this Handle uses
      */
     Connection getConnection();
@@ -127,6 +133,40 @@ public interface Handle extends Closeable
      */
     PreparedBatch prepareBatch(String sql);
 
+    /**
+     * Prepare to load rows into a table, using a native bulk load facility of the database
+     * when there is one. This is for loading large numbers of rows quickly.
+     * @param table the table to load into
+     * @param columns the columns to load, in the order of the values of each row
+     * @return a bulk load which rows can be loaded with
+     * @see PreparedBatch
+     */
+    BulkLoad bulkLoad(String table, String... columns);
+
+    /**
+     * Batch updates instead of executing them one at a time. Consecutive executions of an
+     * {@link Update} with the same sql are deferred and sent to the database together, in batches
+     * of up to <code>rows</code> statements. A deferred update returns {@link java.sql.Statement#SUCCESS_NO_INFO}
+     * as its count, and any failure is reported when its batch is sent.
+     * <p>
+     * The pending batch is sent before the handle does anything else with its connection: before
+     * any other statement, commit, checkpoint, change of transaction settings, or close. A rollback
+     * discards it when in a transaction, and sends it otherwise, as autocommitted updates would have
+     * been. Updates which have been customized, or return generated keys, are not deferred.
+     *
+     * @param rows the most updates to hold, or 0 to execute updates as they are made. Changing it
+     *             sends the pending batch.
+     * @see #flushAutoBatch()
+     */
+    void setAutoBatchSize(int rows);
+
+    /**
+     * Send the updates deferred by {@link #setAutoBatchSize(int)} to the database.
+     *
+     * @return the update counts of every update deferred since the last call
+     */
+    UpdateCounts flushAutoBatch();
+
     /**
      * Create a non-prepared (no bound parameters, but different SQL, batch statement
      * @return empty batch
@@ -191,6 +231,40 @@ public interface Handle extends Closeable
      */
     void execute(String sql, Object... args);
 
+    /**
+     * Bound the statements executed on this handle by a deadline. Each statement gets the time left
+     * until the earlier of this deadline and that of the thread, see {@link Deadline#setCurrent(Deadline)}.
+     *
+     * @param deadline the deadline, or null for none
+     */
+    void setDeadline(Deadline deadline);
+
+    /**
+     * The deadline of the statements executed on this handle, or null if there is none.
+     */
+    Deadline getDeadline();
+
+    /**
+     * Limit how many result iterators may be open on this handle at once, each of which keeps a
+     * statement and result set open until it is exhausted or closed. Opening more fails with an
+     * {@link org.skife.jdbi.v2.exceptions.UnableToCreateStatementException}. Iterators dropped
+     * without being closed are closed, and reported to the {@link SQLLog}, once they are garbage
+     * collected and the handle opens another iterator or is closed.
+     *
+     * @param max the most iterators open at once, or 0 for no limit, which is the default
+     */
+    void setMaxOpenCursors(int max);
+
+    /**
+     * The most result iterators which may be open on this handle at once, or 0 for no limit.
+     */
+    int getMaxOpenCursors();
+
+    /**
+     * The number of result iterators open on this handle.
+     */
+    int getOpenCursorCount();
+
     /**
      * Create a transaction checkpoint (savepoint in JDBC terminology) with the name provided.
      * @param name The name of the checkpoint
@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.tweak.StatementBuilder;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs reads on the replicas of a {@link DBI}, hedging against a slow replica. A read runs on a
+ * handle from {@link DBI#openReadOnly()}, and if it has not finished once it took longer than most
+ * reads of the same fingerprint did (the {@link Configuration#withPercentile(double) 95th}
+ * percentile of the recent ones), it runs again on a second read only handle, which goes to the
+ * replica with the fewest handles open. The first to finish wins, and the statements of the other
+ * are cancelled and its handle closed. The attempts run on the {@link Configuration#withExecutor(ExecutorService)
+ * executor}, the {@link DBI#getExecutor() one of the DBI} unless configured.
+ * <p>
+ * A thread which reads from the primary, as it is within the read your writes window or there are
+ * no replicas, runs the read once, itself, as there is nothing to hedge against.
+ * <p>
+ * Reads run twice at times, so they must not write, and must not depend on running once.
+ */
+public class HedgedReads
+{
+    private final DBI                                dbi;
+    private final Configuration                      configuration;
+    private final ConcurrentMap<String, Latencies>   latencies = new ConcurrentHashMap<String, Latencies>();
+    private final AtomicLong                         hedges = new AtomicLong();
+    private final AtomicLong                         hedgeWins = new AtomicLong();
+
+    public HedgedReads(DBI dbi)
+    {
+        this(dbi, new Configuration());
+    }
+
+    public HedgedReads(DBI dbi, Configuration configuration)
+    {
+        this.dbi = dbi;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Run a query, using its sql as the fingerprint, and map all of its rows.
+     */
+    public <T> List<T> list(final String sql, final ResultSetMapper<T> mapper, final Object... args) throws CallbackFailedException
+    {
+        return withHandle(sql, new HandleCallback<List<T>>()
+        {
+            public List<T> withHandle(Handle handle)
+            {
+                final Query<T> query = handle.createQuery(sql).map(mapper);
+                for (int i = 0; i < args.length; i++) {
+                    query.bind(i, args[i]);
+                }
+                return query.list();
+            }
+        });
+    }
+
+    /**
+     * Yield a read only handle to a callback, and a second one if the first takes long.
+     *
+     * @param fingerprint names the read, so reads which take about as long share their latencies
+     * @param callback    a callback which only reads
+     *
+     * @return the value returned by the callback which finished first
+     *
+     * @throws CallbackFailedException if both callbacks fail, wrapping the exception of the first
+     */
+    public <ReturnType> ReturnType withHandle(String fingerprint, HandleCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        // asked here, as the attempts run on other threads, which know nothing of this one's writes
+        if (dbi.readsFromPrimary()) {
+            return dbi.withHandle(callback);
+        }
+
+        Latencies latency = latencies.get(fingerprint);
+        if (latency == null) {
+            latencies.putIfAbsent(fingerprint, new Latencies(configuration));
+            latency = latencies.get(fingerprint);
+        }
+
+        final long start = System.nanoTime();
+        final BlockingQueue<Attempt<ReturnType>> done = new LinkedBlockingQueue<Attempt<ReturnType>>();
+        final Attempt<ReturnType> first = start(callback, done);
+        Attempt<ReturnType> second = null;
+        try {
+            Attempt<ReturnType> winner = done.poll(latency.getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            if (winner == null) {
+                hedges.incrementAndGet();
+                second = start(callback, done);
+                winner = done.take();
+            }
+            if (winner.failure != null && second != null) {
+                // the other may still succeed
+                winner = done.take();
+            }
+
+            if (winner.failure != null) {
+                throw new CallbackFailedException(first.failure != null ? first.failure : winner.failure);
+            }
+            if (winner == second) {
+                hedgeWins.incrementAndGet();
+            }
+            latency.record(System.nanoTime() - start);
+            return winner.result;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallbackFailedException(e);
+        }
+        finally {
+            first.cancel();
+            if (second != null) {
+                second.cancel();
+            }
+        }
+    }
+
+    private <ReturnType> Attempt<ReturnType> start(HandleCallback<ReturnType> callback,
+                                                   BlockingQueue<Attempt<ReturnType>> done)
+    {
+        final Attempt<ReturnType> attempt = new Attempt<ReturnType>(callback, done);
+        final ExecutorService executor = configuration.executor;
+        (executor == null ? dbi.getExecutor() : executor).execute(attempt);
+        return attempt;
+    }
+
+    /**
+     * How long a read of the fingerprint runs before it is hedged.
+     */
+    public long getHedgeDelay(String fingerprint, TimeUnit unit)
+    {
+        final Latencies latency = latencies.get(fingerprint);
+        final long nanos = latency == null ? configuration.initialDelayNanos : latency.getHedgeDelayNanos();
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The number of reads which ran a second time.
+     */
+    public long getHedgeCount()
+    {
+        return hedges.get();
+    }
+
+    /**
+     * The number of reads which ran a second time, and which the second run finished first.
+     */
+    public long getHedgeWinCount()
+    {
+        return hedgeWins.get();
+    }
+
+    /**
+     * One run of a read, on a handle of its own. It builds the statements of the handle itself,
+     * so it knows which to cancel.
+     */
+    private final class Attempt<ReturnType> implements Runnable, StatementBuilder
+    {
+        private final HandleCallback<ReturnType>         callback;
+        private final BlockingQueue<Attempt<ReturnType>> done;
+        private final List<Statement>                    open = new ArrayList<Statement>();
+
+        private StatementBuilder builder;
+        private boolean          cancelled = false;
+
+        private volatile ReturnType result;
+        private volatile Exception  failure;
+
+        Attempt(HandleCallback<ReturnType> callback, BlockingQueue<Attempt<ReturnType>> done)
+        {
+            this.callback = callback;
+            this.done = done;
+        }
+
+        public void run()
+        {
+            Handle handle = null;
+            try {
+                handle = dbi.openReplica();
+                builder = dbi.getStatementBuilderFactory().createStatementBuilder(handle.getConnection());
+                handle.setStatementBuilder(this);
+                result = callback.withHandle(handle);
+            }
+            catch (Exception e) {
+                failure = e;
+            }
+            finally {
+                try {
+                    if (handle != null) {
+                        Cleanables.forHandle(handle, TransactionState.ROLLBACK).cleanup();
+                    }
+                }
+                catch (SQLException e) {
+                    // the result is in, and the handle is gone
+                }
+                catch (RuntimeException e) {
+                    // the result is in, and the handle is gone
+                }
+                done.add(this);
+            }
+        }
+
+        /**
+         * Cancel the statements which are executing, and any made from now on.
+         */
+        void cancel()
+        {
+            final List<Statement> executing;
+            synchronized (this) {
+                cancelled = true;
+                executing = new ArrayList<Statement>(open);
+            }
+            for (Statement stmt : executing) {
+                try {
+                    Cleanables.forCancel(stmt).cleanup();
+                }
+                catch (SQLException e) {
+                    // it may have finished or been closed meanwhile
+                }
+            }
+        }
+
+        private synchronized <S extends Statement> S opened(S stmt) throws SQLException
+        {
+            if (cancelled) {
+                stmt.close();
+                throw new SQLException("hedged read was cancelled");
+            }
+            open.add(stmt);
+            return stmt;
+        }
+
+        public PreparedStatement create(Connection conn, String sql, StatementContext ctx) throws SQLException
+        {
+            return opened(builder.create(conn, sql, ctx));
+        }
+
+        public CallableStatement createCall(Connection conn, String sql, StatementContext ctx) throws SQLException
+        {
+            return opened(builder.createCall(conn, sql, ctx));
+        }
+
+        public void close(Connection conn, String sql, Statement stmt) throws SQLException
+        {
+            synchronized (this) {
+                open.remove(stmt);
+            }
+            builder.close(conn, sql, stmt);
+        }
+
+        public void close(Connection conn)
+        {
+            builder.close(conn);
+        }
+    }
+
+    /**
+     * The recent latencies of a fingerprint, from which the hedge delay is taken every so often.
+     */
+    private static final class Latencies
+    {
+        private static final int RECOMPUTE_EVERY = 16;
+
+        private final Configuration configuration;
+        private final long[]        samples;
+        private       int           count = 0;
+
+        private volatile long hedgeDelayNanos;
+
+        Latencies(Configuration configuration)
+        {
+            this.configuration = configuration;
+            this.samples = new long[configuration.window];
+            this.hedgeDelayNanos = configuration.initialDelayNanos;
+        }
+
+        long getHedgeDelayNanos()
+        {
+            return hedgeDelayNanos;
+        }
+
+        synchronized void record(long nanos)
+        {
+            samples[count % samples.length] = nanos;
+            count++;
+            if (count % RECOMPUTE_EVERY == 0) {
+                final long[] sorted = Arrays.copyOf(samples, Math.min(count, samples.length));
+                Arrays.sort(sorted);
+                final int index = (int) Math.ceil(configuration.percentile * sorted.length) - 1;
+                hedgeDelayNanos = Math.max(configuration.minDelayNanos, sorted[Math.max(0, index)]);
+            }
+        }
+    }
+
+    public static class Configuration
+    {
+        private final double          percentile;
+        private final long            initialDelayNanos;
+        private final long            minDelayNanos;
+        private final int             window;
+        private final ExecutorService executor;
+
+        public Configuration()
+        {
+            this(0.95, TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(1), 128, null);
+        }
+
+        private Configuration(double percentile, long initialDelayNanos, long minDelayNanos, int window,
+                              ExecutorService executor)
+        {
+            if (percentile <= 0 || percentile > 1) {
+                throw new IllegalArgumentException("percentile must be in (0, 1], was " + percentile);
+            }
+            if (window < 1) {
+                throw new IllegalArgumentException("window must be positive, was " + window);
+            }
+            this.percentile = percentile;
+            this.initialDelayNanos = initialDelayNanos;
+            this.minDelayNanos = minDelayNanos;
+            this.window = window;
+            this.executor = executor;
+        }
+
+        /**
+         * The percentile of recent latencies after which a read is hedged. Defaults to 0.95.
+         */
+        public Configuration withPercentile(double percentile)
+        {
+            return new Configuration(percentile, initialDelayNanos, minDelayNanos, window, executor);
+        }
+
+        /**
+         * How long reads of a fingerprint run before they are hedged until enough have finished to
+         * know better. Defaults to 50 milliseconds.
+         */
+        public Configuration withInitialDelay(long delay, TimeUnit unit)
+        {
+            return new Configuration(percentile, unit.toNanos(delay), minDelayNanos, window, executor);
+        }
+
+        /**
+         * The shortest time a read runs before it is hedged, however fast reads of its
+         * fingerprint were. Defaults to 1 millisecond.
+         */
+        public Configuration withMinDelay(long delay, TimeUnit unit)
+        {
+            return new Configuration(percentile, initialDelayNanos, unit.toNanos(delay), window, executor);
+        }
+
+        /**
+         * How many of the latest latencies of a fingerprint the percentile is taken from.
+         * Defaults to 128.
+         */
+        public Configuration withWindow(int window)
+        {
+            return new Configuration(percentile, initialDelayNanos, minDelayNanos, window, executor);
+        }
+
+        /**
+         * The executor the attempts of reads run on. Defaults to that of the {@link DBI}, see
+         * {@link DBI#setExecutor(ExecutorService)}.
+         */
+        public Configuration withExecutor(ExecutorService executor)
+        {
+            return new Configuration(percentile, initialDelayNanos, minDelayNanos, window, executor);
+        }
+    }
+}
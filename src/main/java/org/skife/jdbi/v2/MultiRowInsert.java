@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An <code>INSERT ... VALUES (?, ...)</code> statement which can be expanded to insert
+ * several rows at once, <code>INSERT ... VALUES (?, ...), (?, ...)</code>.
+ */
+final class MultiRowInsert
+{
+    private final String               sql;
+    private final String               prefix;
+    private final String               row;
+    private final int                  parameters;
+    private final Map<Integer, String> expanded = new HashMap<Integer, String>();
+
+    private MultiRowInsert(String sql, String prefix, String row, int parameters)
+    {
+        this.sql = sql;
+        this.prefix = prefix;
+        this.row = row;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @param sql the statement as prepared, after rewriting
+     * @return the statement, or null if it is not an insert of a single parameterized row
+     */
+    static MultiRowInsert parse(String sql)
+    {
+        final String trimmed = sql.trim();
+        if (!trimmed.regionMatches(true, 0, "insert", 0, 6)) {
+            return null;
+        }
+
+        int values = -1;
+        int open = -1;
+        int close = -1;
+        int depth = 0;
+        int parameters = 0;
+        int parametersInRow = 0;
+        for (int i = 0; i < trimmed.length(); i++) {
+            final char c = trimmed.charAt(i);
+            if (c == '\'' || c == '"') {
+                final int end = trimmed.indexOf(c, i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                i = end;
+            }
+            else if (c == '?') {
+                parameters++;
+                if (open >= 0 && close < 0) {
+                    parametersInRow++;
+                }
+            }
+            else if (c == '(') {
+                if (values >= 0 && open < 0 && depth == 0) {
+                    open = i;
+                }
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+                if (open >= 0 && close < 0 && depth == 0) {
+                    close = i;
+                }
+            }
+            else if (close >= 0 && !Character.isWhitespace(c)) {
+                // something follows the row, such as a second row or an on duplicate key clause
+                return null;
+            }
+            else if (values < 0 && depth == 0 && isKeyword(trimmed, i, "values")) {
+                values = i;
+                i += 5;
+            }
+            else if (values >= 0 && open < 0 && !Character.isWhitespace(c)) {
+                // values followed by something other than a row
+                return null;
+            }
+        }
+
+        if (close < 0 || parameters == 0 || parameters != parametersInRow) {
+            return null;
+        }
+        return new MultiRowInsert(sql, trimmed.substring(0, open), trimmed.substring(open, close + 1), parameters);
+    }
+
+    private static boolean isKeyword(String sql, int at, String keyword)
+    {
+        final int end = at + keyword.length();
+        return sql.regionMatches(true, at, keyword, 0, keyword.length())
+               && (at == 0 || !Character.isJavaIdentifierPart(sql.charAt(at - 1)))
+               && (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)));
+    }
+
+    /**
+     * The statement as given to {@link #parse(String)}
+     */
+    String getSql()
+    {
+        return sql;
+    }
+
+    /**
+     * The number of parameters in one row
+     */
+    int getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * The statement expanded to insert <code>rows</code> rows. The result is cached, so that
+     * the same string is prepared for each chunk of the same size.
+     */
+    String expand(int rows)
+    {
+        String sql = expanded.get(rows);
+        if (sql == null) {
+            final StringBuilder b = new StringBuilder(prefix.length() + rows * (row.length() + 2));
+            b.append(prefix).append(row);
+            for (int i = 1; i < rows; i++) {
+                b.append(", ").append(row);
+            }
+            sql = b.toString();
+            expanded.put(rows, sql);
+        }
+        return sql;
+    }
+}
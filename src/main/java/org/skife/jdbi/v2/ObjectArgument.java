@@ -33,6 +33,11 @@ class ObjectArgument implements Argument
         this.value = value;
     }
 
+    Object getValue()
+    {
+        return value;
+    }
+
     public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
     {
         if (value != null) {
@@ -0,0 +1,580 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Shifts the index of every parameter set on a prepared statement by an offset, so that the
+ * arguments of one part of a batch bind to the parameters of a later row of a multi row insert.
+ * Everything else goes straight to the statement.
+ */
+final class OffsetPreparedStatement implements PreparedStatement
+{
+    private final PreparedStatement stmt;
+    private int offset = 0;
+
+    OffsetPreparedStatement(PreparedStatement stmt)
+    {
+        this.stmt = stmt;
+    }
+
+    void setOffset(int offset)
+    {
+        this.offset = offset;
+    }
+
+    int getOffset()
+    {
+        return offset;
+    }
+
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException
+    {
+        stmt.setBoolean(offset + parameterIndex, x);
+    }
+
+    public void setByte(int parameterIndex, byte x) throws SQLException
+    {
+        stmt.setByte(offset + parameterIndex, x);
+    }
+
+    public void setShort(int parameterIndex, short x) throws SQLException
+    {
+        stmt.setShort(offset + parameterIndex, x);
+    }
+
+    public void setInt(int parameterIndex, int x) throws SQLException
+    {
+        stmt.setInt(offset + parameterIndex, x);
+    }
+
+    public void setLong(int parameterIndex, long x) throws SQLException
+    {
+        stmt.setLong(offset + parameterIndex, x);
+    }
+
+    public void setFloat(int parameterIndex, float x) throws SQLException
+    {
+        stmt.setFloat(offset + parameterIndex, x);
+    }
+
+    public void setDouble(int parameterIndex, double x) throws SQLException
+    {
+        stmt.setDouble(offset + parameterIndex, x);
+    }
+
+    public void setURL(int parameterIndex, URL x) throws SQLException
+    {
+        stmt.setURL(offset + parameterIndex, x);
+    }
+
+    public void setArray(int parameterIndex, Array x) throws SQLException
+    {
+        stmt.setArray(offset + parameterIndex, x);
+    }
+
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException
+    {
+        stmt.setTime(offset + parameterIndex, x, cal);
+    }
+
+    public void setTime(int parameterIndex, Time x) throws SQLException
+    {
+        stmt.setTime(offset + parameterIndex, x);
+    }
+
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException
+    {
+        stmt.setDate(offset + parameterIndex, x, cal);
+    }
+
+    public void setDate(int parameterIndex, Date x) throws SQLException
+    {
+        stmt.setDate(offset + parameterIndex, x);
+    }
+
+    public void setNull(int parameterIndex, int sqlType) throws SQLException
+    {
+        stmt.setNull(offset + parameterIndex, sqlType);
+    }
+
+    public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException
+    {
+        stmt.setNull(offset + parameterIndex, sqlType, typeName);
+    }
+
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException
+    {
+        stmt.setBigDecimal(offset + parameterIndex, x);
+    }
+
+    public void setString(int parameterIndex, String x) throws SQLException
+    {
+        stmt.setString(offset + parameterIndex, x);
+    }
+
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException
+    {
+        stmt.setBytes(offset + parameterIndex, x);
+    }
+
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException
+    {
+        stmt.setTimestamp(offset + parameterIndex, x, cal);
+    }
+
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException
+    {
+        stmt.setTimestamp(offset + parameterIndex, x);
+    }
+
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException
+    {
+        stmt.setAsciiStream(offset + parameterIndex, x);
+    }
+
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException
+    {
+        stmt.setAsciiStream(offset + parameterIndex, x, length);
+    }
+
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException
+    {
+        stmt.setAsciiStream(offset + parameterIndex, x, length);
+    }
+
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException
+    {
+        stmt.setUnicodeStream(offset + parameterIndex, x, length);
+    }
+
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException
+    {
+        stmt.setBinaryStream(offset + parameterIndex, x);
+    }
+
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException
+    {
+        stmt.setBinaryStream(offset + parameterIndex, x, length);
+    }
+
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException
+    {
+        stmt.setBinaryStream(offset + parameterIndex, x, length);
+    }
+
+    public void setObject(int parameterIndex, Object x) throws SQLException
+    {
+        stmt.setObject(offset + parameterIndex, x);
+    }
+
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException
+    {
+        stmt.setObject(offset + parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException
+    {
+        stmt.setObject(offset + parameterIndex, x, targetSqlType);
+    }
+
+    public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException
+    {
+        stmt.setCharacterStream(offset + parameterIndex, x, length);
+    }
+
+    public void setCharacterStream(int parameterIndex, Reader x) throws SQLException
+    {
+        stmt.setCharacterStream(offset + parameterIndex, x);
+    }
+
+    public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException
+    {
+        stmt.setCharacterStream(offset + parameterIndex, x, length);
+    }
+
+    public void setRef(int parameterIndex, Ref x) throws SQLException
+    {
+        stmt.setRef(offset + parameterIndex, x);
+    }
+
+    public void setBlob(int parameterIndex, Blob x) throws SQLException
+    {
+        stmt.setBlob(offset + parameterIndex, x);
+    }
+
+    public void setBlob(int parameterIndex, InputStream x) throws SQLException
+    {
+        stmt.setBlob(offset + parameterIndex, x);
+    }
+
+    public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException
+    {
+        stmt.setBlob(offset + parameterIndex, x, length);
+    }
+
+    public void setClob(int parameterIndex, Clob x) throws SQLException
+    {
+        stmt.setClob(offset + parameterIndex, x);
+    }
+
+    public void setClob(int parameterIndex, Reader x, long length) throws SQLException
+    {
+        stmt.setClob(offset + parameterIndex, x, length);
+    }
+
+    public void setClob(int parameterIndex, Reader x) throws SQLException
+    {
+        stmt.setClob(offset + parameterIndex, x);
+    }
+
+    public void setRowId(int parameterIndex, RowId x) throws SQLException
+    {
+        stmt.setRowId(offset + parameterIndex, x);
+    }
+
+    public void setNString(int parameterIndex, String x) throws SQLException
+    {
+        stmt.setNString(offset + parameterIndex, x);
+    }
+
+    public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException
+    {
+        stmt.setNCharacterStream(offset + parameterIndex, x);
+    }
+
+    public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException
+    {
+        stmt.setNCharacterStream(offset + parameterIndex, x, length);
+    }
+
+    public void setNClob(int parameterIndex, Reader x, long length) throws SQLException
+    {
+        stmt.setNClob(offset + parameterIndex, x, length);
+    }
+
+    public void setNClob(int parameterIndex, Reader x) throws SQLException
+    {
+        stmt.setNClob(offset + parameterIndex, x);
+    }
+
+    public void setNClob(int parameterIndex, NClob x) throws SQLException
+    {
+        stmt.setNClob(offset + parameterIndex, x);
+    }
+
+    public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException
+    {
+        stmt.setSQLXML(offset + parameterIndex, x);
+    }
+
+    public boolean execute() throws SQLException
+    {
+        return stmt.execute();
+    }
+
+    public ResultSet executeQuery() throws SQLException
+    {
+        return stmt.executeQuery();
+    }
+
+    public int executeUpdate() throws SQLException
+    {
+        return stmt.executeUpdate();
+    }
+
+    public void clearParameters() throws SQLException
+    {
+        stmt.clearParameters();
+    }
+
+    public void addBatch() throws SQLException
+    {
+        stmt.addBatch();
+    }
+
+    public ResultSetMetaData getMetaData() throws SQLException
+    {
+        return stmt.getMetaData();
+    }
+
+    public ParameterMetaData getParameterMetaData() throws SQLException
+    {
+        return stmt.getParameterMetaData();
+    }
+
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException
+    {
+        return stmt.execute(sql, autoGeneratedKeys);
+    }
+
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException
+    {
+        return stmt.execute(sql, columnIndexes);
+    }
+
+    public boolean execute(String sql, String[] columnNames) throws SQLException
+    {
+        return stmt.execute(sql, columnNames);
+    }
+
+    public boolean execute(String sql) throws SQLException
+    {
+        return stmt.execute(sql);
+    }
+
+    public void close() throws SQLException
+    {
+        stmt.close();
+    }
+
+    public void cancel() throws SQLException
+    {
+        stmt.cancel();
+    }
+
+    public ResultSet executeQuery(String sql) throws SQLException
+    {
+        return stmt.executeQuery(sql);
+    }
+
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException
+    {
+        return stmt.executeUpdate(sql, autoGeneratedKeys);
+    }
+
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException
+    {
+        return stmt.executeUpdate(sql, columnIndexes);
+    }
+
+    public int executeUpdate(String sql) throws SQLException
+    {
+        return stmt.executeUpdate(sql);
+    }
+
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException
+    {
+        return stmt.executeUpdate(sql, columnNames);
+    }
+
+    public void addBatch(String sql) throws SQLException
+    {
+        stmt.addBatch(sql);
+    }
+
+    public int getMaxFieldSize() throws SQLException
+    {
+        return stmt.getMaxFieldSize();
+    }
+
+    public void setMaxFieldSize(int max) throws SQLException
+    {
+        stmt.setMaxFieldSize(max);
+    }
+
+    public int getMaxRows() throws SQLException
+    {
+        return stmt.getMaxRows();
+    }
+
+    public void setMaxRows(int rows) throws SQLException
+    {
+        stmt.setMaxRows(rows);
+    }
+
+    public void setEscapeProcessing(boolean enable) throws SQLException
+    {
+        stmt.setEscapeProcessing(enable);
+    }
+
+    public int getQueryTimeout() throws SQLException
+    {
+        return stmt.getQueryTimeout();
+    }
+
+    public void setQueryTimeout(int seconds) throws SQLException
+    {
+        stmt.setQueryTimeout(seconds);
+    }
+
+    public SQLWarning getWarnings() throws SQLException
+    {
+        return stmt.getWarnings();
+    }
+
+    public void clearWarnings() throws SQLException
+    {
+        stmt.clearWarnings();
+    }
+
+    public void setCursorName(String sql) throws SQLException
+    {
+        stmt.setCursorName(sql);
+    }
+
+    public ResultSet getResultSet() throws SQLException
+    {
+        return stmt.getResultSet();
+    }
+
+    public int getUpdateCount() throws SQLException
+    {
+        return stmt.getUpdateCount();
+    }
+
+    public boolean getMoreResults(int current) throws SQLException
+    {
+        return stmt.getMoreResults(current);
+    }
+
+    public boolean getMoreResults() throws SQLException
+    {
+        return stmt.getMoreResults();
+    }
+
+    public void setFetchDirection(int direction) throws SQLException
+    {
+        stmt.setFetchDirection(direction);
+    }
+
+    public int getFetchDirection() throws SQLException
+    {
+        return stmt.getFetchDirection();
+    }
+
+    public void setFetchSize(int rows) throws SQLException
+    {
+        stmt.setFetchSize(rows);
+    }
+
+    public int getFetchSize() throws SQLException
+    {
+        return stmt.getFetchSize();
+    }
+
+    public int getResultSetConcurrency() throws SQLException
+    {
+        return stmt.getResultSetConcurrency();
+    }
+
+    public int getResultSetType() throws SQLException
+    {
+        return stmt.getResultSetType();
+    }
+
+    public void clearBatch() throws SQLException
+    {
+        stmt.clearBatch();
+    }
+
+    public int[] executeBatch() throws SQLException
+    {
+        return stmt.executeBatch();
+    }
+
+    public Connection getConnection() throws SQLException
+    {
+        return stmt.getConnection();
+    }
+
+    public ResultSet getGeneratedKeys() throws SQLException
+    {
+        return stmt.getGeneratedKeys();
+    }
+
+    public int getResultSetHoldability() throws SQLException
+    {
+        return stmt.getResultSetHoldability();
+    }
+
+    public boolean isClosed() throws SQLException
+    {
+        return stmt.isClosed();
+    }
+
+    public void setPoolable(boolean enable) throws SQLException
+    {
+        stmt.setPoolable(enable);
+    }
+
+    public boolean isPoolable() throws SQLException
+    {
+        return stmt.isPoolable();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException
+    {
+        return stmt.unwrap(iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException
+    {
+        return stmt.isWrapperFor(iface);
+    }
+
+    public void closeOnCompletion() throws SQLException
+    {
+        invokeJava7("closeOnCompletion");
+    }
+
+    public boolean isCloseOnCompletion() throws SQLException
+    {
+        return (Boolean) invokeJava7("isCloseOnCompletion");
+    }
+
+    private Object invokeJava7(String name) throws SQLException
+    {
+        try {
+            return PreparedStatement.class.getMethod(name).invoke(stmt);
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalStateException(name + " does not exist in this Java version");
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
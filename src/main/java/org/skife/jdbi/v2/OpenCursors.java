@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.DBIException;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.logging.FormattedLog;
+import org.skife.jdbi.v2.tweak.SQLLog;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The result iterators open on a handle, each of which holds a statement and result set, and so a
+ * cursor, open on the database until it is exhausted or closed. Iterators which are dropped while
+ * still open are found through phantom references and their statements closed, the next time the
+ * handle opens an iterator or when it is closed. They are reported to a {@link FormattedLog}, with
+ * where they were opened when the log was enabled or the handle had a limit as they were opened,
+ * as recording that takes a stack trace. This
+ * happens on the thread using the handle rather than a thread of its own, as connections are not
+ * meant to be used by several threads at once.
+ */
+final class OpenCursors
+{
+    private final ReferenceQueue<Object> abandoned = new ReferenceQueue<Object>();
+    // the cursors themselves need to stay reachable for their references to be enqueued
+    private final Set<Cursor> open = new HashSet<Cursor>();
+
+    private int max = 0;
+
+    /**
+     * Track an iterator opened on a handle, or return null if the handle does not track them.
+     */
+    static Cursor open(Handle handle, ResultIterator<?> iterator, SQLStatement<?> statement)
+    {
+        if (handle instanceof BasicHandle) {
+            final BasicHandle basic = (BasicHandle) handle;
+            final OpenCursors cursors = basic.getOpenCursors();
+            return cursors.add(iterator, statement, cursors.getMax() > 0 || isLogged(basic.getSQLLog()));
+        }
+        return null;
+    }
+
+    /**
+     * Reclaim dropped iterators of a handle, then make sure there is room to open another one.
+     *
+     * @throws UnableToCreateStatementException if the handle has as many iterators open as allowed
+     */
+    static void checkBudget(Handle handle, StatementContext ctx)
+    {
+        if (handle instanceof BasicHandle) {
+            final BasicHandle basic = (BasicHandle) handle;
+            final OpenCursors cursors = basic.getOpenCursors();
+            cursors.reclaim(basic.getSQLLog(), handle);
+            final int max = cursors.getMax();
+            if (max > 0 && cursors.size() >= max) {
+                throw new UnableToCreateStatementException(String.format("Handle has %d result iterators open, the " +
+                                                                         "most allowed, close them once done", max),
+                                                           null,
+                                                           ctx);
+            }
+        }
+    }
+
+    private static boolean isLogged(SQLLog log)
+    {
+        return log instanceof FormattedLog && ((FormattedLog) log).isAbandonedIteratorLogged();
+    }
+
+    private synchronized Cursor add(ResultIterator<?> iterator, SQLStatement<?> statement, boolean recordSite)
+    {
+        final Cursor cursor = new Cursor(iterator, abandoned, statement, this, recordSite);
+        open.add(cursor);
+        return cursor;
+    }
+
+    private synchronized void remove(Cursor cursor)
+    {
+        open.remove(cursor);
+    }
+
+    synchronized int size()
+    {
+        return open.size();
+    }
+
+    synchronized int getMax()
+    {
+        return max;
+    }
+
+    synchronized void setMax(int max)
+    {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative");
+        }
+        this.max = max;
+    }
+
+    /**
+     * Close the statements of iterators which were dropped without being closed.
+     */
+    void reclaim(SQLLog log, Handle handle)
+    {
+        Reference<?> reference;
+        while ((reference = abandoned.poll()) != null) {
+            final Cursor cursor = (Cursor) reference;
+            if (cursor.release()) {
+                if (log instanceof FormattedLog) {
+                    ((FormattedLog) log).logAbandonedIterator(handle, cursor.sql, cursor.site);
+                }
+                try {
+                    cursor.statement.cleanup();
+                }
+                catch (DBIException e) {
+                    // the handle has no more use for the statement, whether or not it closed
+                }
+            }
+        }
+    }
+
+    /**
+     * The tracking of one open iterator.
+     */
+    static final class Cursor extends PhantomReference<Object>
+    {
+        private final SQLStatement<?> statement;
+        private final OpenCursors     owner;
+        private final String          sql;
+        private final Throwable       site;
+
+        private boolean released = false;
+
+        private Cursor(Object iterator,
+                       ReferenceQueue<Object> queue,
+                       SQLStatement<?> statement,
+                       OpenCursors owner,
+                       boolean recordSite)
+        {
+            super(iterator, queue);
+            this.statement = statement;
+            this.owner = owner;
+            this.sql = statement.getContext().getRawSql();
+            this.site = recordSite ? new Throwable("Result iterator opened here") : null;
+        }
+
+        private synchronized boolean release()
+        {
+            if (released) {
+                return false;
+            }
+            released = true;
+            owner.remove(this);
+            return true;
+        }
+
+        /**
+         * Stop tracking the iterator, which has been closed.
+         */
+        void close()
+        {
+            if (release()) {
+                clear();
+            }
+        }
+    }
+}
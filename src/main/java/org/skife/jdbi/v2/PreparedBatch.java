@@ -15,8 +15,12 @@
  */
 package org.skife.jdbi.v2;
 
+import org.skife.jdbi.v2.exceptions.DeadlineExceededException;
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.exceptions.TransactionException;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
 import org.skife.jdbi.v2.tweak.RewrittenStatement;
 import org.skife.jdbi.v2.tweak.SQLLog;
 import org.skife.jdbi.v2.tweak.StatementBuilder;
@@ -24,12 +28,19 @@ import org.skife.jdbi.v2.tweak.StatementCustomizer;
 import org.skife.jdbi.v2.tweak.StatementLocator;
 import org.skife.jdbi.v2.tweak.StatementRewriter;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents a prepared batch statement. That is, a sql statement compiled as a prepared
@@ -39,9 +50,25 @@ import java.util.Map;
  */
 public class PreparedBatch extends SQLStatement<PreparedBatch>
 {
+    /**
+     * Names of the drivers found to report the keys of only some parts of a batch.
+     */
+    private static final ConcurrentMap<String, Boolean> PARTIAL_BATCH_KEYS = new ConcurrentHashMap<String, Boolean>();
+
     private final List<PreparedBatchPart> parts = new ArrayList<PreparedBatchPart>();
     private Binding currentBinding;
 
+    private int                flushEvery = 0;
+    private long               flushEveryBytes = 0;
+    private RewrittenStatement streamingRewritten;
+    private PreparedStatement  streamingStatement;
+    private UpdateCounts       streamedCounts = new UpdateCounts();
+    private int                pending = 0;
+    private long               pendingBytes = 0;
+
+    private int            multiRowMaxParameters = 0;
+    private MultiRowInsert multiRowInsert;
+
     PreparedBatch(StatementLocator locator,
                   StatementRewriter rewriter,
                   Handle handle,
@@ -86,6 +113,93 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
         return this;
     }
 
+    /**
+     * Stream the batch to the database instead of holding it in memory until {@link #execute()}.
+     * Each part is bound to the prepared statement once the next part is added, and the pending
+     * statements are sent to the database every <code>rows</code> parts. Parts sent before
+     * {@link #execute()} is called have already been executed, so use a transaction if the
+     * batch must be applied atomically.
+     *
+     * @param rows the number of parts to send to the database at a time, or 0 to hold the whole
+     *             batch until {@link #execute()}
+     * @return self
+     */
+    public PreparedBatch flushEvery(int rows)
+    {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative, was " + rows);
+        }
+        if (streamingStatement != null) {
+            throw new IllegalStateException("cannot change the flush size of a batch in progress");
+        }
+        this.flushEvery = rows;
+        return this;
+    }
+
+    /**
+     * Stream the batch to the database as {@link #flushEvery(int)} does, sending the pending
+     * statements once their bound values add up to roughly <code>maxBytes</code>, counting strings
+     * as two bytes per character and other values but byte arrays as eight bytes. When a row count
+     * is set as well, whichever is reached first sends the pending statements. Beans and maps bound
+     * to a part count as eight bytes each, as their values are only looked up when bound.
+     *
+     * @param maxBytes the size of the parts to send to the database at a time, or 0 to not
+     *                 flush by size
+     * @return self
+     */
+    public PreparedBatch flushEveryBytes(long maxBytes)
+    {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative, was " + maxBytes);
+        }
+        if (streamingStatement != null) {
+            throw new IllegalStateException("cannot change the flush size of a batch in progress");
+        }
+        this.flushEveryBytes = maxBytes;
+        return this;
+    }
+
+    private boolean isStreaming()
+    {
+        return flushEvery > 0 || flushEveryBytes > 0;
+    }
+
+    /**
+     * Create a buffer which binds rows of simple values column by column instead of through
+     * batch parts, for large batches. The buffer prepares its own statement from this batch's
+     * sql, context and configuration; parts added to this batch are not part of it.
+     *
+     * @param rows the number of rows to buffer before sending them to the database
+     * @return a new buffer
+     */
+    public BatchBuffer buffer(int rows)
+    {
+        return new BatchBuffer(this, rows);
+    }
+
+    /**
+     * Send inserts of a single row as inserts of several rows, <code>INSERT ... VALUES (?, ?), (?, ?)</code>,
+     * which many databases execute much faster than a batch of single row inserts. As many rows as
+     * fit in <code>maxParameters</code> parameters go in each statement, and the rows left over go in
+     * statements of a power of two rows, so only a few distinct statements are prepared whatever the
+     * size of the batch. Statements which are not
+     * inserts of a single row of parameters are executed as a normal batch, as are streaming batches.
+     * <p>
+     * The database reports one update count per statement, so when a statement does not insert
+     * exactly one row per part the count of each of its parts is {@link java.sql.Statement#SUCCESS_NO_INFO}.
+     *
+     * @param maxParameters the most parameters to bind to one statement, or 0 to disable
+     * @return self
+     */
+    public PreparedBatch multiRowInserts(int maxParameters)
+    {
+        if (maxParameters < 0) {
+            throw new IllegalArgumentException("maxParameters must not be negative, was " + maxParameters);
+        }
+        this.multiRowMaxParameters = maxParameters;
+        return this;
+    }
+
     /**
      * Execute the batch
      *
@@ -93,56 +207,398 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
      */
     public int[] execute()
     {
-        // short circuit empty batch
-        if (parts.size() == 0) return new int[]{};
+        return executeForCounts().toArray();
+    }
 
-        PreparedBatchPart current = parts.get(0);
-        final String my_sql ;
+    /**
+     * Execute the batch, returning its update counts in a compact form. Prefer this to
+     * {@link #execute()} for large streaming batches, as it does not hold a count per part.
+     *
+     * @return the number of rows modified or inserted per batch part.
+     * @see #flushEvery(int)
+     */
+    public UpdateCounts executeForCounts()
+    {
+        if (isStreaming()) {
+            try {
+                for (PreparedBatchPart part : parts) {
+                    stream(part);
+                }
+                parts.clear();
+                if (pending > 0) {
+                    flush();
+                }
+                if (streamingStatement != null) {
+                    afterExecution(streamingStatement);
+                }
+                return streamedCounts;
+            }
+            finally {
+                finishStreaming();
+            }
+        }
+
+        return UpdateCounts.of(executeHeld());
+    }
+
+    /**
+     * Execute the batch and return the keys it generated, as {@link Update#executeAndReturnGeneratedKeys(ResultSetMapper)}
+     * does for a single statement. The statement is prepared to return generated keys, either
+     * those the driver chooses or the named columns. Some drivers, Derby and H2 among them, report
+     * only the keys of the last part of a batch; when fewer keys come back than there are parts,
+     * the batch is rolled back to a savepoint and the parts are executed one at a time instead,
+     * and that driver is not asked for the keys of a batch again. The keys are therefore read and
+     * mapped before this returns, and can not be folded over. {@link #multiRowInserts(int)} does
+     * not apply, and this can not be used with {@link #flushEvery(int)}.
+     *
+     * @param mapper      maps the generated keys
+     * @param columnNames the names of the key columns to return, or none to let the driver choose
+     * @return the generated keys, one or more for each part
+     */
+    public <GeneratedKeyType> GeneratedKeys<GeneratedKeyType> executeAndGenerateKeys(final ResultSetMapper<GeneratedKeyType> mapper,
+                                                                                     String... columnNames)
+    {
+        if (isStreaming()) {
+            throw new IllegalStateException("generated keys can not be returned from a streaming batch");
+        }
+        if (parts.size() == 0) {
+            return new GeneratedKeys<GeneratedKeyType>(mapper, this, (ResultSet) null, getContext(), getContainerMapperRegistry());
+        }
+
+        final RewrittenStatement rewritten;
         try {
-            my_sql = getStatementLocator().locate(getSql(), getContext());
+            rewritten = rewriteHeld();
         }
-        catch (Exception e) {
-            throw new UnableToCreateStatementException(String.format("Exception while locating statement for [%s]",
-                                                                     getSql()), e, getContext());
+        catch (RuntimeException e) {
+            parts.clear();
+            throw e;
+        }
+
+        final Handle handle = getHandle();
+        final boolean ownTransaction = !handle.isInTransaction();
+        boolean done = false;
+        if (ownTransaction) {
+            handle.begin();
         }
-        final RewrittenStatement rewritten = getRewriter().rewrite(my_sql, current.getParameters(), getContext());
-        PreparedStatement stmt = null;
         try {
+            final Connection conn = handle.getConnection();
+            final PreparedStatement stmt;
+            final String driver;
             try {
-                stmt = getHandle().getConnection().prepareStatement(rewritten.getSql());
+                stmt = columnNames.length == 0
+                       ? conn.prepareStatement(rewritten.getSql(), Statement.RETURN_GENERATED_KEYS)
+                       : conn.prepareStatement(rewritten.getSql(), columnNames);
                 addCleanable(Cleanables.forStatement(stmt));
+                driver = conn.getMetaData().getDriverName();
             }
             catch (SQLException e) {
                 throw new UnableToCreateStatementException(e, getContext());
             }
 
+            List<GeneratedKeyType> keys = null;
+            if (!PARTIAL_BATCH_KEYS.containsKey(driver)) {
+                keys = executeHeldForKeys(rewritten, stmt, mapper, conn, driver);
+            }
+            if (keys == null) {
+                keys = executeSinglyForKeys(rewritten, stmt, mapper);
+            }
 
+            if (ownTransaction) {
+                handle.commit();
+            }
+            done = true;
+            return new GeneratedKeys<GeneratedKeyType>(keys, this, getContext(), getContainerMapperRegistry());
+        }
+        finally {
             try {
-                for (PreparedBatchPart part : parts) {
-                    rewritten.bind(part.getParameters(), stmt);
-                    stmt.addBatch();
+                if (ownTransaction && !done) {
+                    handle.rollback();
+                }
+            }
+            finally {
+                try {
+                    cleanup();
+                }
+                finally {
+                    this.parts.clear();
                 }
             }
+        }
+    }
+
+    /**
+     * Executes the held parts as one batch and maps the keys it generated, or rolls the batch
+     * back and returns null if the driver reported keys for only some of the parts.
+     */
+    private <GeneratedKeyType> List<GeneratedKeyType> executeHeldForKeys(RewrittenStatement rewritten,
+                                                                        PreparedStatement stmt,
+                                                                        ResultSetMapper<GeneratedKeyType> mapper,
+                                                                        Connection conn,
+                                                                        String driver)
+    {
+        final Savepoint savepoint;
+        try {
+            savepoint = conn.setSavepoint();
+        }
+        catch (SQLException e) {
+            throw new TransactionException("Unable to set a savepoint for the batch", e);
+        }
+
+        executeHeld(rewritten, stmt);
+
+        final List<GeneratedKeyType> keys = new ArrayList<GeneratedKeyType>();
+        try {
+            mapKeys(stmt, mapper, keys);
+            if (keys.size() > 0 && keys.size() < parts.size()) {
+                conn.rollback(savepoint);
+                PARTIAL_BATCH_KEYS.put(driver, Boolean.TRUE);
+                return null;
+            }
+            conn.releaseSavepoint(savepoint);
+            return keys;
+        }
+        catch (SQLException e) {
+            throw new ResultSetException("Could not get generated keys", e, getContext());
+        }
+    }
+
+    /**
+     * Executes the held parts one at a time, mapping the keys each of them generated.
+     */
+    private <GeneratedKeyType> List<GeneratedKeyType> executeSinglyForKeys(RewrittenStatement rewritten,
+                                                                          PreparedStatement stmt,
+                                                                          ResultSetMapper<GeneratedKeyType> mapper)
+    {
+        beforeExecution(stmt);
+
+        final List<GeneratedKeyType> keys = new ArrayList<GeneratedKeyType>();
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(getHandle(), stmt, getContext());
+        try {
+            final long start = System.nanoTime();
+            for (PreparedBatchPart part : parts) {
+                rewritten.bind(part.getParameters(), stmt);
+                stmt.executeUpdate();
+                mapKeys(stmt, mapper, keys);
+            }
+            final long elapsedTime = System.nanoTime() - start;
+            getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), parts.size());
+            getTimingCollector().collect(elapsedTime, getContext());
+            Replicas.wrote(getHandle());
+
+            afterExecution(stmt);
+
+            return keys;
+        }
+        catch (SQLException e) {
+            throw timeout.failure(e, getContext());
+        }
+        finally {
+            timeout.done();
+        }
+    }
+
+    private <GeneratedKeyType> void mapKeys(Statement stmt,
+                                            ResultSetMapper<GeneratedKeyType> mapper,
+                                            List<GeneratedKeyType> keys) throws SQLException
+    {
+        final ResultSet rs = stmt.getGeneratedKeys();
+        if (rs == null) {
+            return;
+        }
+        try {
+            while (rs.next()) {
+                keys.add(mapper.map(keys.size(), rs, getContext()));
+            }
+        }
+        finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Execute the batch and return the keys it generated, mapped to maps of column name to value.
+     *
+     * @see #executeAndGenerateKeys(ResultSetMapper, String...)
+     */
+    public GeneratedKeys<Map<String, Object>> executeAndGenerateKeys()
+    {
+        return executeAndGenerateKeys(new DefaultMapper());
+    }
+
+    /**
+     * Execute the batch, isolating the parts which fail instead of failing the whole batch. A
+     * batch which fails is rolled back to a savepoint and split in halves, each executed in its
+     * own savepoint, until the failing parts are found on their own; the other parts are applied.
+     * Finding k failed parts of n takes about k log n executions rather than one per part.
+     * <p>
+     * The batch runs in the handle's transaction, or in a transaction of its own which is
+     * committed once every part has been tried. Parts are bound as an ordinary batch, so this
+     * can not be used with {@link #flushEvery(int)}, and {@link #multiRowInserts(int)} does not
+     * apply. A failure to reach the database is rethrown rather than isolated.
+     *
+     * @return the update count of every part, and the exception of every part which failed
+     */
+    public BatchResult executeIsolatingFailures()
+    {
+        if (isStreaming()) {
+            throw new IllegalStateException("failures can not be isolated in a streaming batch");
+        }
+
+        final BatchResult result = new BatchResult();
+        if (parts.size() == 0) return result;
+
+        final RewrittenStatement rewritten;
+        try {
+            rewritten = rewriteHeld();
+        }
+        catch (RuntimeException e) {
+            parts.clear();
+            throw e;
+        }
+
+        final Handle handle = getHandle();
+        final boolean ownTransaction = !handle.isInTransaction();
+        boolean done = false;
+        if (ownTransaction) {
+            handle.begin();
+        }
+        try {
+            final PreparedStatement stmt;
+            try {
+                stmt = handle.getConnection().prepareStatement(rewritten.getSql());
+                addCleanable(Cleanables.forStatement(stmt));
+            }
             catch (SQLException e) {
-                throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
+                throw new UnableToCreateStatementException(e, getContext());
             }
 
             beforeExecution(stmt);
+            isolateFailures(rewritten, stmt, 0, parts.size(), result);
+            afterExecution(stmt);
+
+            if (ownTransaction) {
+                handle.commit();
+            }
+            done = true;
+            return result;
+        }
+        finally {
+            try {
+                if (ownTransaction && !done) {
+                    handle.rollback();
+                }
+            }
+            finally {
+                try {
+                    cleanup();
+                }
+                finally {
+                    this.parts.clear();
+                }
+            }
+        }
+    }
+
+    private void isolateFailures(RewrittenStatement rewritten, PreparedStatement stmt, int from, int to, BatchResult result)
+    {
+        try {
+            for (int i = from; i < to; i++) {
+                rewritten.bind(parts.get(i).getParameters(), stmt);
+                stmt.addBatch();
+            }
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
+        }
+
+        // a savepoint which was rolled back to lives on until released, which the handle's named
+        // checkpoints do not allow, so this uses savepoints of the connection directly
+        final Connection conn = getHandle().getConnection();
+        final Savepoint savepoint;
+        try {
+            savepoint = conn.setSavepoint();
+        }
+        catch (SQLException e) {
+            throw new TransactionException("Unable to create savepoint to isolate batch failures", e);
+        }
 
+        final int[] rs;
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(getHandle(), stmt, getContext());
+        try {
+            final long start = System.nanoTime();
+            rs = stmt.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), to - from);
+            getTimingCollector().collect(elapsedTime, getContext());
+            Replicas.wrote(getHandle());
+        }
+        catch (SQLException e) {
+            final UnableToExecuteStatementException failure = timeout.failure(e, getContext());
             try {
-                final long start = System.nanoTime();
-                final int[] rs =  stmt.executeBatch();
-                final long elapsedTime = System.nanoTime() - start;
-                getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), parts.size());
-                getTimingCollector().collect(elapsedTime, getContext());
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                stmt.clearBatch();
+            }
+            catch (SQLException e2) {
+                throw new UnableToExecuteStatementException(e2, getContext());
+            }
+
+            if (failure instanceof DeadlineExceededException) {
+                // a cancelled batch did not fail because of any one part
+                throw failure;
+            }
+            final String state = e.getSQLState();
+            if (state != null && state.startsWith("08")) {
+                // connection exceptions fail every part alike, so there is nothing to isolate
+                throw new UnableToExecuteStatementException(e, getContext());
+            }
+            if (to - from == 1) {
+                result.fail(new UnableToExecuteStatementException(e, getContext()));
+            }
+            else {
+                final int middle = (from + to) >>> 1;
+                isolateFailures(rewritten, stmt, from, middle, result);
+                isolateFailures(rewritten, stmt, middle, to, result);
+            }
+            return;
+        }
+        finally {
+            timeout.done();
+        }
+
+        try {
+            conn.releaseSavepoint(savepoint);
+        }
+        catch (SQLException e) {
+            throw new TransactionException("Unable to release savepoint", e);
+        }
+        result.getCounts().add(rs);
+    }
 
-                afterExecution(stmt);
+    private int[] executeHeld()
+    {
+        // short circuit empty batch
+        if (parts.size() == 0) return new int[]{};
 
-                return rs;
+        final RewrittenStatement rewritten = rewriteHeld();
+        if (multiRowMaxParameters > 0 && parts.size() > 1) {
+            final MultiRowInsert insert = multiRowInsertFor(rewritten.getSql());
+            if (insert != null && multiRowMaxParameters / insert.getParameters() > 1) {
+                return executeMultiRow(rewritten, insert);
+            }
+        }
+
+        try {
+            final PreparedStatement stmt;
+            try {
+                stmt = getHandle().getConnection().prepareStatement(rewritten.getSql());
+                addCleanable(Cleanables.forStatement(stmt));
             }
             catch (SQLException e) {
-                throw new UnableToExecuteStatementException(e, getContext());
+                throw new UnableToCreateStatementException(e, getContext());
             }
+
+            return executeHeld(rewritten, stmt);
         }
         finally {
             try {
@@ -154,6 +610,147 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
         }
     }
 
+    private RewrittenStatement rewriteHeld()
+    {
+        final String my_sql ;
+        try {
+            my_sql = getStatementLocator().locate(getSql(), getContext());
+        }
+        catch (Exception e) {
+            throw new UnableToCreateStatementException(String.format("Exception while locating statement for [%s]",
+                                                                     getSql()), e, getContext());
+        }
+        return getRewriter().rewrite(my_sql, parts.get(0).getParameters(), getContext());
+    }
+
+    private int[] executeHeld(RewrittenStatement rewritten, PreparedStatement stmt)
+    {
+        try {
+            for (PreparedBatchPart part : parts) {
+                rewritten.bind(part.getParameters(), stmt);
+                stmt.addBatch();
+            }
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
+        }
+
+        beforeExecution(stmt);
+
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(getHandle(), stmt, getContext());
+        try {
+            final long start = System.nanoTime();
+            final int[] rs =  stmt.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            getLog().logPreparedBatch(elapsedTime / 1000000L, rewritten.getSql(), parts.size());
+            getTimingCollector().collect(elapsedTime, getContext());
+            Replicas.wrote(getHandle());
+
+            afterExecution(stmt);
+
+            return rs;
+        }
+        catch (SQLException e) {
+            throw timeout.failure(e, getContext());
+        }
+        finally {
+            timeout.done();
+        }
+    }
+
+    private MultiRowInsert multiRowInsertFor(String sql)
+    {
+        if (multiRowInsert == null || !multiRowInsert.getSql().equals(sql)) {
+            multiRowInsert = MultiRowInsert.parse(sql);
+        }
+        return multiRowInsert;
+    }
+
+    private int[] executeMultiRow(RewrittenStatement rewritten, MultiRowInsert insert)
+    {
+        final int size = parts.size();
+        final int rows = multiRowMaxParameters / insert.getParameters();
+        final int[] rs = new int[size];
+        try {
+            // statements of as many rows as fit, then the rest in statements of fewer rows, each a
+            // power of two, so batches of any size take only a few distinct statements
+            int from = 0;
+            for (int k = rows; k > 0; k = Integer.highestOneBit(k) == k ? k / 2 : Integer.highestOneBit(k)) {
+                final int to = from + (size - from) / k * k;
+                if (to > from) {
+                    executeMultiRowChunks(rewritten, insert, from, to, k, rs);
+                    from = to;
+                }
+            }
+            return rs;
+        }
+        finally {
+            try {
+                cleanup();
+            }
+            finally {
+                this.parts.clear();
+            }
+        }
+    }
+
+    private void executeMultiRowChunks(RewrittenStatement rewritten,
+                                       MultiRowInsert insert,
+                                       int from,
+                                       int to,
+                                       int rows,
+                                       int[] rs)
+    {
+        final String sql = insert.expand(rows);
+        final PreparedStatement stmt;
+        try {
+            stmt = getHandle().getConnection().prepareStatement(sql);
+            addCleanable(Cleanables.forStatement(stmt));
+        }
+        catch (SQLException e) {
+            throw new UnableToCreateStatementException(e, getContext());
+        }
+
+        try {
+            final OffsetPreparedStatement shifted = new OffsetPreparedStatement(stmt);
+            for (int i = from; i < to; i++) {
+                shifted.setOffset(((i - from) % rows) * insert.getParameters());
+                rewritten.bind(parts.get(i).getParameters(), shifted);
+                if (shifted.getOffset() == (rows - 1) * insert.getParameters()) {
+                    stmt.addBatch();
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
+        }
+
+        beforeExecution(stmt);
+
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(getHandle(), stmt, getContext());
+        try {
+            final long start = System.nanoTime();
+            final int[] counts = stmt.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            getLog().logPreparedBatch(elapsedTime / 1000000L, sql, counts.length);
+            getTimingCollector().collect(elapsedTime, getContext());
+            Replicas.wrote(getHandle());
+
+            afterExecution(stmt);
+
+            for (int i = 0; i < counts.length; i++) {
+                final int count = counts[i] == rows ? 1 : counts[i] == 0 ? 0 : Statement.SUCCESS_NO_INFO;
+                Arrays.fill(rs, from + i * rows, from + (i + 1) * rows, count);
+            }
+        }
+        catch (SQLException e) {
+            throw timeout.failure(e, getContext());
+        }
+        finally {
+            timeout.done();
+        }
+    }
+
     /**
      * Add a statement (part) to this batch. You'll need to bindBinaryStream any arguments to the
      * part.
@@ -162,6 +759,16 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
      */
     public PreparedBatchPart add()
     {
+        if (isStreaming() && !parts.isEmpty()) {
+            // the previous part can not be bound any further, so it is complete
+            try {
+                stream(parts.remove(0));
+            }
+            catch (RuntimeException e) {
+                finishStreaming();
+                throw e;
+            }
+        }
         PreparedBatchPart part = new PreparedBatchPart(this.currentBinding,
                                                        this,
                                                        getStatementLocator(),
@@ -209,15 +816,92 @@ public class PreparedBatch extends SQLStatement<PreparedBatch>
      */
     public int getSize()
     {
-        return parts.size();
+        return size();
     }
 
     /**
-     * The number of statements which are in this batch
+     * The number of statements which are in this batch, including any already sent to the
+     * database by {@link #flushEvery(int)}
      */
     public int size()
     {
-        return parts.size();
+        return streamedCounts.size() + pending + parts.size();
+    }
+
+    private void stream(PreparedBatchPart part)
+    {
+        if (streamingStatement == null) {
+            final String my_sql;
+            try {
+                my_sql = getStatementLocator().locate(getSql(), getContext());
+            }
+            catch (Exception e) {
+                throw new UnableToCreateStatementException(String.format("Exception while locating statement for [%s]",
+                                                                         getSql()), e, getContext());
+            }
+            streamingRewritten = getRewriter().rewrite(my_sql, part.getParameters(), getContext());
+            try {
+                streamingStatement = getHandle().getConnection().prepareStatement(streamingRewritten.getSql());
+                addCleanable(Cleanables.forStatement(streamingStatement));
+            }
+            catch (SQLException e) {
+                throw new UnableToCreateStatementException(e, getContext());
+            }
+            beforeExecution(streamingStatement);
+        }
+
+        try {
+            streamingRewritten.bind(part.getParameters(), streamingStatement);
+            streamingStatement.addBatch();
+        }
+        catch (SQLException e) {
+            throw new UnableToExecuteStatementException("Exception while binding parameters", e, getContext());
+        }
+
+        pending++;
+        if (flushEveryBytes > 0) {
+            pendingBytes += part.getParameters().estimateBytes();
+        }
+        if ((flushEvery > 0 && pending >= flushEvery) || (flushEveryBytes > 0 && pendingBytes >= flushEveryBytes)) {
+            flush();
+        }
+    }
+
+    private void flush()
+    {
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(getHandle(), streamingStatement, getContext());
+        try {
+            final long start = System.nanoTime();
+            final int[] rs = streamingStatement.executeBatch();
+            final long elapsedTime = System.nanoTime() - start;
+            getLog().logPreparedBatch(elapsedTime / 1000000L, streamingRewritten.getSql(), pending);
+            getTimingCollector().collect(elapsedTime, getContext());
+            Replicas.wrote(getHandle());
+            streamedCounts.add(rs);
+            pending = 0;
+            pendingBytes = 0;
+        }
+        catch (SQLException e) {
+            throw timeout.failure(e, getContext());
+        }
+        finally {
+            timeout.done();
+        }
+    }
+
+    private void finishStreaming()
+    {
+        try {
+            cleanup();
+        }
+        finally {
+            parts.clear();
+            streamingStatement = null;
+            streamingRewritten = null;
+            streamedCounts = new UpdateCounts();
+            pending = 0;
+            pendingBytes = 0;
+        }
     }
 
     @Override
@@ -232,6 +232,7 @@ public class Query<ResultType> extends SQLStatement<Query<ResultType>> implement
      */
     public ResultIterator<ResultType> iterator()
     {
+        OpenCursors.checkBudget(getHandle(), getContext());
         return this.internalExecute(new QueryResultMunger<ResultIterator<ResultType>>()
         {
             public ResultIterator<ResultType> munge(Statement stmt) throws SQLException
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.logging.FormattedLog;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.tweak.SQLLog;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The replicas of a {@link DBI}, which serve its read only handles. Each connection is taken
+ * from the replica with the fewest open connections, and counted against it until closed.
+ * Threads which have just written to the primary may be kept on it for a while, so they read
+ * their own writes.
+ */
+class Replicas
+{
+    private final ConnectionFactory[] factories;
+    private final AtomicInteger[]     inFlight;
+    private final AtomicInteger       next = new AtomicInteger();
+    private final AtomicLong          failures = new AtomicLong();
+    private final ThreadLocal<Long>   lastPrimaryUse = new ThreadLocal<Long>();
+
+    private volatile long readYourWritesNanos = 0;
+
+    Replicas(ConnectionFactory[] factories)
+    {
+        this.factories = factories.clone();
+        this.inFlight = new AtomicInteger[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            if (factories[i] == null) {
+                throw new IllegalArgumentException("replica " + i + " is null");
+            }
+            inFlight[i] = new AtomicInteger();
+        }
+    }
+
+    boolean isEmpty()
+    {
+        return factories.length == 0;
+    }
+
+    void setReadYourWritesNanos(long nanos)
+    {
+        this.readYourWritesNanos = nanos;
+    }
+
+    /**
+     * Whether the current thread wrote to the primary within the read your writes window.
+     */
+    boolean isPinnedToPrimary()
+    {
+        final Long last = lastPrimaryUse.get();
+        if (last == null) {
+            return false;
+        }
+        if (System.nanoTime() - last < readYourWritesNanos) {
+            return true;
+        }
+        lastPrimaryUse.remove();
+        return false;
+    }
+
+    /**
+     * Whether writing to the primary keeps a thread on it at all.
+     */
+    boolean isReadingYourWrites()
+    {
+        return readYourWritesNanos > 0;
+    }
+
+    /**
+     * Keep the current thread on the primary for the read your writes window, from now.
+     */
+    void wrote()
+    {
+        lastPrimaryUse.set(System.nanoTime());
+    }
+
+    /**
+     * Note that a statement of a handle wrote, or may have written, to its database. Only handles
+     * of the primary opened for writing, which {@link DBI} gives the replicas to, do anything with
+     * this: they keep the thread on the primary right away in autocommit mode, or once the
+     * transaction commits.
+     */
+    static void wrote(Handle handle)
+    {
+        if (handle instanceof BasicHandle) {
+            ((BasicHandle) handle).wrote();
+        }
+    }
+
+    /**
+     * The number of times connecting to a replica failed.
+     */
+    long getFailureCount()
+    {
+        return failures.get();
+    }
+
+    /**
+     * Open a connection to the replica with the fewest open connections, trying the others in
+     * turn if it fails. Each failure is counted, and logged if the log is a {@link FormattedLog}.
+     */
+    Connection open(SQLLog log) throws SQLException
+    {
+        final int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < factories.length; i++) {
+            final int candidate = (start + i) % factories.length;
+            final int count = inFlight[candidate].get();
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+
+        SQLException failure = null;
+        for (int i = 0; i < factories.length; i++) {
+            final int replica = (best + i) % factories.length;
+            inFlight[replica].incrementAndGet();
+            try {
+                return new ReplicaConnection(factories[replica].openConnection(), inFlight[replica]);
+            }
+            catch (SQLException e) {
+                inFlight[replica].decrementAndGet();
+                failures.incrementAndGet();
+                if (log instanceof FormattedLog) {
+                    ((FormattedLog) log).logReplicaFailure(replica, e);
+                }
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            catch (RuntimeException e) {
+                inFlight[replica].decrementAndGet();
+                throw e;
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * The number of open connections to each replica.
+     */
+    int[] getInFlight()
+    {
+        final int[] counts = new int[inFlight.length];
+        for (int i = 0; i < inFlight.length; i++) {
+            counts[i] = inFlight[i].get();
+        }
+        return counts;
+    }
+
+    private static final class ReplicaConnection extends DelegatingConnection
+    {
+        private final AtomicInteger inFlight;
+        private       boolean       closed = false;
+
+        ReplicaConnection(Connection delegate, AtomicInteger inFlight)
+        {
+            super(delegate);
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void close() throws SQLException
+        {
+            if (!closed) {
+                closed = true;
+                inFlight.decrementAndGet();
+            }
+            super.close();
+        }
+    }
+}
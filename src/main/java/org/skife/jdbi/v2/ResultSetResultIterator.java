@@ -28,6 +28,7 @@ class ResultSetResultIterator<Type> implements ResultIterator<Type>
     private final SQLStatement jdbiStatement;
     private final ResultSet results;
     private final StatementContext context;
+    private final OpenCursors.Cursor cursor;
 
     private volatile boolean alreadyAdvanced = false;
     private volatile int count = 0;
@@ -39,18 +40,37 @@ class ResultSetResultIterator<Type> implements ResultIterator<Type>
                             Statement stmt,
                             StatementContext context)
             throws SQLException
+    {
+        this(mapper, jdbiStatement, stmt.getResultSet(), context);
+    }
+
+    ResultSetResultIterator(ResultSetMapper<Type> mapper,
+                            SQLStatement jdbiStatement,
+                            ResultSet results,
+                            StatementContext context)
+            throws SQLException
     {
         this.mapper = mapper;
         this.context = context;
         this.jdbiStatement = jdbiStatement;
-        this.results = stmt.getResultSet();
+        this.results = results;
 
         this.jdbiStatement.addCleanable(Cleanables.forResultSet(results));
+        if (results == null) {
+            this.cursor = null;
+            close();
+        }
+        else {
+            this.cursor = OpenCursors.open(jdbiStatement.getHandle(), this, jdbiStatement);
+        }
     }
 
     public void close()
     {
         closed = true;
+        if (cursor != null) {
+            cursor.close();
+        }
         jdbiStatement.cleanup();
     }
 
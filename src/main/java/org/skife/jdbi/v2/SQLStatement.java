@@ -15,7 +15,6 @@
  */
 package org.skife.jdbi.v2;
 
-import org.skife.jdbi.v2.exceptions.ResultSetException;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.skife.jdbi.v2.tweak.Argument;
@@ -97,7 +96,9 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         this.locator = locator;
         this.containerMapperRegistry = containerFactoryRegistry.createChild();
 
-        ctx.setConnection(handle.getConnection());
+        // taken without sending deferred updates, which is left to the time the statement executes
+        ctx.setConnection(handle instanceof BasicHandle ? ((BasicHandle) handle).getDeferringConnection()
+                                                        : handle.getConnection());
         ctx.setRawSql(sql);
         ctx.setBinding(params);
     }
@@ -1290,12 +1291,21 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
         }
     }
 
-    protected <Result> Result internalExecute(final QueryResultMunger<Result> munger)
+    /**
+     * Locate and rewrite the sql of this statement for its current parameters.
+     */
+    RewrittenStatement rewrite()
     {
         final String located_sql = wrapLookup(sql);
         getConcreteContext().setLocatedSql(located_sql);
-        rewritten = rewriter.rewrite(located_sql, getParameters(), getContext());
-        getConcreteContext().setRewrittenSql(rewritten.getSql());
+        final RewrittenStatement rs = rewriter.rewrite(located_sql, getParameters(), getContext());
+        getConcreteContext().setRewrittenSql(rs.getSql());
+        return rs;
+    }
+
+    protected <Result> Result internalExecute(final QueryResultMunger<Result> munger)
+    {
+        rewritten = rewrite();
         try {
             if (getClass().isAssignableFrom(Call.class)) {
                 stmt = statementBuilder.createCall(handle.getConnection(), rewritten.getSql(), getContext());
@@ -1323,24 +1333,37 @@ public abstract class SQLStatement<SelfType extends SQLStatement<SelfType>> exte
 
         beforeExecution(stmt);
 
+        // watched until the results have been munged, as far as that reads them
+        final StatementCanceller.Timeout timeout = StatementCanceller.watch(handle, stmt, getContext());
         try {
-            final long start = System.nanoTime();
-            stmt.execute();
-            final long elapsedTime = System.nanoTime() - start;
-            log.logSQL(elapsedTime / 1000000L, rewritten.getSql());
-            timingCollector.collect(elapsedTime, getContext());
-        }
-        catch (SQLException e) {
-            throw new UnableToExecuteStatementException(e, getContext());
-        }
+            try {
+                final long start = System.nanoTime();
+                stmt.execute();
+                final long elapsedTime = System.nanoTime() - start;
+                log.logSQL(elapsedTime / 1000000L, rewritten.getSql());
+                timingCollector.collect(elapsedTime, getContext());
+                if (!(this instanceof Query)) {
+                    Replicas.wrote(handle);
+                }
+            }
+            catch (SQLException e) {
+                throw timeout.failure(e, getContext());
+            }
 
-        afterExecution(stmt);
+            afterExecution(stmt);
 
-        try {
-            return munger.munge(stmt);
+            final Result result;
+            try {
+                result = munger.munge(stmt);
+            }
+            catch (SQLException e) {
+                throw timeout.resultFailure(e, getContext());
+            }
+            timeout.finish(getContext());
+            return result;
         }
-        catch (SQLException e) {
-            throw new ResultSetException("Exception thrown while attempting to traverse the result set", e, getContext());
+        finally {
+            timeout.done();
         }
     }
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Remembers the autocommit, transaction isolation and read only state of a connection, so
+ * reading them does not go to the driver, and setting them only does when the state changes
+ * (some drivers do more than set it even when it is unchanged, Derby commits when the isolation
+ * is set). The state is read from the driver the first time it is needed, and forgotten when
+ * setting it fails. State changed behind the back of the connection, such as by a
+ * <code>SET TRANSACTION</code> statement, is not noticed. Once the connection of the driver has
+ * been handed out by {@link #unwrap(Class)}, the state can be changed on it directly, so from then
+ * on nothing is remembered and every call goes to the driver. Handles only use this when
+ * {@link DBI#setCacheSessionState(boolean)} is on.
+ */
+class SessionStateConnection extends DelegatingConnection
+{
+    private Boolean autoCommit;
+    private Integer isolation;
+    private Boolean readOnly;
+    private boolean unwrapped = false;
+
+    SessionStateConnection(Connection delegate)
+    {
+        super(delegate);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException
+    {
+        final T result = super.unwrap(iface);
+        this.unwrapped = true;
+        this.autoCommit = null;
+        this.isolation = null;
+        this.readOnly = null;
+        return result;
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException
+    {
+        if (unwrapped) {
+            return super.getAutoCommit();
+        }
+        if (autoCommit == null) {
+            autoCommit = super.getAutoCommit();
+        }
+        return autoCommit;
+    }
+
+    @Override
+    public void setAutoCommit(boolean b) throws SQLException
+    {
+        if (!unwrapped && getAutoCommit() == b) {
+            return;
+        }
+        autoCommit = null;
+        super.setAutoCommit(b);
+        if (!unwrapped) {
+            autoCommit = b;
+        }
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException
+    {
+        if (unwrapped) {
+            return super.getTransactionIsolation();
+        }
+        if (isolation == null) {
+            isolation = super.getTransactionIsolation();
+        }
+        return isolation;
+    }
+
+    @Override
+    public void setTransactionIsolation(int i) throws SQLException
+    {
+        if (!unwrapped && getTransactionIsolation() == i) {
+            return;
+        }
+        isolation = null;
+        super.setTransactionIsolation(i);
+        if (!unwrapped) {
+            isolation = i;
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException
+    {
+        if (unwrapped) {
+            return super.isReadOnly();
+        }
+        if (readOnly == null) {
+            readOnly = super.isReadOnly();
+        }
+        return readOnly;
+    }
+
+    @Override
+    public void setReadOnly(boolean b) throws SQLException
+    {
+        if (!unwrapped && isReadOnly() == b) {
+            return;
+        }
+        readOnly = null;
+        super.setReadOnly(b);
+        if (!unwrapped) {
+            readOnly = b;
+        }
+    }
+}
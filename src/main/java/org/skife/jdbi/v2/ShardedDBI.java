@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.sqlobject.ShardKey;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ShardRouter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Spreads data over several databases, each with a {@link IDBI} of its own. Work on the data of one
+ * shard key goes to the shard the {@link ShardRouter} picks for the key, either given explicitly,
+ * or as the {@link ShardKey} argument of a method of a sql object from {@link #onDemand(Class)}.
+ * Work on the data of all shards, such as a query, runs on every shard at once through
+ * {@link #gather(HandleCallback)}, and the results are merged.
+ */
+public class ShardedDBI
+{
+    // threads for gathering from shards, shared by all sharded dbis unless given an executor; not the
+    // background executor, as gathered work may wait for work it hands to that, such as batch chunks
+    private static final ExecutorService GATHER_EXECUTOR = BackgroundExecutor.create("jdbi-shard-gather");
+
+    private final List<IDBI>      shards;
+    private final ShardRouter     router;
+    private final ExecutorService executor;
+
+    /**
+     * Shards routed to by hash, which gather on a pool of daemon threads shared by all sharded dbis,
+     * bounded to twice the number of processors.
+     */
+    public ShardedDBI(IDBI... shards)
+    {
+        this(Arrays.asList(shards), ShardRouter.HASH, GATHER_EXECUTOR);
+    }
+
+    /**
+     * @param shards   the shards, in a fixed order, as the router picks them by index
+     * @param router   picks the shard of a key
+     * @param executor runs the work of {@link #gather(HandleCallback)} on each shard
+     */
+    public ShardedDBI(List<? extends IDBI> shards, ShardRouter router, ExecutorService executor)
+    {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("no shards");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<IDBI>(shards));
+        this.router = router;
+        this.executor = executor;
+    }
+
+    public int getShardCount()
+    {
+        return shards.size();
+    }
+
+    public IDBI getShard(int index)
+    {
+        return shards.get(index);
+    }
+
+    /**
+     * The index of the shard which holds the data of a key.
+     */
+    public int shardFor(Object key)
+    {
+        if (key == null) {
+            throw new IllegalArgumentException("shard key is null");
+        }
+        final int shard = router.shardFor(key, shards.size());
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException(String.format("%s picked shard %d of %d for %s",
+                                                          router, shard, shards.size(), key));
+        }
+        return shard;
+    }
+
+    /**
+     * The shard which holds the data of a key.
+     */
+    public IDBI shard(Object key)
+    {
+        return shards.get(shardFor(key));
+    }
+
+    /**
+     * Yield a handle to the shard of a key to a callback.
+     *
+     * @see IDBI#withHandle(HandleCallback)
+     */
+    public <ReturnType> ReturnType withHandle(Object key, HandleCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        return shard(key).withHandle(callback);
+    }
+
+    /**
+     * Yield a handle to the shard of a key, in a transaction, to a callback.
+     *
+     * @see IDBI#inTransaction(TransactionCallback)
+     */
+    public <ReturnType> ReturnType inTransaction(Object key, TransactionCallback<ReturnType> callback) throws CallbackFailedException
+    {
+        return shard(key).inTransaction(callback);
+    }
+
+    /**
+     * Create a sql object which runs each method on the shard picked by the argument annotated with
+     * {@link ShardKey}, with an on demand sql object of that shard. Every method of the interface
+     * must have exactly one such argument.
+     *
+     * @param sqlObjectType an interface with annotations declaring desired behavior
+     */
+    public <SqlObjectType> SqlObjectType onDemand(Class<SqlObjectType> sqlObjectType)
+    {
+        if (!sqlObjectType.isInterface()) {
+            throw new IllegalArgumentException("only interfaces can be sharded, " + sqlObjectType + " is not one");
+        }
+        final Map<Method, Integer> keys = new HashMap<Method, Integer>();
+        for (Method method : sqlObjectType.getMethods()) {
+            keys.put(method, shardKeyIndex(method));
+        }
+
+        final List<Object> targets = new ArrayList<Object>(shards.size());
+        for (IDBI shard : shards) {
+            targets.add(shard.onDemand(sqlObjectType));
+        }
+
+        return sqlObjectType.cast(Proxy.newProxyInstance(sqlObjectType.getClassLoader(),
+                                                         new Class[]{sqlObjectType},
+                                                         new ShardingInvocationHandler(sqlObjectType, keys, targets)));
+    }
+
+    private static int shardKeyIndex(Method method)
+    {
+        int index = -1;
+        final Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    if (index != -1) {
+                        throw new IllegalArgumentException(method + " has more than one @ShardKey argument");
+                    }
+                    index = i;
+                }
+            }
+        }
+        if (index == -1) {
+            throw new IllegalArgumentException(method + " has no @ShardKey argument");
+        }
+        return index;
+    }
+
+    /**
+     * Run a callback on every shard at once, and concatenate the results in the order of the shards.
+     *
+     * @throws CallbackFailedException if the callback fails on any shard, wrapping the exception
+     *                                 of the first shard in order to fail
+     */
+    public <T> List<T> gather(HandleCallback<? extends List<? extends T>> callback) throws CallbackFailedException
+    {
+        final List<T> result = new ArrayList<T>();
+        for (List<? extends T> part : scatter(callback)) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Run a callback on every shard at once, and merge the results, each of which must be sorted
+     * by the given order, into one sorted list.
+     *
+     * @throws CallbackFailedException if the callback fails on any shard, wrapping the exception
+     *                                 of the first shard in order to fail
+     */
+    public <T> List<T> gather(HandleCallback<? extends List<? extends T>> callback, Comparator<? super T> order) throws CallbackFailedException
+    {
+        return merge(scatter(callback), order);
+    }
+
+    private <T> List<List<? extends T>> scatter(final HandleCallback<? extends List<? extends T>> callback)
+    {
+        final List<Future<? extends List<? extends T>>> futures = new ArrayList<Future<? extends List<? extends T>>>(shards.size());
+        for (final IDBI shard : shards) {
+            futures.add(executor.submit(new Callable<List<? extends T>>()
+            {
+                public List<? extends T> call()
+                {
+                    return shard.withHandle(callback);
+                }
+            }));
+        }
+
+        final List<List<? extends T>> parts = new ArrayList<List<? extends T>>(shards.size());
+        try {
+            for (Future<? extends List<? extends T>> future : futures) {
+                parts.add(future.get());
+            }
+        }
+        catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof CallbackFailedException ? (CallbackFailedException) cause : new CallbackFailedException(cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallbackFailedException(e);
+        }
+        finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return parts;
+    }
+
+    private static <T> List<T> merge(List<List<? extends T>> parts, final Comparator<? super T> order)
+    {
+        int size = 0;
+        final PriorityQueue<Cursor<T>> heads = new PriorityQueue<Cursor<T>>(Math.max(1, parts.size()), new Comparator<Cursor<T>>()
+        {
+            public int compare(Cursor<T> a, Cursor<T> b)
+            {
+                final int c = order.compare(a.head, b.head);
+                // keep rows which compare equal in the order of their shards
+                return c != 0 ? c : a.shard - b.shard;
+            }
+        });
+        for (int i = 0; i < parts.size(); i++) {
+            size += parts.get(i).size();
+            final Iterator<? extends T> rows = parts.get(i).iterator();
+            if (rows.hasNext()) {
+                heads.add(new Cursor<T>(i, rows));
+            }
+        }
+
+        final List<T> result = new ArrayList<T>(size);
+        while (!heads.isEmpty()) {
+            final Cursor<T> cursor = heads.poll();
+            result.add(cursor.head);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static final class Cursor<T>
+    {
+        private final int                   shard;
+        private final Iterator<? extends T> rows;
+        private       T                     head;
+
+        Cursor(int shard, Iterator<? extends T> rows)
+        {
+            this.shard = shard;
+            this.rows = rows;
+            this.head = rows.next();
+        }
+
+        boolean advance()
+        {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            head = rows.next();
+            return true;
+        }
+    }
+
+    private final class ShardingInvocationHandler implements InvocationHandler
+    {
+        private final Class<?>             sqlObjectType;
+        private final Map<Method, Integer> keys;
+        private final List<Object>         targets;
+
+        ShardingInvocationHandler(Class<?> sqlObjectType, Map<Method, Integer> keys, List<Object> targets)
+        {
+            this.sqlObjectType = sqlObjectType;
+            this.keys = keys;
+            this.targets = targets;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            final Integer key = keys.get(method);
+            if (key != null) {
+                try {
+                    return method.invoke(targets.get(shardFor(args[key])), args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            // equals, hashCode and toString, which the proxy passes on from Object
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return "sharded " + sqlObjectType.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+}
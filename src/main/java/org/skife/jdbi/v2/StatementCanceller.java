@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.DBIException;
+import org.skife.jdbi.v2.exceptions.DeadlineExceededException;
+import org.skife.jdbi.v2.exceptions.ResultSetException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cancels statements which run past their {@link Deadline}, or whose thread is interrupted while
+ * they run. All statements share one hashed timer wheel: a ring of buckets a single thread steps
+ * through once per tick, cancelling what has expired in the bucket it arrives at. Scheduling is a
+ * lock free enqueue, so watching a statement is cheap, and the thread parks when nothing is
+ * watched. Statements without a deadline are watched for interrupts alone. A statement stays watched
+ * while results read right away, such as by {@link Query#list()}, are fetched; drivers which hold
+ * every row by the time the statement returns read them to the end regardless, and the statement
+ * fails once they have. Results read through an iterator are read after the watch has ended, so
+ * neither a deadline nor an interrupt bounds iterating over them.
+ */
+final class StatementCanceller implements Runnable
+{
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int  WHEEL_SIZE = 512;
+
+    /**
+     * The deadline of statements which are only watched for interrupts.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private final Timeout[]     wheel = new Timeout[WHEEL_SIZE];
+    private final List<Timeout> live = new ArrayList<Timeout>();
+    private final long          start = System.nanoTime();
+    private final Thread        worker;
+
+    private volatile boolean idle = false;
+    private long tick = 0;
+
+    private StatementCanceller()
+    {
+        this.worker = new Thread(this, "jdbi-statement-canceller");
+        this.worker.setDaemon(true);
+    }
+
+    private static final class Holder
+    {
+        static final StatementCanceller INSTANCE = start();
+
+        private static StatementCanceller start()
+        {
+            final StatementCanceller canceller = new StatementCanceller();
+            canceller.worker.start();
+            return canceller;
+        }
+    }
+
+    /**
+     * Watch a statement about to be executed on a handle under the deadline of the handle or of the
+     * current thread, whichever is earlier, and for interrupts of the current thread, whether or not
+     * there is a deadline. Call {@link Timeout#done()} once it has finished, and its results have
+     * been read where they are read right away.
+     *
+     * @throws DeadlineExceededException if the deadline has passed or the thread is interrupted already
+     */
+    static Timeout watch(Handle handle, Statement stmt, StatementContext ctx)
+    {
+        final Deadline deadline = Deadline.earlier(handle.getDeadline(), Deadline.getCurrent());
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before the statement was executed", null, ctx);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new DeadlineExceededException("Thread interrupted before the statement was executed", null, ctx);
+        }
+        return Holder.INSTANCE.schedule(stmt, deadline == null ? NO_DEADLINE : deadline.nanoTime());
+    }
+
+    private Timeout schedule(Statement stmt, long deadline)
+    {
+        final Timeout timeout = new Timeout(stmt, Thread.currentThread(), deadline);
+        added.add(timeout);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    public void run()
+    {
+        while (true) {
+            transferAdded();
+            if (live.isEmpty()) {
+                idle = true;
+                if (added.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                tick = (System.nanoTime() - start) / TICK_NANOS;
+                continue;
+            }
+
+            final long wait = start + (tick + 1) * TICK_NANOS - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            final long now = (System.nanoTime() - start) / TICK_NANOS;
+            final long last = Math.min(now, tick + WHEEL_SIZE);
+            for (long t = tick + 1; t <= last; t++) {
+                expire((int) (t & (WHEEL_SIZE - 1)), now);
+            }
+            tick = now;
+            checkInterrupts();
+        }
+    }
+
+    private void transferAdded()
+    {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            live.add(timeout);
+            if (timeout.deadline == NO_DEADLINE) {
+                // only interrupts are checked for, which goes through every live statement
+                continue;
+            }
+            // round up, and never into a bucket already passed this round
+            timeout.tick = Math.max((timeout.deadline - start + TICK_NANOS - 1) / TICK_NANOS, tick + 1);
+            final int bucket = (int) (timeout.tick & (WHEEL_SIZE - 1));
+            timeout.next = wheel[bucket];
+            wheel[bucket] = timeout;
+        }
+    }
+
+    private void expire(int bucket, long now)
+    {
+        Timeout previous = null;
+        Timeout timeout = wheel[bucket];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.isPending() && timeout.tick <= now) {
+                timeout.fire(Timeout.EXPIRED);
+            }
+            if (timeout.isPending()) {
+                previous = timeout;
+            }
+            else if (previous == null) {
+                wheel[bucket] = next;
+            }
+            else {
+                previous.next = next;
+            }
+            timeout = next;
+        }
+    }
+
+    private void checkInterrupts()
+    {
+        for (int i = live.size() - 1; i >= 0; i--) {
+            final Timeout timeout = live.get(i);
+            if (timeout.isPending() && timeout.thread.isInterrupted()) {
+                timeout.fire(Timeout.INTERRUPTED);
+            }
+            if (!timeout.isPending()) {
+                live.set(i, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * The watch over one execution of a statement.
+     */
+    static final class Timeout
+    {
+        private static final int PENDING     = 0;
+        private static final int DONE        = 1;
+        private static final int EXPIRED     = 2;
+        private static final int INTERRUPTED = 3;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final Statement     stmt;
+        private final Thread        thread;
+        private final long          deadline;
+
+        // owned by the worker thread
+        private long    tick;
+        private Timeout next;
+
+        private Timeout(Statement stmt, Thread thread, long deadline)
+        {
+            this.stmt = stmt;
+            this.thread = thread;
+            this.deadline = deadline;
+        }
+
+        private boolean isPending()
+        {
+            return state.get() == PENDING;
+        }
+
+        private void fire(int reason)
+        {
+            // under the lock done() takes, so a statement is never cancelled after done() returned,
+            // when a cached statement may be executing again
+            synchronized (this) {
+                if (!state.compareAndSet(PENDING, reason)) {
+                    return;
+                }
+                try {
+                    stmt.cancel();
+                }
+                catch (Exception e) {
+                    // the statement is finished or closed already, or the driver cannot cancel it
+                }
+            }
+        }
+
+        /**
+         * Stop watching the statement, which has finished. Waits for a cancel which is under way.
+         */
+        void done()
+        {
+            synchronized (this) {
+                state.compareAndSet(PENDING, DONE);
+            }
+        }
+
+        /**
+         * Stop watching the statement, which failed, and make the exception to throw for it.
+         */
+        UnableToExecuteStatementException failure(SQLException e, StatementContext ctx)
+        {
+            done();
+            switch (state.get()) {
+                case EXPIRED:
+                    return new DeadlineExceededException("Statement cancelled after its deadline passed", e, ctx);
+                case INTERRUPTED:
+                    return new DeadlineExceededException("Statement cancelled after its thread was interrupted", e, ctx);
+                default:
+                    return new UnableToExecuteStatementException(e, ctx);
+            }
+        }
+
+        /**
+         * Stop watching the statement, whose results have been read, and fail if it was cancelled
+         * meanwhile, which drivers holding every row by the time the statement returned ignore.
+         */
+        void finish(StatementContext ctx)
+        {
+            done();
+            if (state.get() != DONE) {
+                throw failure(null, ctx);
+            }
+        }
+
+        /**
+         * Stop watching the statement, whose results failed to be read, and make the exception to
+         * throw for it.
+         */
+        DBIException resultFailure(SQLException e, StatementContext ctx)
+        {
+            done();
+            if (state.get() == DONE) {
+                return new ResultSetException("Exception thrown while attempting to traverse the result set", e, ctx);
+            }
+            return failure(e, ctx);
+        }
+    }
+}
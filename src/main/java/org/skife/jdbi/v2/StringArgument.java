@@ -33,6 +33,11 @@ class StringArgument implements Argument
         this.value = value;
     }
 
+    String getValue()
+    {
+        return value;
+    }
+
     public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
     {
         if (value != null) {
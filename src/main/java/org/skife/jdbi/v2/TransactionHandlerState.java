@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.tweak.TransactionHandler;
+
+/**
+ * Lets a {@link TransactionHandler} keep its state, such as that of the current transaction, on the
+ * handles made by a {@link DBI}, instead of looking it up in a map of its own. A handle has room for
+ * the state of one handler. Handles of other implementations keep no state, so a handler has to
+ * check {@link #isSupported(Handle)} and keep their state itself.
+ */
+public final class TransactionHandlerState
+{
+    private TransactionHandlerState()
+    {
+    }
+
+    /**
+     * @return whether <code>handle</code> can keep state for a transaction handler
+     */
+    public static boolean isSupported(Handle handle)
+    {
+        return handle instanceof BasicHandle;
+    }
+
+    /**
+     * @param handle  the handle the state is kept on
+     * @param handler the handler which set the state
+     * @return the state set by the handler, or null if it has set none or the handle keeps no state
+     */
+    public static Object get(Handle handle, TransactionHandler handler)
+    {
+        return isSupported(handle) ? ((BasicHandle) handle).getTransactionHandlerState(handler) : null;
+    }
+
+    /**
+     * Keep state for a transaction handler on a handle, replacing any kept for another handler.
+     *
+     * @param handle  the handle to keep the state on
+     * @param handler the handler the state belongs to
+     * @param state   the state, or null to clear the handler's state
+     * @throws IllegalArgumentException if the handle cannot keep state
+     */
+    public static void set(Handle handle, TransactionHandler handler, Object state)
+    {
+        if (!isSupported(handle)) {
+            throw new IllegalArgumentException("handle of " + handle.getClass() + " keeps no transaction handler state");
+        }
+        ((BasicHandle) handle).setTransactionHandlerState(handler, state);
+    }
+}
@@ -32,7 +32,10 @@ import java.util.Map;
  */
 public class Update extends SQLStatement<Update>
 {
+    private final AutoBatch autoBatch;
+
     Update(Handle handle,
+           AutoBatch autoBatch,
            StatementLocator locator,
            StatementRewriter statementRewriter,
            StatementBuilder statementBuilder,
@@ -44,14 +47,26 @@ public class Update extends SQLStatement<Update>
            ContainerFactoryRegistry containerFactoryRegistry)
     {
         super(new Binding(), locator, statementRewriter, handle, statementBuilder, sql, ctx, log, timingCollector, Collections.<StatementCustomizer>emptyList(), foreman, containerFactoryRegistry);
+        this.autoBatch = autoBatch;
     }
 
     /**
-     * Execute the statement
+     * Execute the statement. If the handle batches updates, the statement is added to its batch
+     * unless it has been customized, and {@link Statement#SUCCESS_NO_INFO} is returned.
+     *
      * @return the number of rows modified
+     * @see Handle#setAutoBatchSize(int)
      */
     public int execute()
     {
+        if (autoBatch != null && autoBatch.isEnabled() && !isCustomized()) {
+            try {
+                return autoBatch.add(this);
+            }
+            finally {
+                cleanup();
+            }
+        }
         try {
             return this.internalExecute(new QueryResultMunger<Integer>() {
                 public Integer munge(Statement results) throws SQLException
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * The update counts of a batch, stored as runs of equal values. Batches of the same statement
+ * tend to report the same count for every row, so this stays small however many rows were sent.
+ *
+ * @see PreparedBatch#executeForCounts()
+ */
+public final class UpdateCounts
+{
+    private int[] values = new int[4];
+    private int[] ends = new int[4];
+    private int   runs = 0;
+    private int   size = 0;
+
+    public UpdateCounts()
+    {
+    }
+
+    static UpdateCounts of(int[] counts)
+    {
+        UpdateCounts uc = new UpdateCounts();
+        uc.add(counts);
+        return uc;
+    }
+
+    /**
+     * Append the counts of further statements.
+     */
+    public void add(int[] counts)
+    {
+        for (int count : counts) {
+            append(count, 1);
+        }
+    }
+
+    private void append(int count, int times)
+    {
+        size += times;
+        if (runs > 0 && values[runs - 1] == count) {
+            ends[runs - 1] = size;
+        }
+        else {
+            if (runs == values.length) {
+                values = Arrays.copyOf(values, runs * 2);
+                ends = Arrays.copyOf(ends, runs * 2);
+            }
+            values[runs] = count;
+            ends[runs] = size;
+            runs++;
+        }
+    }
+
+    /**
+     * Append the counts of further statements.
+     */
+    public void add(UpdateCounts counts)
+    {
+        int start = 0;
+        for (int i = 0; i < counts.runs; i++) {
+            append(counts.values[i], counts.ends[i] - start);
+            start = counts.ends[i];
+        }
+    }
+
+    /**
+     * The number of statements in the batch
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * The update count reported for the statement at <code>index</code>, which may be
+     * {@link Statement#SUCCESS_NO_INFO} if the driver did not report one.
+     */
+    public int get(int index)
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " is not in a batch of " + size);
+        }
+        int run = Arrays.binarySearch(ends, 0, runs, index + 1);
+        return values[run >= 0 ? run : -run - 1];
+    }
+
+    /**
+     * The sum of all known update counts, ignoring statements for which the driver did not
+     * report one.
+     */
+    public long getTotal()
+    {
+        long total = 0;
+        int start = 0;
+        for (int i = 0; i < runs; i++) {
+            if (values[i] > 0) {
+                total += (long) values[i] * (ends[i] - start);
+            }
+            start = ends[i];
+        }
+        return total;
+    }
+
+    /**
+     * The update counts as reported by {@link Statement#executeBatch()}
+     */
+    public int[] toArray()
+    {
+        int[] rs = new int[size];
+        int start = 0;
+        for (int i = 0; i < runs; i++) {
+            Arrays.fill(rs, start, ends[i], values[i]);
+            start = ends[i];
+        }
+        return rs;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "UpdateCounts{size=" + size + ", total=" + getTotal() + "}";
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes rows in the background, so that threads which each insert or update a single row do not
+ * each pay for a round trip and a commit. Rows are queued, and a flusher thread groups the rows it
+ * takes from the queue by statement, and executes each group as a {@link PreparedBatch}, all in one
+ * transaction, on a handle of its own. The rows of a statement are written in the order they were
+ * queued, but the groups are not interleaved, so rows of different statements must not depend on
+ * each other's order. Each group {@link PreparedBatch#executeIsolatingFailures() isolates} the rows
+ * which fail, so a bad row fails only itself.
+ * <p>
+ * The flusher writes the queued rows once {@link Configuration#withMaxBatchSize(int) enough} have
+ * been queued, or a {@link Configuration#withFlushInterval(long, TimeUnit) while} after the first of
+ * them was queued, whichever comes first. When the queue is full, threads queueing rows block until
+ * it has room. Each row yields a future of its update count, which fails if the row failed, or if
+ * the transaction holding it could not be committed.
+ * <p>
+ * Rows which are queued before {@link #close()} are written before it returns. Should the flusher
+ * stop on an unexpected error, the rows it has not written fail, and no more rows may be queued.
+ */
+public class WriteBehind implements Closeable
+{
+    private static final Callable<Integer> NOTHING = new Callable<Integer>()
+    {
+        public Integer call()
+        {
+            return null;
+        }
+    };
+
+    private final IDBI               dbi;
+    private final Configuration      configuration;
+    private final BlockingQueue<Row> queue;
+    private final Thread             flusher;
+
+    // queueing holds the read lock, so that no row is queued after the one which stops the flusher
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean   closed = false;
+    private volatile Throwable died;
+    private Handle handle;
+
+    public WriteBehind(IDBI dbi)
+    {
+        this(dbi, new Configuration());
+    }
+
+    public WriteBehind(IDBI dbi, Configuration configuration)
+    {
+        this.dbi = dbi;
+        this.configuration = configuration;
+        this.queue = new ArrayBlockingQueue<Row>(configuration.maxQueuedRows);
+        this.flusher = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                flushUntilClosed();
+            }
+        }, "jdbi-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a row, binding the arguments by position.
+     *
+     * @return the update count of the row
+     */
+    public Future<Integer> enqueue(String sql, Object... args)
+    {
+        return put(new Row(sql, args, null));
+    }
+
+    /**
+     * Queue a row, binding the arguments by name.
+     *
+     * @return the update count of the row
+     */
+    public Future<Integer> enqueue(String sql, Map<String, ? extends Object> args)
+    {
+        return put(new Row(sql, null, new HashMap<String, Object>(args)));
+    }
+
+    /**
+     * Write all rows queued so far, waiting until they are written.
+     */
+    public void flush()
+    {
+        try {
+            put(new Row(null, null, null)).get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("unable to flush", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while flushing", e);
+        }
+    }
+
+    /**
+     * Write all queued rows and stop the flusher. Rows may not be queued after this.
+     */
+    public void close()
+    {
+        closing.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            if (died == null) {
+                // wakes the flusher, which writes everything before it and stops
+                queue.put(new Row(null, null, null));
+            }
+            flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while closing", e);
+        }
+    }
+
+    private Future<Integer> put(Row row)
+    {
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("write behind is closed");
+            }
+            if (died != null) {
+                throw new IllegalStateException("write behind flusher has died", died);
+            }
+            queue.put(row);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while queueing a row", e);
+        }
+        finally {
+            closing.readLock().unlock();
+        }
+        return row.future;
+    }
+
+    private void flushUntilClosed()
+    {
+        final List<Row> rows = new ArrayList<Row>(configuration.maxBatchSize);
+        try {
+            while (!(closed && queue.isEmpty())) {
+                rows.add(queue.take());
+                final long deadline = System.nanoTime() + configuration.flushIntervalNanos;
+                while (rows.size() < configuration.maxBatchSize && !rows.get(rows.size() - 1).isBarrier()) {
+                    final Row row = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (row == null) {
+                        break;
+                    }
+                    rows.add(row);
+                }
+                write(rows);
+                rows.clear();
+            }
+        }
+        catch (Throwable e) {
+            die(e, rows);
+        }
+        finally {
+            closeHandle();
+        }
+    }
+
+    /**
+     * Fail every row not yet written, and stop rows being queued.
+     */
+    private void die(Throwable cause, List<Row> rows)
+    {
+        died = cause;
+        for (Row row : rows) {
+            row.future.fail(cause);
+        }
+        // threads blocked queueing into a full queue hold the read lock, so drain until they are done
+        try {
+            while (!closing.writeLock().tryLock(10, TimeUnit.MILLISECONDS)) {
+                failQueued(cause);
+            }
+        }
+        catch (InterruptedException e) {
+            closing.writeLock().lock();
+        }
+        try {
+            failQueued(cause);
+        }
+        finally {
+            closing.writeLock().unlock();
+        }
+    }
+
+    private void failQueued(Throwable cause)
+    {
+        Row row;
+        while ((row = queue.poll()) != null) {
+            row.future.fail(cause);
+        }
+    }
+
+    private void write(List<Row> rows)
+    {
+        // group the rows by statement, keeping the order they were queued in within each
+        final Map<String, List<Row>> groups = new LinkedHashMap<String, List<Row>>();
+        final List<Row> barriers = new ArrayList<Row>();
+        for (Row row : rows) {
+            if (row.isBarrier()) {
+                barriers.add(row);
+            }
+            else if (!row.future.isCancelled()) {
+                List<Row> group = groups.get(row.sql);
+                if (group == null) {
+                    group = new ArrayList<Row>();
+                    groups.put(row.sql, group);
+                }
+                group.add(row);
+            }
+        }
+        if (!groups.isEmpty()) {
+            write(groups);
+        }
+        for (Row barrier : barriers) {
+            barrier.future.succeed(0);
+        }
+    }
+
+    private void write(final Map<String, List<Row>> groups)
+    {
+        final List<BatchResult> results;
+        try {
+            if (handle == null) {
+                handle = dbi.open();
+            }
+            results = handle.inTransaction(new TransactionCallback<List<BatchResult>>()
+            {
+                public List<BatchResult> inTransaction(Handle conn, TransactionStatus status)
+                {
+                    final List<BatchResult> results = new ArrayList<BatchResult>(groups.size());
+                    for (Map.Entry<String, List<Row>> group : groups.entrySet()) {
+                        final PreparedBatch batch = conn.prepareBatch(group.getKey());
+                        for (Row row : group.getValue()) {
+                            if (row.named != null) {
+                                batch.add(row.named);
+                            }
+                            else {
+                                batch.add(row.positional);
+                            }
+                        }
+                        results.add(batch.executeIsolatingFailures());
+                    }
+                    return results;
+                }
+            });
+        }
+        catch (Throwable e) {
+            // the connection may be broken, so start afresh with the next rows
+            closeHandle();
+            final Throwable cause = e instanceof CallbackFailedException && e.getCause() != null ? e.getCause() : e;
+            for (List<Row> group : groups.values()) {
+                for (Row row : group) {
+                    row.future.fail(cause);
+                }
+            }
+            return;
+        }
+
+        int i = 0;
+        for (List<Row> group : groups.values()) {
+            final BatchResult result = results.get(i++);
+            final Map<Integer, UnableToExecuteStatementException> failures = result.getFailures();
+            for (int row = 0; row < group.size(); row++) {
+                if (failures.containsKey(row)) {
+                    group.get(row).future.fail(failures.get(row));
+                }
+                else {
+                    group.get(row).future.succeed(result.getCounts().get(row));
+                }
+            }
+        }
+    }
+
+    private void closeHandle()
+    {
+        if (handle != null) {
+            try {
+                handle.close();
+            }
+            catch (RuntimeException e) {
+                // already failing, nothing more to do
+            }
+            handle = null;
+        }
+    }
+
+    private static final class Row
+    {
+        private final String                        sql;
+        private final Object[]                      positional;
+        private final Map<String, ? extends Object> named;
+        private final RowFuture                     future = new RowFuture();
+
+        Row(String sql, Object[] positional, Map<String, ? extends Object> named)
+        {
+            this.sql = sql;
+            this.positional = positional;
+            this.named = named;
+        }
+
+        boolean isBarrier()
+        {
+            return sql == null;
+        }
+    }
+
+    private static final class RowFuture extends FutureTask<Integer>
+    {
+        RowFuture()
+        {
+            super(NOTHING);
+        }
+
+        void succeed(int count)
+        {
+            set(count);
+        }
+
+        void fail(Throwable cause)
+        {
+            setException(cause);
+        }
+    }
+
+    public static class Configuration
+    {
+        private final int  maxQueuedRows;
+        private final int  maxBatchSize;
+        private final long flushIntervalNanos;
+
+        public Configuration()
+        {
+            this(10000, 1000, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        private Configuration(int maxQueuedRows, int maxBatchSize, long flushIntervalNanos)
+        {
+            this.maxQueuedRows = maxQueuedRows;
+            this.maxBatchSize = maxBatchSize;
+            this.flushIntervalNanos = flushIntervalNanos;
+        }
+
+        /**
+         * The most rows to hold in the queue before threads queueing rows block. Defaults to 10000.
+         */
+        public Configuration withMaxQueuedRows(int maxQueuedRows)
+        {
+            return new Configuration(maxQueuedRows, maxBatchSize, flushIntervalNanos);
+        }
+
+        /**
+         * The most rows to write at a time. Defaults to 1000.
+         */
+        public Configuration withMaxBatchSize(int maxBatchSize)
+        {
+            return new Configuration(maxQueuedRows, maxBatchSize, flushIntervalNanos);
+        }
+
+        /**
+         * How long to wait for more rows after the first one is queued before writing them.
+         * Defaults to 100 milliseconds.
+         */
+        public Configuration withFlushInterval(long interval, TimeUnit unit)
+        {
+            return new Configuration(maxQueuedRows, maxBatchSize, unit.toNanos(interval));
+        }
+    }
+}
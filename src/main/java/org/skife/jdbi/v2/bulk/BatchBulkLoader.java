@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.tweak.BulkLoader;
+
+import java.sql.Connection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads rows with a streaming {@link PreparedBatch} of inserts. Works with any database, and
+ * is used when no native loader accepts the connection. Values are bound as with
+ * {@link PreparedBatch#add(Object...)}, so nulls are bound without a type, which some drivers
+ * do not support.
+ */
+public class BatchBulkLoader implements BulkLoader
+{
+    private final int flushEvery;
+
+    public BatchBulkLoader()
+    {
+        this(1000);
+    }
+
+    /**
+     * @param flushEvery the number of rows to send to the database at a time
+     */
+    public BatchBulkLoader(int flushEvery)
+    {
+        this.flushEvery = flushEvery;
+    }
+
+    public boolean accepts(Connection connection)
+    {
+        return true;
+    }
+
+    public long load(Handle handle, String table, List<String> columns, Iterator<? extends Object[]> rows)
+    {
+        final StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (");
+        final StringBuilder values = new StringBuilder(") values (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columns.get(i));
+            values.append('?');
+        }
+        sql.append(values).append(')');
+
+        final PreparedBatch batch = handle.prepareBatch(sql.toString()).flushEvery(flushEvery);
+        while (rows.hasNext()) {
+            final Object[] row = rows.next();
+            if (row.length != columns.size()) {
+                throw new IllegalArgumentException(String.format("row %d has %d values for %d columns",
+                                                                 batch.size(), row.length, columns.size()));
+            }
+            batch.add(row);
+        }
+        return batch.executeForCounts().size();
+    }
+}
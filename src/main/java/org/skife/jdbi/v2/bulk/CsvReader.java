@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * Renders rows as comma separated values, one row at a time as the text is read. Nulls are
+ * written as empty fields, and strings quoted, so that an empty string is distinct from null.
+ */
+class CsvReader extends Reader
+{
+    private final Iterator<? extends Object[]> rows;
+    private final int                          columns;
+    private final StringBuilder                line = new StringBuilder();
+
+    private int  position = 0;
+    private long count    = 0;
+
+    CsvReader(Iterator<? extends Object[]> rows, int columns)
+    {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * The number of rows rendered so far
+     */
+    long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException
+    {
+        if (position == line.length() && !nextLine()) {
+            return -1;
+        }
+        final int n = Math.min(length, line.length() - position);
+        line.getChars(position, position + n, buffer, offset);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Write all rows to a file in UTF-8.
+     */
+    void spool(File file) throws IOException
+    {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            final char[] buffer = new char[8192];
+            int n;
+            while ((n = read(buffer, 0, buffer.length)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private boolean nextLine()
+    {
+        if (!rows.hasNext()) {
+            return false;
+        }
+        final Object[] row = rows.next();
+        if (row.length != columns) {
+            throw new IllegalArgumentException(String.format("row %d has %d values for %d columns",
+                                                             count, row.length, columns));
+        }
+        line.setLength(0);
+        position = 0;
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            append(row[i]);
+        }
+        line.append('\n');
+        count++;
+        return true;
+    }
+
+    private void append(Object value)
+    {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        }
+        else if (value instanceof Date) {
+            // the sql types render in the escape format, plain dates do not
+            line.append(value.getClass() == Date.class ? new Timestamp(((Date) value).getTime()) : value);
+        }
+        else if (value instanceof byte[]) {
+            throw new IllegalArgumentException("binary values can not be bulk loaded as text");
+        }
+        else {
+            final String s = value.toString();
+            line.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+    }
+}
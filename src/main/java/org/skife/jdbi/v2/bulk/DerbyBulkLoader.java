@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import org.skife.jdbi.v2.Handle;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads rows into Apache Derby with <code>SYSCS_UTIL.SYSCS_IMPORT_DATA</code>, spooling them
+ * to a temporary file first. The import commits the loaded rows, so do not use this loader
+ * inside a transaction which may roll back.
+ */
+public class DerbyBulkLoader extends SpoolingBulkLoader
+{
+    public DerbyBulkLoader()
+    {
+        super("Apache Derby");
+    }
+
+    @Override
+    protected void importFile(Handle handle, String table, List<String> columns, File file)
+    {
+        final int dot = table.indexOf('.');
+        final String schema = dot < 0 ? null : storedName(table.substring(0, dot));
+        final List<String> stored = new ArrayList<String>(columns.size());
+        for (String column : columns) {
+            stored.add(storedName(column));
+        }
+
+        handle.createStatement("CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(?, ?, ?, null, ?, null, null, 'UTF-8', 0)")
+              .bind(0, schema)
+              .bind(1, storedName(table.substring(dot + 1)))
+              .bind(2, join(stored))
+              .bind(3, file.getAbsolutePath())
+              .execute();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import org.skife.jdbi.v2.Handle;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Loads rows into H2 by selecting them from <code>CSVREAD</code>, spooling them to a temporary
+ * file first.
+ */
+public class H2BulkLoader extends SpoolingBulkLoader
+{
+    public H2BulkLoader()
+    {
+        super("H2");
+    }
+
+    @Override
+    protected void importFile(Handle handle, String table, List<String> columns, File file)
+    {
+        // csvread only takes constant arguments
+        final String names = join(columns);
+        handle.createStatement(String.format("insert into %s (%s) select * from csvread(%s, %s, 'charset=UTF-8')",
+                                             table, names, literal(file.getAbsolutePath()), literal(names)))
+              .execute();
+    }
+
+    private static String literal(String value)
+    {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
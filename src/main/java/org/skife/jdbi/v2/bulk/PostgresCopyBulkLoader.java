@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.BulkLoader;
+
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads rows into PostgreSQL with <code>COPY ... FROM STDIN</code>, rendering them as they are
+ * sent. Only accepts connections when the PostgreSQL driver is on the class path, which is looked
+ * up reflectively so that it need not be present otherwise.
+ */
+public class PostgresCopyBulkLoader implements BulkLoader
+{
+    private static final Class<?> PG_CONNECTION;
+    private static final Method   GET_COPY_API;
+    private static final Method   COPY_IN;
+
+    static {
+        Class<?> connection = null;
+        Method getCopyApi = null;
+        Method copyIn = null;
+        try {
+            connection = Class.forName("org.postgresql.PGConnection");
+            getCopyApi = connection.getMethod("getCopyAPI");
+            copyIn = getCopyApi.getReturnType().getMethod("copyIn", String.class, Reader.class);
+        }
+        catch (Exception e) {
+            // no (recent enough) driver, so never accept a connection
+            connection = null;
+        }
+        PG_CONNECTION = connection;
+        GET_COPY_API = getCopyApi;
+        COPY_IN = copyIn;
+    }
+
+    public boolean accepts(Connection connection) throws SQLException
+    {
+        return PG_CONNECTION != null && connection.isWrapperFor(PG_CONNECTION);
+    }
+
+    public long load(Handle handle, String table, List<String> columns, Iterator<? extends Object[]> rows)
+        throws Exception
+    {
+        final StringBuilder sql = new StringBuilder("COPY ").append(table).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns.get(i));
+        }
+        sql.append(") FROM STDIN WITH CSV");
+
+        final Object copyApi = GET_COPY_API.invoke(handle.getConnection().unwrap(PG_CONNECTION));
+        try {
+            return (Long) COPY_IN.invoke(copyApi, sql.toString(), new CsvReader(rows, columns.size()));
+        }
+        catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.bulk;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.BulkLoader;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Base for loaders which import a file, spooling the rows to a temporary file first.
+ */
+abstract class SpoolingBulkLoader implements BulkLoader
+{
+    private final String productName;
+
+    SpoolingBulkLoader(String productName)
+    {
+        this.productName = productName;
+    }
+
+    public boolean accepts(Connection connection) throws SQLException
+    {
+        return productName.equals(connection.getMetaData().getDatabaseProductName());
+    }
+
+    public long load(Handle handle, String table, List<String> columns, Iterator<? extends Object[]> rows)
+        throws Exception
+    {
+        final File file = File.createTempFile("jdbi-bulk-", ".csv");
+        try {
+            final CsvReader csv = new CsvReader(rows, columns.size());
+            csv.spool(file);
+            if (csv.getCount() > 0) {
+                importFile(handle, table, columns, file);
+            }
+            return csv.getCount();
+        }
+        finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Import a UTF-8 encoded comma separated file into the table.
+     */
+    protected abstract void importFile(Handle handle, String table, List<String> columns, File file) throws Exception;
+
+    /**
+     * The name of an identifier as stored in a database which folds unquoted identifiers
+     * to upper case.
+     */
+    static String storedName(String identifier)
+    {
+        if (identifier.length() > 1 && identifier.startsWith("\"") && identifier.endsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+        }
+        return identifier.toUpperCase(Locale.ENGLISH);
+    }
+
+    static String join(List<String> names)
+    {
+        final StringBuilder b = new StringBuilder();
+        for (String name : names) {
+            if (b.length() > 0) {
+                b.append(',');
+            }
+            b.append(name);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.exceptions;
+
+/**
+ * Thrown when a handle is not opened because the {@link org.skife.jdbi.v2.AdmissionControl} of its
+ * DBI did not admit it in time, so callers can shed the load instead of waiting on the database.
+ */
+public class AdmissionRejectedException extends DBIException
+{
+    public AdmissionRejectedException(String message)
+    {
+        super(message);
+    }
+}
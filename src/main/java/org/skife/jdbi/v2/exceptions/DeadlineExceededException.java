@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.exceptions;
+
+import org.skife.jdbi.v2.StatementContext;
+
+/**
+ * Thrown when a statement is cancelled, or not run at all, because its
+ * {@link org.skife.jdbi.v2.Deadline} passed or the thread running it was interrupted.
+ */
+public class DeadlineExceededException extends UnableToExecuteStatementException
+{
+    public DeadlineExceededException(String message, Throwable cause, StatementContext ctx)
+    {
+        super(message, cause, ctx);
+    }
+}
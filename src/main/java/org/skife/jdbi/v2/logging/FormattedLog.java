@@ -18,6 +18,10 @@ package org.skife.jdbi.v2.logging;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.tweak.SQLLog;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.SQLException;
+
 /**
  * Convenience class which handles log statement formatting
  */
@@ -126,4 +130,44 @@ public abstract class FormattedLog implements SQLLog
             log(String.format("checkpoint [%s] on [%s] rolled back in %d millis", checkpointName, h, time));
         }
     }
+
+    /**
+     * Not part of {@link SQLLog}, called by a {@link org.skife.jdbi.v2.DBI} with replicas when
+     * connecting to one fails, before it tries the next replica or the primary.
+     */
+    public void logReplicaFailure(int replica, SQLException e)
+    {
+        if (this.isEnabled()) {
+            log(String.format("connecting to replica %d failed: %s", replica, e));
+        }
+    }
+
+    /**
+     * Not part of {@link SQLLog}, whether {@link #logAbandonedIterator(Handle, String, Throwable)}
+     * logs, so that handles only record where iterators are opened when it is worth it.
+     */
+    public boolean isAbandonedIteratorLogged()
+    {
+        return isEnabled();
+    }
+
+    /**
+     * Not part of {@link SQLLog}, called by a handle when it finds a result iterator which was
+     * dropped without being closed, and closes its statement.
+     *
+     * @param sql      the sql of the statement
+     * @param openedAt where the iterator was opened, or null if that was not recorded
+     */
+    public void logAbandonedIterator(Handle h, String sql, Throwable openedAt)
+    {
+        if (this.isEnabled()) {
+            if (openedAt == null) {
+                log(String.format("result iterator for [%s] on [%s] was never closed, closed its statement", sql, h));
+                return;
+            }
+            final StringWriter site = new StringWriter();
+            openedAt.printStackTrace(new PrintWriter(site));
+            log(String.format("result iterator for [%s] on [%s] was never closed, closed its statement; %s", sql, h, site));
+        }
+    }
 }
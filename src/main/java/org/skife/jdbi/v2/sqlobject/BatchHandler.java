@@ -21,16 +21,26 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.sf.cglib.proxy.MethodProxy;
 
+import org.skife.jdbi.v2.BatchResult;
 import org.skife.jdbi.v2.ConcreteStatementContext;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.PreparedBatch;
 import org.skife.jdbi.v2.PreparedBatchPart;
 import org.skife.jdbi.v2.TransactionCallback;
 import org.skife.jdbi.v2.TransactionStatus;
+import org.skife.jdbi.v2.UpdateCounts;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
 import org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
 import com.fasterxml.classmate.members.ResolvedMethod;
 
@@ -41,6 +51,8 @@ class BatchHandler extends CustomizingStatementHandler
     private final String  sql;
     private final boolean transactional;
     private final ChunkSizeFunction batchChunkSize;
+    private final int     parallelism;
+    private final Results<?> results;
 
     public BatchHandler(Class<?> sqlObjectType, ResolvedMethod method)
     {
@@ -49,6 +61,16 @@ class BatchHandler extends CustomizingStatementHandler
         SqlBatch anno = raw_method.getAnnotation(SqlBatch.class);
         this.sql = SqlObject.getSql(anno, raw_method);
         this.transactional = anno.transactional();
+        this.parallelism = anno.parallelism();
+        if (raw_method.isAnnotationPresent(GetGeneratedKeys.class)) {
+            this.results = new GeneratedKeysResults(raw_method);
+        }
+        else {
+            this.results = Counts.forReturnType(raw_method.getReturnType());
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Batch parallelism must be >= 1");
+        }
         this.batchChunkSize = determineBatchChunkSize(sqlObjectType, raw_method);
     }
 
@@ -94,8 +116,6 @@ class BatchHandler extends CustomizingStatementHandler
 
     public Object invoke(HandleDing h, Object target, Object[] args, MethodProxy mp)
     {
-        Handle handle = h.getHandle();
-
         List<Iterator> extras = new ArrayList<Iterator>();
         for (final Object arg : args) {
             if (arg instanceof Iterable) {
@@ -130,23 +150,34 @@ class BatchHandler extends CustomizingStatementHandler
             }
         }
 
+        return execute(results, h, extras, args);
+    }
+
+    private <T> Object execute(Results<T> results, HandleDing h, List<Iterator> extras, Object[] args)
+    {
+        Handle handle = h.getHandle();
+        int chunk_size = batchChunkSize.call(args);
+        if (parallelism > 1 && h.getDbi() instanceof DBI && !handle.isInTransaction()) {
+            return results.of(executeInParallel(results, (DBI) h.getDbi(), extras, args, chunk_size));
+        }
+
         int processed = 0;
-        List<int[]> rs_parts = new ArrayList<int[]>();
+        T result = null;
 
         PreparedBatch batch = handle.prepareBatch(sql);
         populateSqlObjectData((ConcreteStatementContext) batch.getContext());
         applyCustomizers(batch, args);
-        Object[] _args;
-        int chunk_size = batchChunkSize.call(args);
+        // binders copy the values out of the row as they bind, so one array serves every row
+        Object[] _args = new Object[extras.size()];
 
-        while ((_args = next(extras)) != null) {
+        while (next(extras, _args)) {
             PreparedBatchPart part = batch.add();
             applyBinders(part, _args);
 
             if (++processed == chunk_size) {
                 // execute this chunk
                 processed = 0;
-                rs_parts.add(executeBatch(handle, batch));
+                result = results.add(result, executeBatch(results, handle, batch));
                 batch = handle.prepareBatch(sql);
                 populateSqlObjectData((ConcreteStatementContext) batch.getContext());
                 applyCustomizers(batch, args);
@@ -154,53 +185,299 @@ class BatchHandler extends CustomizingStatementHandler
         }
 
         //execute the rest
-        rs_parts.add(executeBatch(handle, batch));
+        result = results.add(result, executeBatch(results, handle, batch));
+
+        return results.of(result);
+    }
+
+    private <T> T executeInParallel(Results<T> results, DBI dbi, List<Iterator> extras, Object[] args, int chunk_size)
+    {
+        final Semaphore running = new Semaphore(parallelism);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final List<Future<T>> chunks = new ArrayList<Future<T>>();
+        boolean interrupted = false;
+        try {
+            List<Object[]> chunk = new ArrayList<Object[]>();
+            Object[] _args = new Object[extras.size()];
+            while (!failed.get() && next(extras, _args)) {
+                // chunks are bound later on other threads, so each row needs an array of its own
+                chunk.add(_args.clone());
+                if (chunk.size() == chunk_size) {
+                    chunks.add(submitChunk(results, dbi, chunk, args, running, failed));
+                    chunk = new ArrayList<Object[]>();
+                }
+            }
+            if (!failed.get() && !chunk.isEmpty()) {
+                chunks.add(submitChunk(results, dbi, chunk, args, running, failed));
+            }
+        }
+        catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        // wait for every chunk, even after a failure, so that none is still running when this returns
+        T result = null;
+        Throwable failure = null;
+        for (Future<T> chunk : chunks) {
+            while (true) {
+                try {
+                    result = results.add(result, chunk.get());
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
 
-        // combine results
-        int end_size = 0;
-        for (int[] rs_part : rs_parts) {
-            end_size += rs_part.length;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                throw new IllegalStateException("interrupted while executing batch chunks");
+            }
         }
-        int[] rs = new int[end_size];
-        int offset = 0;
-        for (int[] rs_part : rs_parts) {
-            System.arraycopy(rs_part, 0, rs, offset, rs_part.length);
-            offset += rs_part.length;
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
         }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("unable to execute batch chunk", failure);
+        }
+        return result;
+    }
 
-        return rs;
+    private <T> Future<T> submitChunk(final Results<T> results,
+                                      final DBI dbi,
+                                      final List<Object[]> rows,
+                                      final Object[] args,
+                                      final Semaphore running,
+                                      final AtomicBoolean failed) throws InterruptedException
+    {
+        running.acquire();
+        try {
+            return dbi.getExecutor().submit(new Callable<T>()
+            {
+                public T call()
+                {
+                    final Handle handle = dbi.open();
+                    try {
+                        PreparedBatch batch = handle.prepareBatch(sql);
+                        populateSqlObjectData((ConcreteStatementContext) batch.getContext());
+                        applyCustomizers(batch, args);
+                        for (Object[] row : rows) {
+                            applyBinders(batch.add(), row);
+                        }
+                        return executeBatch(results, handle, batch);
+                    }
+                    catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    finally {
+                        try {
+                            handle.close();
+                        }
+                        finally {
+                            running.release();
+                        }
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            running.release();
+            throw e;
+        }
     }
 
-    private int[] executeBatch(final Handle handle, final PreparedBatch batch)
+    private <T> T executeBatch(final Results<T> results, final Handle handle, final PreparedBatch batch)
     {
         if (!handle.isInTransaction() && transactional) {
             // it is safe to use same prepared batch as the inTransaction passes in the same
             // Handle instance.
-            return handle.inTransaction(new TransactionCallback<int[]>()
+            return handle.inTransaction(new TransactionCallback<T>()
             {
-                public int[] inTransaction(Handle conn, TransactionStatus status) throws Exception
+                public T inTransaction(Handle conn, TransactionStatus status) throws Exception
                 {
-                    return batch.execute();
+                    return results.execute(batch);
                 }
             });
         }
         else {
-            return batch.execute();
+            return results.execute(batch);
         }
     }
 
-    private static Object[] next(List<Iterator> args)
+    /**
+     * Fill <code>row</code> with the next value of each argument.
+     *
+     * @return false if any argument has no more values
+     */
+    private static boolean next(List<Iterator> args, Object[] row)
     {
-        List<Object> rs = new ArrayList<Object>();
-        for (Iterator arg : args) {
+        for (int i = 0; i < row.length; i++) {
+            final Iterator arg = args.get(i);
             if (arg.hasNext()) {
-                rs.add(arg.next());
+                row[i] = arg.next();
             }
             else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * What a batch method returns: how each chunk is executed, and how the results of the chunks
+     * are combined.
+     */
+    private static interface Results<T>
+    {
+        T execute(PreparedBatch batch);
+
+        /**
+         * @param result the results of the chunks so far, or null before the first chunk
+         */
+        T add(T result, T chunk);
+
+        Object of(T result);
+    }
+
+    /**
+     * Update counts, which are kept run length encoded and only expanded to an array for methods
+     * which return one. Methods returning a {@link BatchResult} isolate the rows which fail
+     * instead of failing the whole batch.
+     */
+    private static enum Counts implements Results<BatchResult>
+    {
+        COUNTS
+        {
+            public Object of(BatchResult result)
+            {
+                return result.getCounts().toArray();
+            }
+        },
+        COMPACT_COUNTS
+        {
+            public Object of(BatchResult result)
+            {
+                return result.getCounts();
+            }
+        },
+        TOTAL
+        {
+            public Object of(BatchResult result)
+            {
+                return result.getCounts().getTotal();
+            }
+        },
+        ISOLATED_FAILURES
+        {
+            public BatchResult execute(PreparedBatch batch)
+            {
+                return batch.executeIsolatingFailures();
+            }
+
+            public Object of(BatchResult result)
+            {
+                return result;
+            }
+        },
+        NOTHING
+        {
+            public BatchResult add(BatchResult result, BatchResult chunk)
+            {
+                return null;
+            }
+
+            public Object of(BatchResult result)
+            {
                 return null;
             }
+        };
+
+        public BatchResult execute(PreparedBatch batch)
+        {
+            return new BatchResult(batch.executeForCounts());
+        }
+
+        public BatchResult add(BatchResult result, BatchResult chunk)
+        {
+            if (result == null) {
+                return chunk;
+            }
+            result.add(chunk);
+            return result;
+        }
+
+        static Counts forReturnType(Class<?> type)
+        {
+            if (type == void.class || type == Void.class) {
+                return NOTHING;
+            }
+            if (type == long.class || type == Long.class) {
+                return TOTAL;
+            }
+            if (type == UpdateCounts.class) {
+                return COMPACT_COUNTS;
+            }
+            if (type == BatchResult.class) {
+                return ISOLATED_FAILURES;
+            }
+            return COUNTS;
+        }
+    }
+
+    /**
+     * The keys generated by the batch, for methods annotated with {@link GetGeneratedKeys}.
+     */
+    private static final class GeneratedKeysResults implements Results<List<Object>>
+    {
+        private final ResultSetMapper<?> mapper;
+
+        GeneratedKeysResults(Method raw_method)
+        {
+            final Class<?> return_type = raw_method.getReturnType();
+            if (!return_type.isAssignableFrom(List.class)) {
+                throw new IllegalArgumentException(String.format("@SqlBatch method %s with @GetGeneratedKeys must return a List of keys, not %s",
+                                                                 raw_method.getName(), return_type.getName()));
+            }
+
+            try {
+                this.mapper = raw_method.getAnnotation(GetGeneratedKeys.class).value().newInstance();
+            }
+            catch (Exception e) {
+                throw new UnableToCreateStatementException("Unable to instantiate result set mapper for statement", e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<Object> execute(PreparedBatch batch)
+        {
+            return (List<Object>) batch.executeAndGenerateKeys(mapper).list();
+        }
+
+        public List<Object> add(List<Object> result, List<Object> chunk)
+        {
+            if (result == null) {
+                return chunk;
+            }
+            result.addAll(chunk);
+            return result;
+        }
+
+        public Object of(List<Object> result)
+        {
+            return result;
         }
-        return rs.toArray();
     }
 
     private static interface ChunkSizeFunction
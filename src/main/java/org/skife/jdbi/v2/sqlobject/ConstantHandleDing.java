@@ -16,14 +16,21 @@
 package org.skife.jdbi.v2.sqlobject;
 
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
 
 class ConstantHandleDing implements HandleDing
 {
 
     private final Handle handle;
+    private final IDBI dbi;
 
     ConstantHandleDing(Handle handle) {
+        this(handle, null);
+    }
+
+    ConstantHandleDing(Handle handle, IDBI dbi) {
         this.handle = handle;
+        this.dbi = dbi;
     }
 
     public Handle getHandle()
@@ -31,6 +38,23 @@ class ConstantHandleDing implements HandleDing
         return handle;
     }
 
+    public IDBI getDbi()
+    {
+        return dbi;
+    }
+
+    public void retain()
+    {
+    }
+
+    public void retainReadOnly()
+    {
+    }
+
+    public void release()
+    {
+    }
+
     public void release(String name)
     {
     }
@@ -16,6 +16,7 @@
 package org.skife.jdbi.v2.sqlobject;
 
 import com.fasterxml.classmate.members.ResolvedMethod;
+import org.skife.jdbi.v2.BuiltInArguments;
 import org.skife.jdbi.v2.ConcreteStatementContext;
 import org.skife.jdbi.v2.SQLStatement;
 import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
@@ -29,8 +30,7 @@ import java.util.List;
 abstract class CustomizingStatementHandler implements Handler
 {
     private final List<Bindifier>                    binders                        = new ArrayList<Bindifier>();
-    private final List<FactoryAnnotationPair>        typeBasedCustomizerFactories   = new ArrayList<FactoryAnnotationPair>();
-    private final List<FactoryAnnotationPair>        methodBasedCustomizerFactories = new ArrayList<FactoryAnnotationPair>();
+    private final List<SqlStatementCustomizer>       staticCustomizers              = new ArrayList<SqlStatementCustomizer>();
     private final List<FactoryAnnotationIndexTriple> paramBasedCustomizerFactories  = new ArrayList<FactoryAnnotationIndexTriple>();
     private final Class<?> sqlObjectType;
     private final Method method;
@@ -51,7 +51,8 @@ abstract class CustomizingStatementHandler implements Handler
                 catch (Exception e) {
                     throw new IllegalStateException("unable to create sql statement customizer factory", e);
                 }
-                typeBasedCustomizerFactories.add(new FactoryAnnotationPair(f, annotation));
+                // type and method level customizers depend only on annotations, so they are built once
+                staticCustomizers.add(f.createForType(annotation, sqlObjectType));
             }
         }
 
@@ -69,12 +70,13 @@ abstract class CustomizingStatementHandler implements Handler
                 catch (Exception e) {
                     throw new IllegalStateException("unable to instantiate statement customizer factory", e);
                 }
-                methodBasedCustomizerFactories.add(new FactoryAnnotationPair(f, method_annotation));
+                staticCustomizers.add(f.createForMethod(method_annotation, sqlObjectType, this.method));
             }
 
         }
 
         final Annotation[][] param_annotations = method.getRawMember().getParameterAnnotations();
+        final Class<?>[] param_types = method.getRawMember().getParameterTypes();
         for (int param_idx = 0; param_idx < param_annotations.length; param_idx++) {
             final Annotation[] annotations = param_annotations[param_idx];
             for (final Annotation annotation : annotations) {
@@ -86,7 +88,15 @@ abstract class CustomizingStatementHandler implements Handler
                     BindingAnnotation ba = annotation.annotationType().getAnnotation(BindingAnnotation.class);
                     try {
                         BinderFactory fact = ba.value().newInstance();
-                        binders.add(new Bindifier(annotation, param_idx, fact.build(annotation)));
+                        Binder binder = fact.build(annotation);
+                        if (binder.getClass() == DefaultObjectBinder.class) {
+                            // a final declared type has its built in argument resolved once, rather than by every value
+                            final BuiltInArguments arguments = BuiltInArguments.forType(param_types[param_idx]);
+                            if (arguments != null) {
+                                binder = new DeclaredTypeBinder(arguments);
+                            }
+                        }
+                        binders.add(new Bindifier(annotation, param_idx, binder));
 
                     }
                     catch (Exception e) {
@@ -126,18 +136,9 @@ abstract class CustomizingStatementHandler implements Handler
 
     protected void applyCustomizers(SQLStatement<?> q, Object[] args)
     {
-        for (FactoryAnnotationPair pair : typeBasedCustomizerFactories) {
+        for (SqlStatementCustomizer customizer : staticCustomizers) {
             try {
-                pair.factory.createForType(pair.annotation, sqlObjectType).apply(q);
-            }
-            catch (SQLException e) {
-                throw new UnableToCreateStatementException("unable to apply customizer", e, q.getContext());
-            }
-        }
-
-        for (FactoryAnnotationPair pair : methodBasedCustomizerFactories) {
-            try {
-                pair.factory.createForMethod(pair.annotation, sqlObjectType, method).apply(q);
+                customizer.apply(q);
             }
             catch (SQLException e) {
                 throw new UnableToCreateStatementException("unable to apply customizer", e, q.getContext());
@@ -158,18 +159,6 @@ abstract class CustomizingStatementHandler implements Handler
         }
     }
 
-    private static class FactoryAnnotationPair
-    {
-        private final SqlStatementCustomizerFactory factory;
-        private final Annotation                    annotation;
-
-        FactoryAnnotationPair(SqlStatementCustomizerFactory factory, Annotation annotation)
-        {
-            this.factory = factory;
-            this.annotation = annotation;
-        }
-    }
-
     private static class FactoryAnnotationIndexTriple
     {
         private final SqlStatementCustomizerFactory factory;
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.skife.jdbi.v2.BuiltInArguments;
+import org.skife.jdbi.v2.SQLStatement;
+
+/**
+ * Replaces {@link DefaultObjectBinder} for parameters whose declared type is final and has a built
+ * in argument, such as a primitive, a primitive wrapper or a String. The argument is resolved for
+ * the declared type once, when the handler of the method is built, and used as long as no argument
+ * factories are registered; with factories registered it binds as {@link DefaultObjectBinder} does.
+ */
+class DeclaredTypeBinder implements Binder<Bind, Object>
+{
+    private final BuiltInArguments arguments;
+
+    DeclaredTypeBinder(BuiltInArguments arguments)
+    {
+        this.arguments = arguments;
+    }
+
+    public void bind(SQLStatement<?> q, Bind b, Object arg)
+    {
+        arguments.bind(q, b.value(), arg);
+    }
+}
@@ -20,6 +20,8 @@ import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -31,8 +33,27 @@ class FigureItOutResultSetMapper implements ResultSetMapper<Object>
     {
         Method m = ctx.getSqlObjectMethod();
         m.getAnnotation(GetGeneratedKeys.class);
-        Class<?> rt = m.getReturnType();
+        Class<?> rt = keyType(m);
         ResultSetMapper f = factory.mapperFor(rt, ctx);
+        if (f == null) {
+            throw new IllegalStateException(String.format("no mapper for generated keys of type %s of method %s, name one in @GetGeneratedKeys",
+                                                          rt.getName(), m.getName()));
+        }
         return f.map(index, r, ctx);
     }
+
+    /**
+     * The return type, or for a method returning a collection of keys the type of its elements.
+     */
+    private static Class<?> keyType(Method m)
+    {
+        Class<?> rt = m.getReturnType();
+        if (Iterable.class.isAssignableFrom(rt) && m.getGenericReturnType() instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) m.getGenericReturnType()).getActualTypeArguments()[0];
+            if (element instanceof Class) {
+                return (Class<?>) element;
+            }
+        }
+        return rt;
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.skife.jdbi.v2.ConcreteStatementContext;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.SQLStatement;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Base class for sql object implementations emitted at compile time by
+ * {@link org.skife.jdbi.v2.sqlobject.processor.SqlObjectProcessor}. When a generated implementation
+ * is on the classpath next to a sql object interface, {@link SqlObjectBuilder} instantiates it
+ * instead of building a cglib proxy.
+ * <p>
+ * This is public as generated code needs to extend it. It is not intended to be used directly.
+ */
+public abstract class GeneratedSqlObject implements CloseInternalDoNotUseThisClass
+{
+    /**
+     * Appended to the binary name of a sql object interface, with any '$' replaced by '_', to
+     * form the name of its generated implementation.
+     */
+    public static final String SUFFIX = "_SqlObjectImpl";
+
+    private final Class<?> sqlObjectType;
+    private HandleDing ding;
+
+    protected GeneratedSqlObject(Class<?> sqlObjectType)
+    {
+        this.sqlObjectType = sqlObjectType;
+    }
+
+    final void attach(HandleDing ding)
+    {
+        this.ding = ding;
+    }
+
+    static String generatedNameFor(Class<?> sqlObjectType)
+    {
+        return sqlObjectType.getName().replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * Retain the handle backing this sql object for the duration of a method call and return it.
+     */
+    protected final Handle retain()
+    {
+        ding.retain();
+        return ding.getHandle();
+    }
+
+    /**
+     * Release the handle retained by {@link #retain()}.
+     */
+    protected final void release()
+    {
+        ding.release();
+    }
+
+    /**
+     * Record the sql object type and method on the statement context, as the proxy based handlers do.
+     */
+    protected final <StatementType extends SQLStatement<?>> StatementType describe(StatementType statement,
+                                                                                   Method method)
+    {
+        final ConcreteStatementContext ctx = (ConcreteStatementContext) statement.getContext();
+        ctx.setSqlObjectMethod(method);
+        ctx.setSqlObjectType(sqlObjectType);
+        return statement;
+    }
+
+    protected final int[] execute(Handle handle, final PreparedBatch batch, boolean transactional)
+    {
+        if (!handle.isInTransaction() && transactional) {
+            return handle.inTransaction(new TransactionCallback<int[]>()
+            {
+                public int[] inTransaction(Handle conn, TransactionStatus status) throws Exception
+                {
+                    return batch.execute();
+                }
+            });
+        }
+        else {
+            return batch.execute();
+        }
+    }
+
+    /**
+     * Turn an argument to a batch method into the values bound for each row, in the same way
+     * the proxy based batch handler does: iterables, iterators and arrays yield one value per
+     * row, anything else is bound to every row.
+     */
+    protected static Iterator<?> rows(final Object arg)
+    {
+        if (arg instanceof Iterable) {
+            return ((Iterable<?>) arg).iterator();
+        }
+        else if (arg instanceof Iterator) {
+            return (Iterator<?>) arg;
+        }
+        else if (arg.getClass().isArray()) {
+            return Arrays.asList((Object[]) arg).iterator();
+        }
+        else {
+            return new Iterator<Object>()
+            {
+                public boolean hasNext()
+                {
+                    return true;
+                }
+
+                @SuppressFBWarnings("IT_NO_SUCH_ELEMENT")
+                public Object next()
+                {
+                    return arg;
+                }
+
+                public void remove()
+                {
+                    // NOOP
+                }
+            };
+        }
+    }
+
+    protected static Method method(Class<?> sqlObjectType, String name, Class<?>... parameterTypes)
+    {
+        try {
+            return sqlObjectType.getMethod(name, parameterTypes);
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalStateException("generated sql object is out of date with " + sqlObjectType.getName(), e);
+        }
+    }
+
+    public void ___jdbi_close___()
+    {
+        ding.getHandle().close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return sqlObjectType.getName() + '@' + Integer.toHexString(hashCode());
+    }
+}
@@ -22,6 +22,12 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Return the keys generated by a {@link SqlUpdate} or {@link SqlBatch} method instead of its
+ * update counts. A batch method must return a List, which holds the keys of every chunk in order.
+ * The keys are mapped with the mapper given here, or by default as the return type of the method,
+ * or the element type of a returned collection.
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
 public @interface GetGeneratedKeys
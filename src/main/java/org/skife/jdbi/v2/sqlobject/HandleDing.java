@@ -16,12 +16,36 @@
 package org.skife.jdbi.v2.sqlobject;
 
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
 
 interface HandleDing
 {
     public Handle getHandle();
 
-    public void release(String name);
+    /**
+     * The dbi which the handle was opened from, for opening further handles, or null if the
+     * sql object was attached to a handle.
+     */
+    IDBI getDbi();
+
+    /**
+     * Hold the handle for the duration of a sql object method call. Holds nest, and each
+     * must be matched by exactly one call to {@link #release()}.
+     */
+    void retain();
+
+    /**
+     * Hold the handle as {@link #retain()} does, opening a read only handle if none is open yet.
+     */
+    void retainReadOnly();
 
+    void release();
+
+    /**
+     * Hold the handle until released by name, for holds which outlive a method call such as
+     * open iterators and transactions. Releasing a name which is not held does nothing.
+     */
     void retain(String name);
+
+    public void release(String name);
 }
@@ -15,6 +15,8 @@
  */
 package org.skife.jdbi.v2.sqlobject;
 
+import org.skife.jdbi.v2.AdmissionControl;
+import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
 
@@ -24,25 +26,70 @@ import java.util.Set;
 class OnDemandHandleDing implements HandleDing
 {
     private final IDBI dbi;
+    private final AdmissionControl.Priority priority;
     private final ThreadLocal<LocalDing> threadDing = new ThreadLocal<LocalDing>();
 
-    OnDemandHandleDing(IDBI dbi)
+    OnDemandHandleDing(IDBI dbi, AdmissionControl.Priority priority)
     {
         this.dbi = dbi;
+        this.priority = priority;
+    }
+
+    /**
+     * Open a handle, with the given admission priority if not null. Read only handles are only
+     * opened from a {@link DBI}, which knows of replicas.
+     */
+    static Handle open(IDBI dbi, AdmissionControl.Priority priority, boolean readOnly)
+    {
+        if (priority == null) {
+            return open(dbi, readOnly);
+        }
+        final AdmissionControl.Priority previous = AdmissionControl.setPriority(priority);
+        try {
+            return open(dbi, readOnly);
+        }
+        finally {
+            AdmissionControl.setPriority(previous);
+        }
+    }
+
+    private static Handle open(IDBI dbi, boolean readOnly)
+    {
+        return readOnly && dbi instanceof DBI ? ((DBI) dbi).openReadOnly() : dbi.open();
     }
 
     public Handle getHandle()
     {
-        if (threadDing.get() == null) {
-            threadDing.set(new LocalDing(dbi.open()));
+        return localDing().getHandle();
+    }
+
+    public IDBI getDbi()
+    {
+        return dbi;
+    }
+
+    public void retain()
+    {
+        localDing().retain();
+    }
+
+    public void retainReadOnly()
+    {
+        localDing(true).retain();
+    }
+
+    public void release()
+    {
+        LocalDing ding = threadDing.get();
+        if (ding == null) {
+            return;
         }
-        return threadDing.get().getHandle();
+        ding.release();
     }
 
     public void retain(String name)
     {
-        getHandle(); // need to ensure the local ding has been created as this is called before getHandle sometimes.
-        threadDing.get().retain(name);
+        localDing().retain(name);
     }
 
     public void release(String name)
@@ -55,10 +102,27 @@ class OnDemandHandleDing implements HandleDing
 
     }
 
+    private LocalDing localDing()
+    {
+        return localDing(false);
+    }
+
+    private LocalDing localDing(boolean readOnly)
+    {
+        // retain is called before getHandle sometimes, so either may need to create the local ding
+        LocalDing ding = threadDing.get();
+        if (ding == null) {
+            ding = new LocalDing(open(dbi, priority, readOnly));
+            threadDing.set(ding);
+        }
+        return ding;
+    }
+
     class LocalDing implements HandleDing {
 
-        private final Set<String> retentions = new HashSet<String>();
+        private final Set<String> namedRetentions = new HashSet<String>();
         private final Handle handle;
+        private int retentions = 0;
 
         public LocalDing(Handle handle)
         {
@@ -70,19 +134,45 @@ class OnDemandHandleDing implements HandleDing
             return handle;
         }
 
+        public IDBI getDbi()
+        {
+            return dbi;
+        }
+
+        public void retain()
+        {
+            retentions++;
+        }
+
+        public void retainReadOnly()
+        {
+            retain();
+        }
+
+        public void release()
+        {
+            retentions--;
+            closeIfUnused();
+        }
+
         public void release(String name)
         {
-            retentions.remove(name);
-            if (retentions.isEmpty()) {
-                threadDing.set(null);
-                handle.close();
+            if (namedRetentions.remove(name)) {
+                closeIfUnused();
             }
         }
 
         public void retain(String name)
         {
-            retentions.add(name);
+            namedRetentions.add(name);
         }
 
+        private void closeIfUnused()
+        {
+            if (retentions <= 0 && namedRetentions.isEmpty()) {
+                threadDing.set(null);
+                handle.close();
+            }
+        }
     }
 }
@@ -26,10 +26,17 @@ import java.lang.reflect.Method;
 class PassThroughTransactionHandler implements Handler
 {
     private final TransactionIsolationLevel isolation;
+    private final boolean                   readOnly;
 
     PassThroughTransactionHandler(Method m, Transaction tx)
     {
         this.isolation = tx.value();
+        this.readOnly = tx.readOnly();
+    }
+
+    boolean isReadOnly()
+    {
+        return readOnly;
     }
 
     @Override
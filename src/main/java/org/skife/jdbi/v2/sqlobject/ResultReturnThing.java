@@ -31,16 +31,26 @@ import java.util.List;
 
 abstract class ResultReturnThing
 {
-    public Object map(ResolvedMethod method, Query q, HandleDing h)
+    private final ResultSetMapper mapper;
+
+    ResultReturnThing(ResolvedMethod method)
     {
         if (method.getRawMember().isAnnotationPresent(Mapper.class)) {
-            final ResultSetMapper mapper;
             try {
-                mapper = method.getRawMember().getAnnotation(Mapper.class).value().newInstance();
+                this.mapper = method.getRawMember().getAnnotation(Mapper.class).value().newInstance();
             }
             catch (Exception e) {
                 throw new UnableToCreateStatementException("unable to access mapper", e);
             }
+        }
+        else {
+            this.mapper = null;
+        }
+    }
+
+    public Object map(ResolvedMethod method, Query q, HandleDing h)
+    {
+        if (mapper != null) {
             return result(q.map(mapper), h);
         }
         else {
@@ -82,6 +92,7 @@ abstract class ResultReturnThing
 
         public SingleValueResultReturnThing(ResolvedMethod method)
         {
+            super(method);
             if (method.getRawMember().isAnnotationPresent(SingleValueResult.class)) {
                 SingleValueResult svr = method.getRawMember().getAnnotation(SingleValueResult.class);
                 // try to guess generic type
@@ -125,6 +136,7 @@ abstract class ResultReturnThing
 
         public ResultBearingResultReturnThing(ResolvedMethod method)
         {
+            super(method);
             // extract T from Query<T>
             ResolvedType query_type = method.getReturnType();
             List<ResolvedType> query_return_types = query_type.typeParametersFor(org.skife.jdbi.v2.Query.class);
@@ -151,6 +163,7 @@ abstract class ResultReturnThing
 
         public IteratorResultReturnThing(ResolvedMethod method)
         {
+            super(method);
             ResolvedType query_type = method.getReturnType();
             List<ResolvedType> query_return_types = query_type.typeParametersFor(Iterator.class);
             this.resolvedType = query_return_types.get(0);
@@ -210,6 +223,7 @@ abstract class ResultReturnThing
 
         public IterableReturningThing(ResolvedMethod method)
         {
+            super(method);
             // extract T from List<T>
             ResolvedType query_type = method.getReturnType();
             List<ResolvedType> query_return_types = query_type.typeParametersFor(Iterable.class);
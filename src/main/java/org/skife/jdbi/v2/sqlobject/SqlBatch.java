@@ -33,6 +33,12 @@ import java.lang.annotation.Target;
  * If you want to chunk up the logical batch into a number of smaller batches (say around 1000 rows at
  * a time in order to not wreck havoc on the transaction log, you should see
  * {@link org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize}
+ * <p>
+ * The method may return the update counts as an <code>int[]</code> or as
+ * {@link org.skife.jdbi.v2.UpdateCounts}, their total as a <code>long</code>, or nothing. A method
+ * returning {@link org.skife.jdbi.v2.BatchResult} isolates the rows which fail instead of failing the
+ * batch, see {@link org.skife.jdbi.v2.PreparedBatch#executeIsolatingFailures()}. Annotated with
+ * {@link GetGeneratedKeys}, the method returns a List of the generated keys instead.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
@@ -48,4 +54,16 @@ public @interface SqlBatch
      * true (and it will be strange if you want otherwise).
      */
     boolean transactional() default true;
+
+    /**
+     * The number of chunks to execute at once, each on a handle of its own. Chunks are only run in
+     * parallel when the sql object was opened from a {@link org.skife.jdbi.v2.DBI}, so that it can
+     * open more handles, and is not in a transaction; otherwise they run one after the other. The
+     * chunks run on the {@link org.skife.jdbi.v2.DBI#setExecutor executor of the dbi}, and their
+     * handles are opened from the dbi, so they do not share any configuration made on the handle of
+     * the sql object. Default is 1.
+     *
+     * @see org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize
+     */
+    int parallelism() default 1;
 }
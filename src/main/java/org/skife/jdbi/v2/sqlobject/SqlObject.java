@@ -26,6 +26,7 @@ import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -39,6 +40,7 @@ class SqlObject
     private static final Map<Method, Handler>                          mixinHandlers = new HashMap<Method, Handler>();
     private static final ConcurrentMap<Class<?>, Map<Method, Handler>> handlersCache = new ConcurrentHashMap<Class<?>, Map<Method, Handler>>();
     private static final ConcurrentMap<Class<?>, Factory>              factories     = new ConcurrentHashMap<Class<?>, Factory>();
+    private static final ConcurrentMap<Class<?>, Class<?>>             generated     = new ConcurrentHashMap<Class<?>, Class<?>>();
 
     static {
         mixinHandlers.putAll(TransactionalHelper.handlers());
@@ -49,39 +51,21 @@ class SqlObject
     @SuppressWarnings("unchecked")
     static <T> T buildSqlObject(final Class<T> sqlObjectType, final HandleDing handle)
     {
-        Factory f;
-        if (factories.containsKey(sqlObjectType)) {
-            f = factories.get(sqlObjectType);
-        }
-        else {
-            Enhancer e = new Enhancer();
-            e.setClassLoader(sqlObjectType.getClassLoader());
-
-            List<Class> interfaces = new ArrayList<Class>();
-            interfaces.add(CloseInternalDoNotUseThisClass.class);
-            if (sqlObjectType.isInterface()) {
-                interfaces.add(sqlObjectType);
+        final Class<?> impl = generatedImplementationFor(sqlObjectType);
+        if (impl != null) {
+            final GeneratedSqlObject so;
+            try {
+                so = (GeneratedSqlObject) impl.newInstance();
             }
-            else {
-                e.setSuperclass(sqlObjectType);
+            catch (Exception e) {
+                throw new IllegalStateException("unable to instantiate generated sql object " + impl.getName(), e);
             }
-            e.setInterfaces(interfaces.toArray(new Class[interfaces.size()]));
-            final SqlObject so = new SqlObject(buildHandlersFor(sqlObjectType), handle);
-            e.setCallback(new MethodInterceptor()
-            {
-                @Override
-                public Object intercept(Object o, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable
-                {
-                    return so.invoke(o, method, objects, methodProxy);
-                }
-            });
-            T t = (T) e.create();
-            T actual = (T) factories.putIfAbsent(sqlObjectType, (Factory) t);
-            return actual != null ? actual : t;
+            so.attach(handle);
+            return (T) so;
         }
 
         final SqlObject so = new SqlObject(buildHandlersFor(sqlObjectType), handle);
-        return (T) f.newInstance(new MethodInterceptor()
+        return (T) factoryFor(sqlObjectType).newInstance(new MethodInterceptor()
         {
             @Override
             public Object intercept(Object o, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable
@@ -91,10 +75,85 @@ class SqlObject
         });
     }
 
+    /**
+     * Resolve the handlers and generate the proxy class for a sql object type without
+     * attaching it to a handle. Any misconfiguration of the type is reported here.
+     */
+    static void prepare(final Class<?> sqlObjectType)
+    {
+        if (generatedImplementationFor(sqlObjectType) != null) {
+            return;
+        }
+        buildHandlersFor(sqlObjectType);
+        factoryFor(sqlObjectType);
+    }
+
+    /**
+     * Find the implementation emitted by the sql object annotation processor, if there is one.
+     */
+    private static Class<?> generatedImplementationFor(final Class<?> sqlObjectType)
+    {
+        final Class<?> cached = generated.get(sqlObjectType);
+        if (cached != null) {
+            // the sql object type itself is stored to remember that nothing was generated for it
+            return cached == sqlObjectType ? null : cached;
+        }
+
+        Class<?> impl;
+        try {
+            impl = Class.forName(GeneratedSqlObject.generatedNameFor(sqlObjectType), true, sqlObjectType.getClassLoader());
+            if (!sqlObjectType.isAssignableFrom(impl) || !GeneratedSqlObject.class.isAssignableFrom(impl)) {
+                impl = sqlObjectType;
+            }
+        }
+        catch (ClassNotFoundException e) {
+            impl = sqlObjectType;
+        }
+        generated.putIfAbsent(sqlObjectType, impl);
+        return impl == sqlObjectType ? null : impl;
+    }
+
+    private static Factory factoryFor(final Class<?> sqlObjectType)
+    {
+        final Factory cached = factories.get(sqlObjectType);
+        if (cached != null) {
+            return cached;
+        }
+
+        Enhancer e = new Enhancer();
+        e.setClassLoader(sqlObjectType.getClassLoader());
+
+        List<Class> interfaces = new ArrayList<Class>();
+        interfaces.add(CloseInternalDoNotUseThisClass.class);
+        if (sqlObjectType.isInterface()) {
+            interfaces.add(sqlObjectType);
+        }
+        else {
+            e.setSuperclass(sqlObjectType);
+        }
+        e.setInterfaces(interfaces.toArray(new Class[interfaces.size()]));
+        e.setCallback(new MethodInterceptor()
+        {
+            @Override
+            public Object intercept(Object o, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable
+            {
+                // the prototype is only used to stamp out new instances, it never talks to a database
+                if (Modifier.isAbstract(method.getModifiers())) {
+                    throw new IllegalStateException(String.format("%s is not attached to a handle", sqlObjectType.getName()));
+                }
+                return methodProxy.invokeSuper(o, objects);
+            }
+        });
+        final Factory f = (Factory) e.create();
+        final Factory actual = factories.putIfAbsent(sqlObjectType, f);
+        return actual != null ? actual : f;
+    }
+
     private static Map<Method, Handler> buildHandlersFor(Class<?> sqlObjectType)
     {
-        if (handlersCache.containsKey(sqlObjectType)) {
-            return handlersCache.get(sqlObjectType);
+        final Map<Method, Handler> cached = handlersCache.get(sqlObjectType);
+        if (cached != null) {
+            return cached;
         }
 
         final MemberResolver mr = new MemberResolver(typeResolver);
@@ -142,7 +201,8 @@ class SqlObject
         handlers.putAll(ToStringHandler.handler(sqlObjectType.getName()));
         handlers.putAll(HashCodeHandler.handler());
 
-        return handlers;
+        final Map<Method, Handler> actual = handlersCache.putIfAbsent(sqlObjectType, handlers);
+        return actual != null ? actual : handlers;
     }
 
 
@@ -165,11 +225,16 @@ class SqlObject
         }
 
         try {
-            ding.retain(method.toString());
+            if (handler instanceof PassThroughTransactionHandler && ((PassThroughTransactionHandler) handler).isReadOnly()) {
+                ding.retainReadOnly();
+            }
+            else {
+                ding.retain();
+            }
             return handler.invoke(ding, proxy, args, mp);
         }
         finally {
-            ding.release(method.toString());
+            ding.release();
         }
     }
 
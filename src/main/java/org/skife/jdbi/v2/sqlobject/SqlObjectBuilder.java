@@ -15,10 +15,18 @@
  */
 package org.skife.jdbi.v2.sqlobject;
 
+import org.skife.jdbi.v2.AdmissionControl;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 /**
  * This duplicates the API on {@link DBI} and {@link Handle} for creating sql objects. While it is fine to use these
  * methods to create sql objects, there is no real difference between them and the oones on DBI and Handle.
@@ -50,7 +58,8 @@ public class SqlObjectBuilder
      */
     public static <T> T open(IDBI dbi, Class<T> sqlObjectType)
     {
-        return SqlObject.buildSqlObject(sqlObjectType, new ConstantHandleDing(dbi.open()));
+        return SqlObject.buildSqlObject(sqlObjectType,
+                                        new ConstantHandleDing(OnDemandHandleDing.open(dbi, admissionPriority(sqlObjectType), false), dbi));
     }
 
     /**
@@ -64,7 +73,76 @@ public class SqlObjectBuilder
      */
     public static <T> T onDemand(final IDBI dbi, final Class<T> sqlObjectType)
     {
-        return SqlObject.buildSqlObject(sqlObjectType, new OnDemandHandleDing(dbi));
+        return SqlObject.buildSqlObject(sqlObjectType, new OnDemandHandleDing(dbi, admissionPriority(sqlObjectType)));
+    }
+
+    private static AdmissionControl.Priority admissionPriority(Class<?> sqlObjectType)
+    {
+        final AdmissionPriority priority = sqlObjectType.getAnnotation(AdmissionPriority.class);
+        return priority == null ? null : priority.value();
+    }
+
+    /**
+     * Build the proxy classes and method handlers for the given sql object types up front, on the calling
+     * thread. Sql objects created later for these types skip that work, and a misconfigured sql object
+     * fails here rather than on its first use.
+     *
+     * @param sqlObjectTypes the sql object types to prepare
+     */
+    public static void prepare(Class<?>... sqlObjectTypes)
+    {
+        for (Class<?> sqlObjectType : sqlObjectTypes) {
+            SqlObject.prepare(sqlObjectType);
+        }
+    }
+
+    /**
+     * Build the proxy classes and method handlers for the given sql object types in parallel on the
+     * supplied executor, and wait for all of them to finish. If any type fails to prepare, the first
+     * failure is rethrown once every type has been attempted.
+     *
+     * @param executor       the executor, typically a startup pool, to prepare the types on
+     * @param sqlObjectTypes the sql object types to prepare
+     */
+    public static void prepare(ExecutorService executor, Class<?>... sqlObjectTypes)
+    {
+        final List<Future<?>> futures = new ArrayList<Future<?>>(sqlObjectTypes.length);
+        for (final Class<?> sqlObjectType : sqlObjectTypes) {
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    SqlObject.prepare(sqlObjectType);
+                    return null;
+                }
+            }));
+        }
+
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while preparing sql objects", e);
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        else if (failure != null) {
+            throw new IllegalStateException("unable to prepare sql object", failure);
+        }
     }
 
     /**
@@ -21,6 +21,10 @@ import java.lang.reflect.Method;
 /**
  * Interface used in conjunction with {@link SqlStatementCustomizingAnnotation} to generate
  * {@link SqlStatementCustomizer} instances.
+ * <p>
+ * Customizers for annotations on types and methods are created once, when the sql object method is
+ * first resolved, and applied to every statement that method creates. They must therefore be thread
+ * safe. Customizers for parameters are created on every invocation, as they depend on the argument.
  */
 public interface SqlStatementCustomizerFactory
 {
@@ -27,4 +27,11 @@ import java.lang.annotation.Target;
 public @interface Transaction
 {
     TransactionIsolationLevel value() default TransactionIsolationLevel.INVALID_LEVEL;
+
+    /**
+     * Whether the transaction only reads. Sql objects from {@link org.skife.jdbi.v2.IDBI#onDemand(Class)}
+     * which have no handle open yet run it on a handle from {@link org.skife.jdbi.v2.DBI#openReadOnly()},
+     * so it may go to a replica, when the sql object came from a DBI.
+     */
+    boolean readOnly() default false;
 }
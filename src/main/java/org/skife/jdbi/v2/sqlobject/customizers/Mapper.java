@@ -30,7 +30,8 @@ import java.lang.annotation.Target;
 public @interface Mapper
 {
     /**
-     * The class implementing {@link ResultSetMapper}. It must have a no-arg constructor.
+     * The class implementing {@link ResultSetMapper}. It must have a no-arg constructor. A single
+     * instance is shared by every invocation of the annotated method, so it must be thread safe.
      */
     Class<? extends ResultSetMapper<?>> value();
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.customizers;
+
+import org.skife.jdbi.v2.PreparedBatch;
+import org.skife.jdbi.v2.SQLStatement;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizer;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizerFactory;
+import org.skife.jdbi.v2.sqlobject.SqlStatementCustomizingAnnotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+
+/**
+ * Send the single row inserts of a {@link org.skife.jdbi.v2.sqlobject.SqlBatch} as inserts of several
+ * rows each, binding at most {@link #value()} parameters per statement. May be used on a method or a type,
+ * and has no effect on other statements.
+ *
+ * @see PreparedBatch#multiRowInserts(int)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+@SqlStatementCustomizingAnnotation(MultiRowInserts.Factory.class)
+public @interface MultiRowInserts
+{
+    /**
+     * The most parameters to bind to one statement.
+     */
+    int value();
+
+    static class Factory implements SqlStatementCustomizerFactory
+    {
+        public SqlStatementCustomizer createForMethod(Annotation annotation, Class sqlObjectType, Method method)
+        {
+            return create((MultiRowInserts) annotation);
+        }
+
+        public SqlStatementCustomizer createForType(Annotation annotation, Class sqlObjectType)
+        {
+            return create((MultiRowInserts) annotation);
+        }
+
+        public SqlStatementCustomizer createForParameter(Annotation annotation,
+                                                         Class sqlObjectType,
+                                                         Method method,
+                                                         Object arg)
+        {
+            throw new UnsupportedOperationException("Not defined for parameter");
+        }
+
+        private static SqlStatementCustomizer create(final MultiRowInserts mri)
+        {
+            return new SqlStatementCustomizer()
+            {
+                public void apply(SQLStatement q) throws SQLException
+                {
+                    if (q instanceof PreparedBatch) {
+                        ((PreparedBatch) q).multiRowInserts(mri.value());
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.processor;
+
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Annotation processor which emits a concrete implementation of each sql object interface it
+ * can fully express in plain Java. The generated class calls the Handle API directly with typed
+ * arguments, and {@link org.skife.jdbi.v2.sqlobject.SqlObjectBuilder} uses it in place of a cglib
+ * proxy when it is found next to the interface at runtime.
+ * <p>
+ * The processor is not registered automatically. Enable it with
+ * <code>javac -processor org.skife.jdbi.v2.sqlobject.processor.SqlObjectProcessor</code>, or the
+ * equivalent compiler plugin setting. Interfaces using features which are only available at runtime,
+ * such as statement customizers, registered mappers or mixins, are skipped with a note and keep using
+ * the proxy.
+ */
+@SupportedAnnotationTypes({"org.skife.jdbi.v2.sqlobject.SqlQuery",
+                           "org.skife.jdbi.v2.sqlobject.SqlUpdate",
+                           "org.skife.jdbi.v2.sqlobject.SqlBatch"})
+public class SqlObjectProcessor extends AbstractProcessor
+{
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        final Set<TypeElement> sqlObjectTypes = new LinkedHashSet<TypeElement>();
+        for (Class<?> annotation : new Class<?>[]{SqlQuery.class, SqlUpdate.class, SqlBatch.class}) {
+            final TypeElement annotationType = processingEnv.getElementUtils().getTypeElement(annotation.getName());
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotationType)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    sqlObjectTypes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+
+        for (TypeElement sqlObjectType : sqlObjectTypes) {
+            final SqlObjectWriter writer = new SqlObjectWriter(processingEnv, sqlObjectType);
+            final String source;
+            try {
+                source = writer.render();
+            }
+            catch (SqlObjectWriter.UnsupportedSqlObjectException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                                                         String.format("Not generating an implementation of %s, %s",
+                                                                       sqlObjectType.getQualifiedName(),
+                                                                       e.getMessage()),
+                                                         e.getElement());
+                continue;
+            }
+
+            try {
+                final JavaFileObject file = processingEnv.getFiler().createSourceFile(writer.getGeneratedName(),
+                                                                                      sqlObjectType);
+                final Writer out = file.openWriter();
+                try {
+                    out.write(source);
+                }
+                finally {
+                    out.close();
+                }
+            }
+            catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                         "Unable to write generated sql object: " + e.getMessage(),
+                                                         sqlObjectType);
+            }
+        }
+
+        // other processors may be interested in the same annotations
+        return false;
+    }
+}
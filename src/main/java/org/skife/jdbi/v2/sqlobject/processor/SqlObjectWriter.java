@@ -0,0 +1,531 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.processor;
+
+import org.skife.jdbi.v2.sqlobject.AdmissionPriority;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.GeneratedSqlObject;
+import org.skife.jdbi.v2.sqlobject.ShardKey;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.List;
+
+/**
+ * Renders the source of a generated implementation for a single sql object interface.
+ */
+class SqlObjectWriter
+{
+    private static final String JDBI_PACKAGE    = "org.skife.jdbi.";
+    private static final String DEFAULT_BINDER  = "org.skife.jdbi.v2.sqlobject.DefaultObjectBinder";
+    private static final String HANDLE          = "org.skife.jdbi.v2.Handle";
+    private static final String PREPARED_BATCH  = "org.skife.jdbi.v2.PreparedBatch";
+    private static final String ITERATOR        = "java.util.Iterator<?>";
+    private static final String METHOD          = "java.lang.reflect.Method";
+
+    private final Elements    elements;
+    private final Types       types;
+    private final TypeElement sqlObjectType;
+    private final String      packageName;
+    private final String      generatedName;
+
+    private final StringBuilder fields  = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private int methodCount = 0;
+
+    SqlObjectWriter(ProcessingEnvironment env, TypeElement sqlObjectType)
+    {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.sqlObjectType = sqlObjectType;
+        this.packageName = elements.getPackageOf(sqlObjectType).getQualifiedName().toString();
+        this.generatedName = elements.getBinaryName(sqlObjectType).toString().replace('$', '_') + GeneratedSqlObject.SUFFIX;
+    }
+
+    /**
+     * The fully qualified name of the generated class
+     */
+    String getGeneratedName()
+    {
+        return generatedName;
+    }
+
+    String render() throws UnsupportedSqlObjectException
+    {
+        if (sqlObjectType.getKind() != ElementKind.INTERFACE) {
+            throw new UnsupportedSqlObjectException("only interfaces are generated", sqlObjectType);
+        }
+        if (!sqlObjectType.getTypeParameters().isEmpty()) {
+            throw new UnsupportedSqlObjectException("generic sql objects are not generated", sqlObjectType);
+        }
+        checkAccessible(sqlObjectType, sqlObjectType);
+        checkNoJdbiAnnotations(sqlObjectType, sqlObjectType.getAnnotationMirrors());
+
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(sqlObjectType))) {
+            if (Object.class.getName().equals(((TypeElement) method.getEnclosingElement()).getQualifiedName().toString())
+                || !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            renderMethod(method);
+        }
+
+        final String simpleName = packageName.length() == 0
+                                  ? generatedName
+                                  : generatedName.substring(packageName.length() + 1);
+
+        final StringBuilder out = new StringBuilder();
+        if (packageName.length() > 0) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("/**\n")
+           .append(" * Generated by ").append(SqlObjectProcessor.class.getName()).append(" from ")
+           .append(sqlObjectType.getQualifiedName()).append(", do not edit.\n")
+           .append(" */\n")
+           .append("@SuppressWarnings(\"unchecked\")\n")
+           .append("public final class ").append(simpleName)
+           .append(" extends ").append(GeneratedSqlObject.class.getName())
+           .append(" implements ").append(sqlObjectType.getQualifiedName()).append("\n{\n")
+           .append(fields).append('\n')
+           .append("    public ").append(simpleName).append("()\n")
+           .append("    {\n")
+           .append("        super(").append(sqlObjectType.getQualifiedName()).append(".class);\n")
+           .append("    }\n")
+           .append(methods)
+           .append("}\n");
+        return out.toString();
+    }
+
+    private void renderMethod(ExecutableElement method) throws UnsupportedSqlObjectException
+    {
+        if (!method.getTypeParameters().isEmpty()) {
+            throw new UnsupportedSqlObjectException("generic methods are not generated", method);
+        }
+
+        final SqlQuery query = method.getAnnotation(SqlQuery.class);
+        final SqlUpdate update = method.getAnnotation(SqlUpdate.class);
+        final SqlBatch batch = method.getAnnotation(SqlBatch.class);
+
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            final String name = annotationName(annotation);
+            if (name.startsWith(JDBI_PACKAGE)
+                && !name.equals(SqlQuery.class.getName())
+                && !name.equals(SqlUpdate.class.getName())
+                && !name.equals(SqlBatch.class.getName())
+                && !(query != null && name.equals(Mapper.class.getName()))) {
+                throw new UnsupportedSqlObjectException("@" + name + " is only supported at runtime", method);
+            }
+        }
+
+        if (batch != null && batch.parallelism() != 1) {
+            throw new UnsupportedSqlObjectException("parallel batches are only supported at runtime", method);
+        }
+
+        final ExecutableType resolved = (ExecutableType) types.asMemberOf((DeclaredType) sqlObjectType.asType(), method);
+        final int index = methodCount++;
+        final String handle = "M" + index;
+
+        fields.append("    private static final ").append(METHOD).append(' ').append(handle)
+              .append(" = method(").append(sqlObjectType.getQualifiedName()).append(".class, ")
+              .append(literal(method.getSimpleName().toString()));
+        for (VariableElement parameter : method.getParameters()) {
+            fields.append(", ").append(types.erasure(parameter.asType())).append(".class");
+        }
+        fields.append(");\n");
+
+        final List<? extends TypeMirror> parameterTypes = resolved.getParameterTypes();
+        final String[] names = new String[parameterTypes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = bindName(method, method.getParameters().get(i));
+        }
+
+        methods.append('\n')
+               .append("    public ").append(resolved.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            methods.append(i == 0 ? "" : ", ").append(parameterTypes.get(i)).append(" arg").append(i);
+        }
+        methods.append(")\n")
+               .append("    {\n")
+               .append("        final ").append(HANDLE).append(" h = retain();\n")
+               .append("        try {\n");
+
+        final String sql;
+        if (query != null) {
+            sql = SqlQuery.DEFAULT_VALUE.equals(query.value()) ? method.getSimpleName().toString() : query.value();
+            renderQuery(method, resolved, handle, sql, names);
+        }
+        else if (update != null) {
+            sql = SqlQuery.DEFAULT_VALUE.equals(update.value()) ? method.getSimpleName().toString() : update.value();
+            renderUpdate(method, resolved, handle, sql, names);
+        }
+        else if (batch != null) {
+            sql = SqlQuery.DEFAULT_VALUE.equals(batch.value()) ? method.getSimpleName().toString() : batch.value();
+            renderBatch(method, resolved, handle, sql, names, batch.transactional());
+        }
+        else {
+            throw new UnsupportedSqlObjectException("method " + method.getSimpleName() + " has no @SqlQuery, @SqlUpdate or @SqlBatch", method);
+        }
+
+        methods.append("        }\n")
+               .append("        finally {\n")
+               .append("            release();\n")
+               .append("        }\n")
+               .append("    }\n");
+    }
+
+    private void renderQuery(ExecutableElement method, ExecutableType resolved, String handle, String sql, String[] names)
+        throws UnsupportedSqlObjectException
+    {
+        final TypeMirror returnType = resolved.getReturnType();
+        final TypeMirror rowType;
+        final String terminal;
+        if (returnType.getKind().isPrimitive()) {
+            rowType = returnType;
+            terminal = ".first()";
+        }
+        else if (returnType.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declared = (DeclaredType) returnType;
+            if (isErasureOf(declared, List.class)) {
+                if (declared.getTypeArguments().size() != 1
+                    || declared.getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+                    throw new UnsupportedSqlObjectException("the element type of " + returnType + " is not known", method);
+                }
+                rowType = declared.getTypeArguments().get(0);
+                terminal = ".list()";
+            }
+            else if (isSubtypeOfErasure(declared, Iterable.class)
+                     || isSubtypeOfErasure(declared, java.util.Iterator.class)
+                     || isSubtypeOfErasure(declared, org.skife.jdbi.v2.ResultBearing.class)) {
+                throw new UnsupportedSqlObjectException("returning " + returnType + " is only supported at runtime", method);
+            }
+            else {
+                rowType = returnType;
+                terminal = ".first()";
+            }
+        }
+        else {
+            throw new UnsupportedSqlObjectException("returning " + returnType + " is not supported", method);
+        }
+
+        final String mapping;
+        final TypeMirror mapperType = mapperType(method);
+        if (mapperType != null) {
+            final TypeMirror boxedRow = rowType.getKind().isPrimitive() ? types.boxedClass((PrimitiveType) rowType).asType() : rowType;
+            final TypeElement mapperInterface = elements.getTypeElement(ResultSetMapper.class.getName());
+            if (!types.isAssignable(mapperType, types.getDeclaredType(mapperInterface, boxedRow))) {
+                throw new UnsupportedSqlObjectException(mapperType + " does not map to " + boxedRow, method);
+            }
+            final TypeElement mapperElement = (TypeElement) types.asElement(mapperType);
+            checkInstantiable(mapperElement, method);
+
+            final String mapper = "MAPPER" + handle.substring(1);
+            fields.append("    private static final ").append(ResultSetMapper.class.getName()).append('<').append(boxedRow).append("> ")
+                  .append(mapper).append(" = new ").append(mapperElement.getQualifiedName()).append("();\n");
+            mapping = ".map(" + mapper + ")";
+        }
+        else {
+            if (rowType.getKind() == TypeKind.DECLARED && !((DeclaredType) rowType).getTypeArguments().isEmpty()) {
+                throw new UnsupportedSqlObjectException(rowType + " can not be mapped without a @Mapper", method);
+            }
+            mapping = ".mapTo(" + types.erasure(rowType) + ".class)";
+        }
+
+        methods.append("            return describe(h.createQuery(").append(literal(sql)).append("), ").append(handle).append(")\n");
+        renderBinds(resolved, names);
+        methods.append("                ").append(mapping).append('\n')
+               .append("                ").append(terminal).append(";\n");
+    }
+
+    private void renderUpdate(ExecutableElement method, ExecutableType resolved, String handle, String sql, String[] names)
+        throws UnsupportedSqlObjectException
+    {
+        final TypeMirror returnType = resolved.getReturnType();
+        if (returnType.getKind() == TypeKind.VOID) {
+            methods.append("            describe(h.createStatement(");
+        }
+        else if (returnType.getKind() == TypeKind.INT || isErasureOf(returnType, Integer.class)) {
+            methods.append("            return describe(h.createStatement(");
+        }
+        else {
+            throw new UnsupportedSqlObjectException("updates can only return void or int", method);
+        }
+        methods.append(literal(sql)).append("), ").append(handle).append(")\n");
+        renderBinds(resolved, names);
+        methods.append("                .execute();\n");
+    }
+
+    private void renderBatch(ExecutableElement method, ExecutableType resolved, String handle, String sql, String[] names,
+                             boolean transactional)
+        throws UnsupportedSqlObjectException
+    {
+        final TypeMirror returnType = resolved.getReturnType();
+        final boolean returnsCounts = returnType.getKind() == TypeKind.ARRAY && returnType.toString().equals("int[]");
+        if (!returnsCounts && returnType.getKind() != TypeKind.VOID) {
+            throw new UnsupportedSqlObjectException("batches can only return void or int[]", method);
+        }
+        if (names.length == 0) {
+            throw new UnsupportedSqlObjectException("batches need at least one bound argument", method);
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            methods.append("            final ").append(ITERATOR).append(" it").append(i).append(" = rows(arg").append(i).append(");\n");
+        }
+        methods.append("            final ").append(PREPARED_BATCH).append(" batch = describe(h.prepareBatch(")
+               .append(literal(sql)).append("), ").append(handle).append(");\n")
+               .append("            while (");
+        for (int i = 0; i < names.length; i++) {
+            methods.append(i == 0 ? "" : " && ").append("it").append(i).append(".hasNext()");
+        }
+        methods.append(") {\n")
+               .append("                batch.add()");
+        for (int i = 0; i < names.length; i++) {
+            methods.append("\n                     .bind(").append(literal(names[i])).append(", it").append(i).append(".next())");
+        }
+        methods.append(";\n")
+               .append("            }\n")
+               .append("            ").append(returnsCounts ? "return " : "")
+               .append("execute(h, batch, ").append(transactional).append(");\n");
+    }
+
+    private void renderBinds(ExecutableType resolved, String[] names)
+    {
+        final List<? extends TypeMirror> parameterTypes = resolved.getParameterTypes();
+        for (int i = 0; i < names.length; i++) {
+            methods.append("                .bind(").append(literal(names[i])).append(", ");
+            if (!isExactlyBindable(parameterTypes.get(i))) {
+                // bind as Object so the argument factory sees the runtime type, as the proxy does
+                methods.append("(java.lang.Object) ");
+            }
+            methods.append("arg").append(i).append(")\n");
+        }
+    }
+
+    /**
+     * Primitives, their wrappers and strings can be bound with their declared type as the runtime
+     * type can not differ from it.
+     */
+    private boolean isExactlyBindable(TypeMirror type)
+    {
+        if (type.getKind().isPrimitive()) {
+            return true;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        for (Class<?> c : new Class<?>[]{String.class, Boolean.class, Byte.class, Character.class, Short.class,
+                                         Integer.class, Long.class, Float.class, Double.class}) {
+            if (isErasureOf(type, c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String bindName(ExecutableElement method, VariableElement parameter) throws UnsupportedSqlObjectException
+    {
+        String name = null;
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            final String annotationName = annotationName(annotation);
+            if (annotationName.equals(Bind.class.getName())) {
+                final Bind bind = parameter.getAnnotation(Bind.class);
+                try {
+                    bind.binder();
+                }
+                catch (MirroredTypeException e) {
+                    if (!DEFAULT_BINDER.equals(types.erasure(e.getTypeMirror()).toString())) {
+                        throw new UnsupportedSqlObjectException("custom binders are only supported at runtime", parameter);
+                    }
+                }
+                name = bind.value();
+            }
+            else if (annotationName.equals(ShardKey.class.getName())) {
+                // picks the shard before the sql object is called, nothing to generate
+            }
+            else if (annotationName.startsWith(JDBI_PACKAGE)) {
+                throw new UnsupportedSqlObjectException("@" + annotationName + " is only supported at runtime", parameter);
+            }
+        }
+        if (name == null) {
+            throw new UnsupportedSqlObjectException("every argument of " + method.getSimpleName() + " needs a @Bind", parameter);
+        }
+        return name;
+    }
+
+    private TypeMirror mapperType(ExecutableElement method)
+    {
+        final Mapper mapper = method.getAnnotation(Mapper.class);
+        if (mapper == null) {
+            return null;
+        }
+        try {
+            mapper.value();
+            throw new IllegalStateException("expected the mapper class to be unavailable at compile time");
+        }
+        catch (MirroredTypeException e) {
+            return e.getTypeMirror();
+        }
+    }
+
+    private void checkInstantiable(TypeElement type, Element usedBy) throws UnsupportedSqlObjectException
+    {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedSqlObjectException(type.getQualifiedName() + " can not be instantiated", usedBy);
+        }
+        checkAccessible(type, usedBy);
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && isVisible(constructor, type)) {
+                return;
+            }
+        }
+        throw new UnsupportedSqlObjectException(type.getQualifiedName() + " has no accessible no-arg constructor", usedBy);
+    }
+
+    /**
+     * The generated class lives in the package of the sql object, so every type it names has to be
+     * visible from that package.
+     */
+    private void checkAccessible(TypeElement type, Element usedBy) throws UnsupportedSqlObjectException
+    {
+        Element current = type;
+        while (current.getKind().isClass() || current.getKind().isInterface()) {
+            if (!isVisible(current, current)) {
+                throw new UnsupportedSqlObjectException(type.getQualifiedName() + " is not visible to generated code", usedBy);
+            }
+            final Element enclosing = current.getEnclosingElement();
+            if ((enclosing.getKind().isClass() || enclosing.getKind().isInterface())
+                && current.getKind() == ElementKind.CLASS
+                && !current.getModifiers().contains(Modifier.STATIC)) {
+                throw new UnsupportedSqlObjectException(type.getQualifiedName() + " is an inner class", usedBy);
+            }
+            current = enclosing;
+        }
+        if (current.getKind() != ElementKind.PACKAGE) {
+            throw new UnsupportedSqlObjectException(type.getQualifiedName() + " is a local class", usedBy);
+        }
+    }
+
+    private boolean isVisible(Element element, Element owner)
+    {
+        if (element.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (element.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return elements.getPackageOf(owner).getQualifiedName().toString().equals(packageName);
+    }
+
+    private void checkNoJdbiAnnotations(Element element, List<? extends AnnotationMirror> annotations)
+        throws UnsupportedSqlObjectException
+    {
+        for (AnnotationMirror annotation : annotations) {
+            final String name = annotationName(annotation);
+            // the admission priority applies when opening the handle, before the sql object is called
+            if (name.startsWith(JDBI_PACKAGE) && !name.equals(AdmissionPriority.class.getName())) {
+                throw new UnsupportedSqlObjectException("@" + name + " is only supported at runtime", element);
+            }
+        }
+    }
+
+    private boolean isErasureOf(TypeMirror type, Class<?> c)
+    {
+        return types.isSameType(types.erasure(type), types.erasure(elements.getTypeElement(c.getCanonicalName()).asType()));
+    }
+
+    private boolean isSubtypeOfErasure(TypeMirror type, Class<?> c)
+    {
+        return types.isSubtype(types.erasure(type), types.erasure(elements.getTypeElement(c.getCanonicalName()).asType()));
+    }
+
+    private static String annotationName(AnnotationMirror annotation)
+    {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static String literal(String value)
+    {
+        final StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        b.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        b.append(c);
+                    }
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    /**
+     * Raised when a sql object uses something the generated code can not express.
+     */
+    static class UnsupportedSqlObjectException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Element element;
+
+        UnsupportedSqlObjectException(String message, Element element)
+        {
+            super(message);
+            this.element = element;
+        }
+
+        Element getElement()
+        {
+            return element;
+        }
+    }
+}
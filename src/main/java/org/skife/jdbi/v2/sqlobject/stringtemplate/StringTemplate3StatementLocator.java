@@ -85,7 +85,7 @@ public class StringTemplate3StatementLocator implements StatementLocator
     {
         if (group.isDefined(name)) {
             // yeah, found template for it!
-            StringTemplate t = group.lookupTemplate(name);
+            StringTemplate t = group.getInstanceOf(name);
             for (Map.Entry<String, Object> entry : ctx.getAttributes().entrySet()) {
                 t.setAttribute(entry.getKey(), entry.getValue());
             }
@@ -94,10 +94,13 @@ public class StringTemplate3StatementLocator implements StatementLocator
         else if (treatLiteralsAsTemplates) {
             // no template in the template group, but we want literals to be templates
             final String key = new String(new Base64().encode(name.getBytes(UTF_8)), UTF_8);
-            if (!literals.isDefined(key)) {
-                literals.defineTemplate(key, name);
+            final StringTemplate t;
+            synchronized (literals) {
+                if (!literals.isDefined(key)) {
+                    literals.defineTemplate(key, name);
+                }
+                t = literals.getInstanceOf(key);
             }
-            StringTemplate t = literals.lookupTemplate(key);
             for (Map.Entry<String, Object> entry : ctx.getAttributes().entrySet()) {
                 t.setAttribute(entry.getKey(), entry.getValue());
             }
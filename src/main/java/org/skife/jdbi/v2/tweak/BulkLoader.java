@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak;
+
+import org.skife.jdbi.v2.Handle;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads rows into a table, usually through a bulk load facility of the database which is
+ * faster than a batch of inserts.
+ *
+ * @see Handle#bulkLoad(String, String...)
+ */
+public interface BulkLoader
+{
+    /**
+     * @return true if this loader can load rows through the connection
+     */
+    boolean accepts(Connection connection) throws SQLException;
+
+    /**
+     * Load rows into a table. Implementations should stream the rows rather than hold them all
+     * in memory.
+     *
+     * @param handle  the handle to load through
+     * @param table   the table to load into
+     * @param columns the columns to load
+     * @param rows    the values of each row, in the order of <code>columns</code>
+     * @return the number of rows loaded
+     */
+    long load(Handle handle, String table, List<String> columns, Iterator<? extends Object[]> rows) throws Exception;
+}
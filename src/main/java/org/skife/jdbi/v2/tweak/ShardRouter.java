@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.tweak;
+
+/**
+ * Picks the shard of a {@link org.skife.jdbi.v2.ShardedDBI} which holds the data of a shard key.
+ */
+public interface ShardRouter
+{
+    /**
+     * @param key    the shard key, never null
+     * @param shards the number of shards
+     *
+     * @return the index of the shard, from 0 to shards - 1
+     */
+    int shardFor(Object key, int shards);
+
+    /**
+     * Spreads keys over the shards by their hash code, so keys must have stable hash codes
+     * (strings, numbers, enums by name are fine; objects with identity hash codes are not).
+     */
+    ShardRouter HASH = new HashShardRouter();
+
+    public static final class HashShardRouter implements ShardRouter
+    {
+        public int shardFor(Object key, int shards)
+        {
+            int h = key instanceof Enum ? ((Enum<?>) key).name().hashCode() : key.hashCode();
+            h ^= (h >>> 16);
+            return (h & Integer.MAX_VALUE) % shards;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.skife.jdbi.v2.tweak.transactions;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.TransactionCallback;
 import org.skife.jdbi.v2.TransactionIsolationLevel;
+import org.skife.jdbi.v2.TransactionHandlerState;
 import org.skife.jdbi.v2.TransactionStatus;
 import org.skife.jdbi.v2.exceptions.TransactionException;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
@@ -38,6 +39,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class LocalTransactionHandler implements TransactionHandler
 {
+    // for handles which cannot keep the state themselves, see TransactionHandlerState
     private final ConcurrentHashMap<Handle, LocalStuff> localStuff = new ConcurrentHashMap<Handle, LocalStuff>();
 
     /**
@@ -46,9 +48,9 @@ public class LocalTransactionHandler implements TransactionHandler
     public void begin(Handle handle)
     {
         try {
-            if (!localStuff.containsKey(handle)) {
+            if (localStuff(handle) == null) {
                 boolean initial = handle.getConnection().getAutoCommit();
-                localStuff.putIfAbsent(handle, new LocalStuff(initial));
+                setLocalStuff(handle, new LocalStuff(initial));
                 handle.getConnection().setAutoCommit(false);
             }
         }
@@ -62,21 +64,20 @@ public class LocalTransactionHandler implements TransactionHandler
      */
     public void commit(Handle handle)
     {
+        final LocalStuff stuff = localStuff(handle);
         try {
             handle.getConnection().commit();
-            final LocalStuff stuff = localStuff.remove(handle);
             if (stuff != null) {
                 handle.getConnection().setAutoCommit(stuff.getInitialAutocommit());
-                stuff.getCheckpoints().clear();
             }
         }
         catch (SQLException e) {
             throw new TransactionException("Failed to commit transaction", e);
         }
         finally {
-            // prevent memory leak if commit throws an exception
-            if (localStuff.containsKey(handle)) {
-                localStuff.remove(handle);
+            // the transaction is over even if commit throws an exception
+            if (stuff != null) {
+                setLocalStuff(handle, null);
             }
         }
     }
@@ -86,21 +87,20 @@ public class LocalTransactionHandler implements TransactionHandler
      */
     public void rollback(Handle handle)
     {
+        final LocalStuff stuff = localStuff(handle);
         try {
             handle.getConnection().rollback();
-            final LocalStuff stuff = localStuff.remove(handle);
             if (stuff != null) {
                 handle.getConnection().setAutoCommit(stuff.getInitialAutocommit());
-                stuff.getCheckpoints().clear();
             }
         }
         catch (SQLException e) {
             throw new TransactionException("Failed to rollback transaction", e);
         }
         finally {
-            // prevent memory leak if rollback throws an exception
-            if (localStuff.containsKey(handle)) {
-                localStuff.remove(handle);
+            // the transaction is over even if rollback throws an exception
+            if (stuff != null) {
+                setLocalStuff(handle, null);
             }
         }
     }
@@ -115,8 +115,9 @@ public class LocalTransactionHandler implements TransactionHandler
     {
         final Connection conn = handle.getConnection();
         try {
+            final LocalStuff stuff = inTransaction(handle, name);
             final Savepoint savepoint = conn.setSavepoint(name);
-            localStuff.get(handle).getCheckpoints().put(name, savepoint);
+            stuff.getCheckpoints().put(name, savepoint);
         }
         catch (SQLException e) {
             throw new TransactionException(String.format("Unable to create checkpoint %s", name), e);
@@ -127,7 +128,7 @@ public class LocalTransactionHandler implements TransactionHandler
     {
         final Connection conn = handle.getConnection();
         try {
-            final Savepoint savepoint = localStuff.get(handle).getCheckpoints().remove(name);
+            final Savepoint savepoint = inTransaction(handle, name).getCheckpoints().remove(name);
             if (savepoint == null) {
                 throw new TransactionException(String.format("Attempt to rollback to non-existant savepoint, '%s'",
                                                              name));
@@ -149,7 +150,7 @@ public class LocalTransactionHandler implements TransactionHandler
     {
         final Connection conn = handle.getConnection();
         try {
-            final Savepoint savepoint = localStuff.get(handle).getCheckpoints().remove(name);
+            final Savepoint savepoint = inTransaction(handle, name).getCheckpoints().remove(name);
             if (savepoint == null) {
                 throw new TransactionException(String.format("Attempt to rollback to non-existant savepoint, '%s'",
                                                              name));
@@ -228,6 +229,39 @@ public class LocalTransactionHandler implements TransactionHandler
         }
     }
 
+    private LocalStuff localStuff(Handle handle)
+    {
+        if (TransactionHandlerState.isSupported(handle)) {
+            return (LocalStuff) TransactionHandlerState.get(handle, this);
+        }
+        return localStuff.get(handle);
+    }
+
+    private void setLocalStuff(Handle handle, LocalStuff stuff)
+    {
+        if (TransactionHandlerState.isSupported(handle)) {
+            TransactionHandlerState.set(handle, this, stuff);
+        }
+        else if (stuff == null) {
+            localStuff.remove(handle);
+        }
+        else {
+            localStuff.put(handle, stuff);
+        }
+    }
+
+    private LocalStuff inTransaction(Handle handle, String checkpoint)
+    {
+        final LocalStuff stuff = localStuff(handle);
+        if (stuff == null) {
+            throw new TransactionException(String.format("Checkpoint '%s' used outside of a transaction", checkpoint));
+        }
+        return stuff;
+    }
+
+    /**
+     * The state of a transaction, kept on its handle.
+     */
     private static class LocalStuff
     {
         private final Map<String, Savepoint> checkpoints = new HashMap<String, Savepoint>();
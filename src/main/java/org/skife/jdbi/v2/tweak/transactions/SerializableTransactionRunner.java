@@ -16,6 +16,10 @@
 package org.skife.jdbi.v2.tweak.transactions;
 
 import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.TransactionCallback;
@@ -27,13 +31,25 @@ import org.skife.jdbi.v2.tweak.TransactionHandler;
  * serialization failures, which can generally be resolved by automatically
  * retrying the transaction.  Any TransactionCallback used under this runner
  * should be aware that it may be invoked multiple times.
+ * <p>
+ * Transactions which conflict tend to conflict again if they are retried at once, so each retry
+ * waits a random time of up to an exponentially growing delay first. How often transactions had
+ * to be retried is counted, see {@link #getAttemptHistogram()}.
  */
 public class SerializableTransactionRunner extends DelegatingTransactionHandler implements TransactionHandler
 {
     /* http://www.postgresql.org/docs/9.1/static/errcodes-appendix.html */
     private static final String SQLSTATE_TXN_SERIALIZATION_FAILED = "40001";
+    private static final String SQLSTATE_TXN_DEADLOCK_DETECTED = "40P01";
 
     private final Configuration configuration;
+    private final Random        random = new Random();
+
+    private final AtomicLong      transactions = new AtomicLong();
+    private final AtomicLong      retries = new AtomicLong();
+    private final AtomicLong      failures = new AtomicLong();
+    private final AtomicLong      backoffNanos = new AtomicLong();
+    private final AtomicLongArray attempts;
 
     public SerializableTransactionRunner()
     {
@@ -44,25 +60,69 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
     {
         super(delegate);
         this.configuration = configuration;
+        this.attempts = new AtomicLongArray(Math.max(configuration.maxRetries, 1));
     }
 
     @Override
     public <ReturnType> ReturnType inTransaction(Handle handle, TransactionCallback<ReturnType> callback)
     {
-        int retriesRemaining = configuration.maxRetries;
+        final long start = System.nanoTime();
+        int attempt = 0;
 
+        transactions.incrementAndGet();
         while (true) {
+            attempt++;
             try
             {
-                return getDelegate().inTransaction(handle, callback);
+                final ReturnType result = getDelegate().inTransaction(handle, callback);
+                attempts.incrementAndGet(Math.min(attempt, attempts.length()) - 1);
+                return result;
             } catch (RuntimeException e)
             {
-                if (!isSqlState(configuration.serializationFailureSqlState, e) || --retriesRemaining <= 0)
-                {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= configuration.maxRetries || !backoff(attempt, start)) {
+                    failures.incrementAndGet();
+                    attempts.incrementAndGet(Math.min(attempt, attempts.length()) - 1);
                     throw e;
                 }
+                retries.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Wait before the next attempt, for a random time of up to the initial backoff doubled for
+     * each attempt so far, capped at the maximum backoff.
+     *
+     * @return false if there is no time left in the budget for another attempt, or the thread was
+     *         interrupted while waiting
+     */
+    private boolean backoff(int attempt, long start)
+    {
+        long bound = configuration.initialBackoffNanos;
+        for (int i = 1; i < attempt && bound < configuration.maxBackoffNanos; i++) {
+            bound *= 2;
+        }
+        bound = Math.min(bound, configuration.maxBackoffNanos);
+        final long delay = bound <= 0 ? 0 : (long) (random.nextDouble() * bound);
+
+        if (configuration.timeBudgetNanos > 0
+            && System.nanoTime() - start + delay >= configuration.timeBudgetNanos) {
+            return false;
+        }
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
+            backoffNanos.addAndGet(delay);
         }
+        return true;
     }
 
     @Override
@@ -81,6 +141,16 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
         }
     }
 
+    private boolean isRetryable(Throwable throwable)
+    {
+        for (String sqlState : configuration.retrySqlStates) {
+            if (isSqlState(sqlState, throwable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns true iff the Throwable or one of its causes is an SQLException whose SQLState begins
      * with the passed state.
@@ -103,30 +173,129 @@ public class SerializableTransactionRunner extends DelegatingTransactionHandler
         return false;
     }
 
+    /**
+     * The number of transactions run, however they ended.
+     */
+    public long getTransactionCount()
+    {
+        return transactions.get();
+    }
+
+    /**
+     * The number of times a transaction was retried.
+     */
+    public long getRetryCount()
+    {
+        return retries.get();
+    }
+
+    /**
+     * The number of transactions which still failed with a retryable state once they ran out of
+     * attempts or time.
+     */
+    public long getFailureCount()
+    {
+        return failures.get();
+    }
+
+    /**
+     * The total time spent waiting between attempts.
+     */
+    public long getBackoffTime(TimeUnit unit)
+    {
+        return unit.convert(backoffNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The number of transactions which ended after each number of attempts: the first element
+     * counts those which ended on the first attempt, the second those which ended on the second,
+     * and so on up to the maximum number of attempts. Transactions which failed with a state
+     * which is not retried are not counted.
+     */
+    public long[] getAttemptHistogram()
+    {
+        final long[] rs = new long[attempts.length()];
+        for (int i = 0; i < rs.length; i++) {
+            rs[i] = attempts.get(i);
+        }
+        return rs;
+    }
+
     public static class Configuration
     {
-        private final int maxRetries;
-        private final String serializationFailureSqlState;
+        private final int      maxRetries;
+        private final String[] retrySqlStates;
+        private final long     initialBackoffNanos;
+        private final long     maxBackoffNanos;
+        private final long     timeBudgetNanos;
 
         public Configuration()
         {
-            this(5, SQLSTATE_TXN_SERIALIZATION_FAILED);
+            this(5,
+                 new String[]{SQLSTATE_TXN_SERIALIZATION_FAILED, SQLSTATE_TXN_DEADLOCK_DETECTED},
+                 TimeUnit.MILLISECONDS.toNanos(10),
+                 TimeUnit.SECONDS.toNanos(1),
+                 0);
         }
 
-        private Configuration(int maxRetries, String serializationFailureSqlState)
+        private Configuration(int maxRetries,
+                              String[] retrySqlStates,
+                              long initialBackoffNanos,
+                              long maxBackoffNanos,
+                              long timeBudgetNanos)
         {
             this.maxRetries = maxRetries;
-            this.serializationFailureSqlState = serializationFailureSqlState;
+            this.retrySqlStates = retrySqlStates;
+            this.initialBackoffNanos = initialBackoffNanos;
+            this.maxBackoffNanos = maxBackoffNanos;
+            this.timeBudgetNanos = timeBudgetNanos;
         }
 
+        /**
+         * The most times to attempt a transaction, including the first. Default is 5.
+         */
         public Configuration withMaxRetries(int maxRetries)
         {
-            return new Configuration(maxRetries, serializationFailureSqlState);
+            return new Configuration(maxRetries, retrySqlStates, initialBackoffNanos, maxBackoffNanos, timeBudgetNanos);
         }
 
+        /**
+         * Retry only failures with the given SQLState.
+         */
         public Configuration withSerializationFailureSqlState(String serializationFailureSqlState)
         {
-            return new Configuration(maxRetries, serializationFailureSqlState);
+            return withRetrySqlStates(serializationFailureSqlState);
+        }
+
+        /**
+         * Retry failures with any of the given SQLStates, or states beginning with them. Default
+         * is serialization failures, 40001, and deadlocks, 40P01.
+         */
+        public Configuration withRetrySqlStates(String... sqlStates)
+        {
+            return new Configuration(maxRetries, sqlStates.clone(), initialBackoffNanos, maxBackoffNanos, timeBudgetNanos);
+        }
+
+        /**
+         * Wait before each retry for a random time of up to <code>initial</code>, doubled for each
+         * retry so far and capped at <code>max</code>. Default is up to 10 milliseconds, doubling
+         * up to a second. An initial backoff of 0 retries at once.
+         */
+        public Configuration withBackoff(long initial, long max, TimeUnit unit)
+        {
+            if (initial < 0 || max < initial) {
+                throw new IllegalArgumentException("backoff must satisfy 0 <= initial <= max");
+            }
+            return new Configuration(maxRetries, retrySqlStates, unit.toNanos(initial), unit.toNanos(max), timeBudgetNanos);
+        }
+
+        /**
+         * Stop retrying once a transaction has taken this long, including the time waited between
+         * attempts. Default is 0, no limit.
+         */
+        public Configuration withTimeBudget(long budget, TimeUnit unit)
+        {
+            return new Configuration(maxRetries, retrySqlStates, initialBackoffNanos, maxBackoffNanos, unit.toNanos(budget));
         }
     }
 }
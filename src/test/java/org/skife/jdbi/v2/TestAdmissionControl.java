@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.AdmissionRejectedException;
+import org.skife.jdbi.v2.sqlobject.AdmissionPriority;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestAdmissionControl
+{
+    private DBI             dbi;
+    private Handle          keepAlive;
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        keepAlive = dbi.open();
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        threads.shutdownNow();
+        keepAlive.close();
+    }
+
+    private AdmissionControl fixedLimit(int limit, long queueTimeoutMillis)
+    {
+        AdmissionControl admission = new AdmissionControl(new AdmissionControl.Configuration()
+                                                              .withLimits(limit, limit)
+                                                              .withQueueTimeout(queueTimeoutMillis, TimeUnit.MILLISECONDS));
+        dbi.setAdmissionControl(admission);
+        return admission;
+    }
+
+    private Future<Handle> openInBackground(final AdmissionControl.Priority priority)
+    {
+        return threads.submit(new Callable<Handle>()
+        {
+            public Handle call() throws Exception
+            {
+                AdmissionControl.setPriority(priority);
+                return dbi.open();
+            }
+        });
+    }
+
+    private static void awaitQueued(AdmissionControl admission, int queued) throws Exception
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (admission.getQueued() != queued) {
+            if (System.nanoTime() > deadline) {
+                fail("expected " + queued + " queued, have " + admission.getQueued());
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testRejectsAfterQueueTimeout() throws Exception
+    {
+        AdmissionControl admission = fixedLimit(2, 50);
+        Handle a = dbi.open();
+        Handle b = dbi.open();
+        assertThat(admission.getInFlight(), equalTo(2));
+
+        try {
+            openInBackground(AdmissionControl.Priority.NORMAL).get();
+            fail("should have been rejected");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(AdmissionRejectedException.class));
+        }
+        assertThat(admission.getRejectedCount(), equalTo(1L));
+
+        a.close();
+        b.close();
+        assertThat(admission.getInFlight(), equalTo(0));
+    }
+
+    @Test
+    public void testClosingAdmitsWaiter() throws Exception
+    {
+        AdmissionControl admission = fixedLimit(1, 10000);
+        Handle a = dbi.open();
+        Future<Handle> waiter = openInBackground(AdmissionControl.Priority.NORMAL);
+        awaitQueued(admission, 1);
+
+        a.close();
+        waiter.get(10, TimeUnit.SECONDS).close();
+        assertThat(admission.getInFlight(), equalTo(0));
+    }
+
+    @Test
+    public void testPriorities() throws Exception
+    {
+        AdmissionControl admission = fixedLimit(1, 10000);
+        Handle a = dbi.open();
+        Future<Handle> background = openInBackground(AdmissionControl.Priority.BACKGROUND);
+        awaitQueued(admission, 1);
+        Future<Handle> critical = openInBackground(AdmissionControl.Priority.CRITICAL);
+        awaitQueued(admission, 2);
+
+        a.close();
+        Handle first = critical.get(10, TimeUnit.SECONDS);
+        assertThat(background.isDone(), equalTo(false));
+        first.close();
+        background.get(10, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    public void testFullQueueRejectsAtOnce() throws Exception
+    {
+        AdmissionControl admission = new AdmissionControl(new AdmissionControl.Configuration().withLimits(1, 1)
+                                                                                              .withMaxQueued(0));
+        dbi.setAdmissionControl(admission);
+        Handle a = dbi.open();
+        try {
+            dbi.open();
+            fail("should have been rejected");
+        }
+        catch (AdmissionRejectedException e) {
+            // expected
+        }
+        a.close();
+    }
+
+    @Test
+    public void testSqlObjectPriority() throws Exception
+    {
+        AdmissionControl admission = fixedLimit(1, 10000);
+        Handle a = dbi.open();
+        final Background dao = dbi.onDemand(Background.class);
+        Future<Integer> background = threads.submit(new Callable<Integer>()
+        {
+            public Integer call() throws Exception
+            {
+                return dao.one();
+            }
+        });
+        awaitQueued(admission, 1);
+        Future<Handle> normal = openInBackground(AdmissionControl.Priority.NORMAL);
+        awaitQueued(admission, 2);
+
+        a.close();
+        Handle first = normal.get(10, TimeUnit.SECONDS);
+        assertThat(background.isDone(), equalTo(false));
+        first.close();
+        assertThat(background.get(10, TimeUnit.SECONDS), equalTo(1));
+    }
+
+    @Test
+    public void testLimitFollowsLatency() throws Exception
+    {
+        AdmissionControl admission = new AdmissionControl(new AdmissionControl.Configuration().withInitialLimit(10)
+                                                                                              .withLimits(2, 100));
+        dbi.setAdmissionControl(admission);
+        keepAlive.execute("create alias sleep for \"java.lang.Thread.sleep\"");
+
+        // holding handles without running statements says nothing about the database
+        for (int round = 0; round < 5; round++) {
+            holdAll(admission.getLimit(), -1);
+        }
+        assertThat(admission.getLimit(), equalTo(10));
+
+        for (int round = 0; round < 20; round++) {
+            holdAll(admission.getLimit(), 2);
+        }
+        final int grown = admission.getLimit();
+        assertThat("limit grew to " + grown, grown > 10, equalTo(true));
+
+        for (int round = 0; round < 20; round++) {
+            holdAll(admission.getLimit(), 40);
+        }
+        final int shrunk = admission.getLimit();
+        assertThat("limit shrank to " + shrunk + " from " + grown, shrunk < grown, equalTo(true));
+    }
+
+    /**
+     * Open handles up to the limit, and run a statement taking <code>millis</code> on a few of
+     * them, or none if negative, while all are open.
+     */
+    private void holdAll(int count, long millis) throws Exception
+    {
+        List<Handle> handles = new ArrayList<Handle>();
+        for (int i = 0; i < count; i++) {
+            handles.add(dbi.open());
+        }
+        if (millis >= 0) {
+            for (Handle h : handles.subList(0, Math.min(3, count))) {
+                h.execute("call sleep(?)", millis);
+            }
+        }
+        else {
+            Thread.sleep(20);
+        }
+        Collections.reverse(handles);
+        for (Handle h : handles) {
+            h.close();
+        }
+    }
+
+    @AdmissionPriority(AdmissionControl.Priority.BACKGROUND)
+    public interface Background
+    {
+        @SqlQuery("select 1")
+        int one();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.logging.FormattedLog;
+import org.skife.jdbi.v2.util.IntegerMapper;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestAutoBatch
+{
+    private DBI          dbi;
+    private Handle       handle;
+    private Handle       other;
+    private List<String> batches;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        JdbcDataSource ds = new JdbcDataSource();
+        // keep the database alive between handles
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dbi = new DBI(ds);
+        other = dbi.open();
+        other.execute("create table something (id int primary key, name varchar(100))");
+
+        batches = new ArrayList<String>();
+        handle = dbi.open();
+        handle.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                if (msg.startsWith("prepared batch")) {
+                    batches.add(msg.replaceAll(" took \\d+ millis", ""));
+                }
+            }
+        });
+        handle.setAutoBatchSize(100);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.close();
+        other.execute("drop all objects delete files");
+        other.close();
+    }
+
+    @Test
+    public void testDefersUpdatesUntilQuery() throws Exception
+    {
+        for (int i = 0; i < 10; i++) {
+            assertThat(handle.insert("insert into something (id, name) values (?, ?)", i, "name " + i),
+                       equalTo(Statement.SUCCESS_NO_INFO));
+        }
+        assertThat(count(other), equalTo(0));
+
+        assertThat(count(handle), equalTo(10));
+        assertThat(batches, equalTo(Arrays.asList(
+            "prepared batch with 10 parts:[insert into something (id, name) values (?, ?)]")));
+    }
+
+    @Test
+    public void testOtherStatementSendsBatch() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.insert("insert into something (id, name) values (?, ?)", 2, "Keith");
+        handle.update("update something set name = ? where id = ?", "Eric", 1);
+
+        UpdateCounts counts = handle.flushAutoBatch();
+
+        assertThat(counts.toArray(), equalTo(new int[]{1, 1, 1}));
+        assertThat(batches, equalTo(Arrays.asList(
+            "prepared batch with 2 parts:[insert into something (id, name) values (?, ?)]",
+            "prepared batch with 1 parts:[update something set name = ? where id = ?]")));
+        assertThat(handle.flushAutoBatch().size(), equalTo(0));
+    }
+
+    @Test
+    public void testCustomizedUpdateIsNotDeferred() throws Exception
+    {
+        int count = handle.createStatement("insert into something (id, name) values (1, 'Brian')")
+                          .setQueryTimeout(5)
+                          .execute();
+
+        assertThat(count, equalTo(1));
+        assertThat(count(other), equalTo(1));
+    }
+
+    @Test
+    public void testSendsFullBatches() throws Exception
+    {
+        handle.setAutoBatchSize(3);
+        for (int i = 0; i < 7; i++) {
+            handle.insert("insert into something (id, name) values (?, ?)", i, "name " + i);
+        }
+        assertThat(count(other), equalTo(6));
+
+        assertThat(handle.flushAutoBatch().size(), equalTo(7));
+        assertThat(count(other), equalTo(7));
+    }
+
+    @Test
+    public void testBatchSendsBatch() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        int[] counts = handle.createBatch().add("update something set name = 'Keith' where id = 1").execute();
+
+        assertThat(counts, equalTo(new int[]{1}));
+    }
+
+    @Test
+    public void testScriptSendsBatch() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 3, "Brian");
+        handle.createScript("default-data").execute();
+
+        assertThat(count(other), equalTo(3));
+    }
+
+    @Test
+    public void testCachedStatementSendsBatch() throws Exception
+    {
+        dbi.setStatementBuilderFactory(new CachingStatementBuilderFactory());
+        Handle cached = dbi.open();
+        try {
+            cached.setAutoBatchSize(100);
+            assertThat(count(cached), equalTo(0));
+
+            cached.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+            assertThat(count(cached), equalTo(1));
+        }
+        finally {
+            cached.close();
+        }
+    }
+
+    @Test
+    public void testCommitSendsBatch() throws Exception
+    {
+        handle.begin();
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.checkpoint("first");
+        handle.insert("insert into something (id, name) values (?, ?)", 2, "Keith");
+        handle.commit();
+
+        assertThat(count(other), equalTo(2));
+        assertThat(batches.size(), equalTo(2));
+    }
+
+    @Test
+    public void testRollbackDiscardsBatch() throws Exception
+    {
+        handle.begin();
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "duplicate");
+        handle.rollback();
+
+        assertThat(count(handle), equalTo(0));
+        assertThat(batches.size(), equalTo(0));
+    }
+
+    @Test
+    public void testRollbackOutsideTransactionSendsBatch() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.insert("insert into something (id, name) values (?, ?)", 2, "Keith");
+        handle.rollback();
+
+        assertThat(count(other), equalTo(2));
+        assertThat(batches.size(), equalTo(1));
+    }
+
+    @Test
+    public void testCloseSendsBatch() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.close();
+
+        assertThat(count(other), equalTo(1));
+    }
+
+    @Test
+    public void testFailureIsReportedWhenBatchIsSent() throws Exception
+    {
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+        handle.insert("insert into something (id, name) values (?, ?)", 1, "duplicate");
+        try {
+            count(handle);
+            fail("expected the batch to fail");
+        }
+        catch (UnableToExecuteStatementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception
+    {
+        handle.setAutoBatchSize(0);
+
+        assertThat(handle.insert("insert into something (id, name) values (?, ?)", 1, "Brian"), equalTo(1));
+        assertThat(count(other), equalTo(1));
+    }
+
+    private static int count(Handle h)
+    {
+        return h.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.skife.jdbi.v2.bulk.BatchBulkLoader;
+import org.skife.jdbi.v2.bulk.DerbyBulkLoader;
+import org.skife.jdbi.v2.bulk.H2BulkLoader;
+import org.skife.jdbi.v2.tweak.BulkLoader;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+public class TestBulkLoad extends DBITestCase
+{
+    public void testDerby() throws Exception
+    {
+        Handle h = openHandle();
+        assertTrue(new DerbyBulkLoader().accepts(h.getConnection()));
+
+        assertEquals(4L, h.bulkLoad("something", "id", "name", "integerValue").load(rows()));
+        assertLoaded(h);
+    }
+
+    public void testPreparedBatchFallback() throws Exception
+    {
+        Handle h = openHandle();
+
+        List<Object[]> rows = Arrays.asList(new Object[]{1, "Keith", 10},
+                                            new Object[]{2, "Eric", 20},
+                                            new Object[]{3, "Brian", 30},
+                                            new Object[]{4, "Tom", 40});
+
+        assertEquals(4L, h.bulkLoad("something", "id", "name", "integerValue").using(new BatchBulkLoader(3)).load(rows));
+        assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                     Arrays.asList("Keith", "Eric", "Brian", "Tom"));
+    }
+
+    public void testH2() throws Exception
+    {
+        Handle h = new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+        try {
+            h.execute("create table something (id int primary key, name varchar(100), integerValue int)");
+            assertTrue(new H2BulkLoader().accepts(h.getConnection()));
+            assertFalse(new DerbyBulkLoader().accepts(h.getConnection()));
+
+            assertEquals(4L, h.bulkLoad("something", "id", "name", "integerValue").load(rows()));
+            assertLoaded(h);
+        }
+        finally {
+            h.close();
+        }
+    }
+
+    public void testRowsAreStreamed() throws Exception
+    {
+        Handle h = openHandle();
+        final List<String> events = new ArrayList<String>();
+        h.bulkLoad("something", "id", "name").using(new BulkLoader()
+        {
+            public boolean accepts(Connection connection)
+            {
+                return true;
+            }
+
+            public long load(Handle handle, String table, List<String> columns, Iterator<? extends Object[]> rows)
+            {
+                events.add("load " + table + " " + columns);
+                long count = 0;
+                while (rows.hasNext()) {
+                    Object[] row = rows.next();
+                    events.add("row " + row[0]);
+                    count++;
+                }
+                return count;
+            }
+        }).load(new Iterator<Object[]>()
+        {
+            private int i = 0;
+
+            public boolean hasNext()
+            {
+                return i < 2;
+            }
+
+            public Object[] next()
+            {
+                events.add("next");
+                return new Object[]{i++, "Name"};
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        assertEquals(Arrays.asList("load something [id, name]", "next", "row 0", "next", "row 1"), events);
+    }
+
+    public void testRowsMustMatchColumns() throws Exception
+    {
+        Handle h = openHandle();
+        try {
+            h.bulkLoad("something", "id", "name").load(Arrays.<Object[]>asList(new Object[]{1}));
+            fail("a row is missing a value");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("row 0 has 1 values for 2 columns", e.getMessage());
+        }
+    }
+
+    private static List<Object[]> rows()
+    {
+        return Arrays.asList(new Object[]{1, "Keith", 10},
+                             new Object[]{2, "Eric \"the\" Brian, Jr", null},
+                             new Object[]{3, "", 30L},
+                             new Object[]{4, null, 40});
+    }
+
+    private static void assertLoaded(Handle h)
+    {
+        List<Something> r = h.createQuery("select id, name, integerValue from something order by id")
+                             .map(Something.class)
+                             .list();
+        assertEquals(4, r.size());
+        assertEquals("Keith", r.get(0).getName());
+        assertEquals(Integer.valueOf(10), r.get(0).getIntegerValue());
+        assertEquals("Eric \"the\" Brian, Jr", r.get(1).getName());
+        assertNull(r.get(1).getIntegerValue());
+        assertEquals("", r.get(2).getName());
+        assertEquals(Integer.valueOf(30), r.get(2).getIntegerValue());
+        assertNull(r.get(3).getName());
+    }
+}
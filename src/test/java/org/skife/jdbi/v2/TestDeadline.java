@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.DeadlineExceededException;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.util.IntegerMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestDeadline
+{
+    // long enough to never finish on its own, H2 checks for cancellation as it goes
+    private static final String SLOW = "select count(*) from system_range(1, 2000000000) where mod(x, 7) = 3";
+
+    private DBI    dbi;
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(50))");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        Deadline.setCurrent(null);
+        handle.close();
+    }
+
+    private void assertCancelledWithin(long millis)
+    {
+        final long start = System.nanoTime();
+        try {
+            handle.createQuery(SLOW).map(IntegerMapper.FIRST).first();
+            fail("should have been cancelled");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat("cancelled after " + elapsed + "ms", elapsed < millis, equalTo(true));
+    }
+
+    @Test
+    public void testHandleDeadlineCancelsStatement() throws Exception
+    {
+        handle.setDeadline(Deadline.after(200, TimeUnit.MILLISECONDS));
+        assertCancelledWithin(10000);
+
+        handle.setDeadline(null);
+        assertThat(handle.createQuery("select 1").map(IntegerMapper.FIRST).first(), equalTo(1));
+    }
+
+    @Test
+    public void testThreadDeadlineCancelsStatement() throws Exception
+    {
+        assertThat(Deadline.setCurrent(Deadline.after(200, TimeUnit.MILLISECONDS)), equalTo(null));
+        assertCancelledWithin(10000);
+    }
+
+    @Test
+    public void testEarlierDeadlineWins() throws Exception
+    {
+        handle.setDeadline(Deadline.after(1, TimeUnit.HOURS));
+        Deadline.setCurrent(Deadline.after(200, TimeUnit.MILLISECONDS));
+        assertCancelledWithin(10000);
+    }
+
+    @Test
+    public void testFastStatementsFinish() throws Exception
+    {
+        handle.setDeadline(Deadline.after(1, TimeUnit.MINUTES));
+        for (int i = 0; i < 100; i++) {
+            handle.insert("insert into something (id, name) values (?, ?)", i, "name");
+        }
+        assertThat(handle.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first(), equalTo(100));
+    }
+
+    @Test
+    public void testExpiredDeadlineSkipsStatement() throws Exception
+    {
+        handle.setDeadline(Deadline.after(0, TimeUnit.MILLISECONDS));
+        try {
+            handle.insert("insert into something (id, name) values (1, 'brian')");
+            fail("should have failed");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        try {
+            handle.prepareBatch("insert into something (id, name) values (?, ?)").add(2, "keith").execute();
+            fail("should have failed");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        try {
+            handle.createBatch().add("insert into something (id, name) values (3, 'eric')").execute();
+            fail("should have failed");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        try {
+            handle.prepareBatch("insert into something (id, name) values (?, ?)").buffer(10)
+                  .bind(0, 4).bind(1, "mark").add()
+                  .execute();
+            fail("should have failed");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        handle.setDeadline(null);
+        assertThat(handle.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first(), equalTo(0));
+    }
+
+    @Test
+    public void testDeadlineCoversReadingResults() throws Exception
+    {
+        handle.setDeadline(Deadline.after(200, TimeUnit.MILLISECONDS));
+        final long start = System.nanoTime();
+        try {
+            // h2 holds every row once the query returns, so this fails once they have been read
+            handle.createQuery("select x from system_range(1, 500)").map(new ResultSetMapper<Long>()
+            {
+                public Long map(int index, ResultSet r, StatementContext ctx) throws SQLException
+                {
+                    try {
+                        Thread.sleep(1);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return r.getLong(1);
+                }
+            }).list();
+            fail("should have been cancelled");
+        }
+        catch (DeadlineExceededException e) {
+            // expected
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat("cancelled after " + elapsed + "ms", elapsed < 10000, equalTo(true));
+    }
+
+    @Test
+    public void testInterruptWithoutDeadlineCancelsStatement() throws Exception
+    {
+        interruptIn(200);
+    }
+
+    @Test
+    public void testInterruptCancelsStatement() throws Exception
+    {
+        handle.setDeadline(Deadline.after(1, TimeUnit.HOURS));
+        interruptIn(200);
+    }
+
+    private void interruptIn(final long millis) throws Exception
+    {
+        final Thread caller = Thread.currentThread();
+        final Thread interrupter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(millis);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                caller.interrupt();
+            }
+        };
+        interrupter.start();
+        try {
+            assertCancelledWithin(10000);
+        }
+        finally {
+            interrupter.join();
+            Thread.interrupted();
+        }
+    }
+}
@@ -17,8 +17,17 @@ package org.skife.jdbi.v2;
 
 import org.junit.Test;
 import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.ArgumentFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestForeman
 {
@@ -52,4 +61,53 @@ public class TestForeman
         assertSame(StringArgument.class, stringArgument.getClass());
     }
 
+    @Test
+    public void testBuiltInArgumentsSkipOnlyBuiltInFactories()
+    {
+        final List<Class<?>> waffled = new ArrayList<Class<?>>();
+        final Foreman foreman = new Foreman()
+        {
+            @Override
+            Argument waffle(Class expectedType, Object it, StatementContext ctx)
+            {
+                waffled.add(expectedType);
+                return super.waffle(expectedType, it, ctx);
+            }
+        };
+        final BuiltInArguments strings = BuiltInArguments.forType(String.class);
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(StringArgument.class, strings.resolve(foreman, "I am a String!", null).getClass());
+        }
+        assertTrue(waffled.isEmpty());
+
+        assertSame(ObjectArgument.class, strings.resolve(foreman, null, null).getClass());
+        assertEquals(Arrays.<Class<?>>asList(Object.class), waffled);
+
+        foreman.register(new ArgumentFactory<String>()
+        {
+            public boolean accepts(Class<?> expectedType, Object value, StatementContext ctx)
+            {
+                return false;
+            }
+
+            public Argument build(Class<?> expectedType, String value, StatementContext ctx)
+            {
+                throw new UnsupportedOperationException();
+            }
+        });
+        waffled.clear();
+        assertSame(StringArgument.class, strings.resolve(foreman, "I am a String!", null).getClass());
+        assertEquals(Arrays.<Class<?>>asList(Object.class), waffled);
+    }
+
+    @Test
+    public void testBuiltInArgumentsNeedFinalTypes()
+    {
+        assertNotNull(BuiltInArguments.forType(int.class));
+        assertNotNull(BuiltInArguments.forType(Long.class));
+        assertNull(BuiltInArguments.forType(Object.class));
+        assertNull(BuiltInArguments.forType(java.util.Date.class));
+        assertNull(BuiltInArguments.forType(Thread.class));
+    }
 }
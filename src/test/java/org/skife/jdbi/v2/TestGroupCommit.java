@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestGroupCommit
+{
+    private DBI           dbi;
+    private Handle        handle;
+    private AtomicInteger commits;
+    private AtomicBoolean failCommit;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final String url = "jdbc:h2:mem:" + UUID.randomUUID();
+        commits = new AtomicInteger();
+        failCommit = new AtomicBoolean();
+        dbi = new DBI(new ConnectionFactory()
+        {
+            public Connection openConnection() throws SQLException
+            {
+                return new DelegatingConnection(DriverManager.getConnection(url))
+                {
+                    @Override
+                    public void commit() throws SQLException
+                    {
+                        if (failCommit.compareAndSet(true, false)) {
+                            throw new AssertionError("commit died");
+                        }
+                        commits.incrementAndGet();
+                        super.commit();
+                    }
+                };
+            }
+        });
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100))");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.close();
+    }
+
+    private static TransactionCallback<Integer> insert(final int id, final String name)
+    {
+        return new TransactionCallback<Integer>()
+        {
+            public Integer inTransaction(Handle conn, TransactionStatus status)
+            {
+                return conn.insert("insert into something (id, name) values (?, ?)", id, name);
+            }
+        };
+    }
+
+    private List<Integer> ids()
+    {
+        return handle.createQuery("select id from something order by id").map(IntegerMapper.FIRST).list();
+    }
+
+    @Test
+    public void testManySubmitters() throws Exception
+    {
+        final GroupCommit group = new GroupCommit(dbi, new GroupCommit.Configuration().withMaxQueued(10)
+                                                                                      .withMaxGroupSize(7));
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        List<Future<Future<Integer>>> submitted = new ArrayList<Future<Future<Integer>>>();
+        for (int i = 0; i < 100; i++) {
+            final int id = i;
+            submitted.add(submitters.submit(new Callable<Future<Integer>>()
+            {
+                public Future<Integer> call()
+                {
+                    return group.submit(insert(id, "Name " + id));
+                }
+            }));
+        }
+        for (Future<Future<Integer>> future : submitted) {
+            assertThat(future.get().get(), equalTo(1));
+        }
+        submitters.shutdown();
+        group.close();
+
+        assertThat(ids().size(), equalTo(100));
+    }
+
+    @Test
+    public void testOneCommitPerGroup() throws Exception
+    {
+        GroupCommit group = new GroupCommit(dbi, new GroupCommit.Configuration().withMaxGroupSize(5)
+                                                                                .withGroupInterval(1, TimeUnit.MINUTES));
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(group.submit(insert(i, "Name " + i)));
+        }
+        for (Future<Integer> future : futures) {
+            assertThat(future.get(), equalTo(1));
+        }
+        group.close();
+
+        assertThat(commits.get(), equalTo(2));
+        assertThat(ids().size(), equalTo(10));
+    }
+
+    @Test
+    public void testFailureRollsBackOnlyItsOwnWork() throws Exception
+    {
+        GroupCommit group = new GroupCommit(dbi, new GroupCommit.Configuration().withMaxGroupSize(3)
+                                                                                .withGroupInterval(1, TimeUnit.MINUTES));
+        Future<Integer> first = group.submit(insert(1, "Brian"));
+        Future<Integer> failing = group.submit(new TransactionCallback<Integer>()
+        {
+            public Integer inTransaction(Handle conn, TransactionStatus status)
+            {
+                conn.insert("insert into something (id, name) values (?, ?)", 2, "Eric");
+                // duplicate key
+                return conn.insert("insert into something (id, name) values (?, ?)", 1, "Keith");
+            }
+        });
+        Future<Integer> last = group.submit(insert(3, "Mark"));
+
+        assertThat(first.get(), equalTo(1));
+        assertThat(last.get(), equalTo(1));
+        try {
+            failing.get();
+            fail("should have failed");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(UnableToExecuteStatementException.class));
+        }
+        group.close();
+
+        assertThat(commits.get(), equalTo(1));
+        assertThat(ids(), equalTo(Arrays.asList(1, 3)));
+    }
+
+    @Test
+    public void testErrorsFailTheirCallbacksOnly() throws Exception
+    {
+        GroupCommit group = new GroupCommit(dbi);
+        Future<Integer> failing = group.submit(new TransactionCallback<Integer>()
+        {
+            public Integer inTransaction(Handle conn, TransactionStatus status)
+            {
+                conn.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+                throw new AssertionError("callback died");
+            }
+        });
+        group.flush();
+        try {
+            failing.get();
+            fail("should have failed");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), equalTo("callback died"));
+        }
+
+        failCommit.set(true);
+        Future<Integer> lost = group.submit(insert(2, "Eric"));
+        try {
+            lost.get();
+            fail("should have failed");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), equalTo("commit died"));
+        }
+
+        assertThat(group.submit(insert(3, "Mark")).get(), equalTo(1));
+        group.close();
+
+        assertThat(ids(), equalTo(Arrays.asList(3)));
+    }
+
+    @Test
+    public void testRollbackOnly() throws Exception
+    {
+        GroupCommit group = new GroupCommit(dbi);
+        Future<Integer> future = group.submit(new TransactionCallback<Integer>()
+        {
+            public Integer inTransaction(Handle conn, TransactionStatus status)
+            {
+                conn.insert("insert into something (id, name) values (?, ?)", 1, "Brian");
+                status.setRollbackOnly();
+                return 1;
+            }
+        });
+        group.submit(insert(2, "Eric"));
+        group.flush();
+
+        try {
+            future.get();
+            fail("should have failed");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TransactionFailedException.class));
+        }
+        group.close();
+
+        assertThat(ids(), equalTo(Arrays.asList(2)));
+        assertThat(handle.createQuery("select name from something").map(StringMapper.FIRST).first(), equalTo("Eric"));
+    }
+
+    @Test
+    public void testClosedRejectsCallbacks() throws Exception
+    {
+        GroupCommit group = new GroupCommit(dbi);
+        group.close();
+        try {
+            group.submit(insert(1, "Brian"));
+            fail("should have thrown");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -16,9 +16,11 @@
 package org.skife.jdbi.v2;
 
 import org.skife.jdbi.derby.Tools;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
 import org.skife.jdbi.v2.tweak.HandleCallback;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -71,4 +73,102 @@ public class TestHandle extends DBITestCase
 
         assertEquals("Keith", value);
     }
+
+    public void testSessionStateRoundTrips() throws Exception
+    {
+        final CountingConnection conn = new CountingConnection(Tools.getConnection());
+        DBI dbi = new DBI(new ConnectionFactory()
+        {
+            public Connection openConnection() throws SQLException
+            {
+                return conn;
+            }
+        });
+        dbi.setCacheSessionState(true);
+        Handle h = dbi.open();
+
+        for (int i = 0; i < 3; i++) {
+            h.inTransaction(TransactionIsolationLevel.SERIALIZABLE, new TransactionCallback<Object>()
+            {
+                public Object inTransaction(Handle handle, TransactionStatus status) throws Exception
+                {
+                    handle.insert("insert into something (id, name) values (1, 'Brian')");
+                    return null;
+                }
+            });
+        }
+        h.close();
+
+        // read once, then only set when changing
+        assertEquals(1, conn.getAutoCommitCalls);
+        assertEquals(6, conn.setAutoCommitCalls);
+        assertEquals(1, conn.getIsolationCalls);
+        assertEquals(6, conn.setIsolationCalls);
+    }
+
+    public void testSessionStateIsNotCachedByDefault() throws Exception
+    {
+        Connection conn = Tools.getConnection();
+        Handle h = DBI.open(conn);
+
+        assertSame(conn, h.getConnection());
+        h.close();
+    }
+
+    public void testUnwrappedConnectionStateIsNotRemembered() throws Exception
+    {
+        DBI dbi = new DBI(Tools.getDataSource());
+        dbi.setCacheSessionState(true);
+        Handle h = dbi.open();
+        assertTrue(h.getConnection().getAutoCommit());
+
+        Connection driver = h.getConnection().unwrap(Connection.class);
+        driver.setAutoCommit(false);
+        assertFalse(h.getConnection().getAutoCommit());
+
+        h.getConnection().setAutoCommit(true);
+        assertTrue(driver.getAutoCommit());
+        h.close();
+    }
+
+    private static class CountingConnection extends DelegatingConnection
+    {
+        private int getAutoCommitCalls = 0;
+        private int setAutoCommitCalls = 0;
+        private int getIsolationCalls = 0;
+        private int setIsolationCalls = 0;
+
+        CountingConnection(Connection delegate)
+        {
+            super(delegate);
+        }
+
+        @Override
+        public boolean getAutoCommit() throws SQLException
+        {
+            getAutoCommitCalls++;
+            return super.getAutoCommit();
+        }
+
+        @Override
+        public void setAutoCommit(boolean b) throws SQLException
+        {
+            setAutoCommitCalls++;
+            super.setAutoCommit(b);
+        }
+
+        @Override
+        public int getTransactionIsolation() throws SQLException
+        {
+            getIsolationCalls++;
+            return super.getTransactionIsolation();
+        }
+
+        @Override
+        public void setTransactionIsolation(int i) throws SQLException
+        {
+            setIsolationCalls++;
+            super.setTransactionIsolation(i);
+        }
+    }
 }
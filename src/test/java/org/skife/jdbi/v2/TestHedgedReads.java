@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestHedgedReads
+{
+    // long enough to never finish on its own, H2 checks for cancellation as it goes
+    private static final String SLOW = "select count(*) from system_range(1, 2000000000) where mod(x, 7) = 3";
+
+    private List<Handle> keepAlive;
+    private DBI          dbi;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        keepAlive = new ArrayList<Handle>();
+        dbi = new DBI(server("primary"), server("slow"), server("fast"));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Handle h : keepAlive) {
+            h.close();
+        }
+    }
+
+    private ConnectionFactory server(String name)
+    {
+        final JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        final ConnectionFactory factory = new DataSourceConnectionFactory(ds);
+        final Handle h = new DBI(factory).open();
+        h.execute("create table server (name varchar(50))");
+        h.insert("insert into server (name) values (?)", name);
+        keepAlive.add(h);
+        return factory;
+    }
+
+    private static final HandleCallback<String> SLOW_ON_SLOW = new HandleCallback<String>()
+    {
+        public String withHandle(Handle handle) throws Exception
+        {
+            final String name = handle.createQuery("select name from server").map(StringMapper.FIRST).first();
+            if (name.equals("slow")) {
+                handle.createQuery(SLOW).list();
+            }
+            return name;
+        }
+    };
+
+    private void awaitIdleReplicas() throws Exception
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Arrays.equals(dbi.getReplicaHandleCounts(), new int[]{0, 0})) {
+            if (System.nanoTime() > deadline) {
+                fail("replica handles are still open: " + Arrays.toString(dbi.getReplicaHandleCounts()));
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testSlowReplicaIsHedged() throws Exception
+    {
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(20, TimeUnit.MILLISECONDS));
+
+        // the first read goes to the first replica, as no replica is busy
+        assertThat(reads.withHandle("server", SLOW_ON_SLOW), equalTo("fast"));
+        assertThat(reads.getHedgeCount(), equalTo(1L));
+        assertThat(reads.getHedgeWinCount(), equalTo(1L));
+
+        // the slow query was cancelled, which closed its handle
+        awaitIdleReplicas();
+    }
+
+    @Test
+    public void testFastReadIsNotHedged() throws Exception
+    {
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            assertThat(reads.list("select name from server", StringMapper.FIRST).get(0).equals("primary"), equalTo(false));
+        }
+        assertThat(reads.getHedgeCount(), equalTo(0L));
+        awaitIdleReplicas();
+    }
+
+    @Test
+    public void testHedgeDelayFollowsLatency() throws Exception
+    {
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(10, TimeUnit.SECONDS)
+                                                                               .withMinDelay(0, TimeUnit.SECONDS));
+        assertThat(reads.getHedgeDelay("select name from server", TimeUnit.SECONDS), equalTo(10L));
+        for (int i = 0; i < 16; i++) {
+            reads.list("select name from server", StringMapper.FIRST);
+        }
+        assertThat(reads.getHedgeDelay("select name from server", TimeUnit.SECONDS), equalTo(0L));
+    }
+
+    @Test
+    public void testBothFail() throws Exception
+    {
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(1, TimeUnit.MILLISECONDS));
+        try {
+            reads.withHandle("broken", new HandleCallback<Object>()
+            {
+                public Object withHandle(Handle handle) throws Exception
+                {
+                    Thread.sleep(20);
+                    throw new IllegalStateException("broken");
+                }
+            });
+            fail("should have failed");
+        }
+        catch (CallbackFailedException e) {
+            assertThat(e.getCause().getMessage(), equalTo("broken"));
+        }
+        assertThat(reads.getHedgeCount(), equalTo(1L));
+        awaitIdleReplicas();
+    }
+
+    @Test
+    public void testThreadReadingItsWritesUsesThePrimary() throws Exception
+    {
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(1, TimeUnit.MILLISECONDS));
+        dbi.setReadYourWritesWindow(1, TimeUnit.HOURS);
+        Handle h = dbi.open();
+        h.execute("update server set name = name");
+        h.close();
+
+        assertThat(reads.withHandle("server", SLOW_ON_SLOW), equalTo("primary"));
+        assertThat(reads.getHedgeCount(), equalTo(0L));
+    }
+
+    @Test
+    public void testAttemptsRunOnConfiguredExecutor() throws Exception
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>())
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                attempts.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        HedgedReads reads = new HedgedReads(dbi, new HedgedReads.Configuration().withInitialDelay(20, TimeUnit.MILLISECONDS)
+                                                                               .withExecutor(executor));
+
+        assertThat(reads.withHandle("server", SLOW_ON_SLOW), equalTo("fast"));
+        assertThat(attempts.get(), equalTo(2));
+        awaitIdleReplicas();
+        executor.shutdown();
+    }
+}
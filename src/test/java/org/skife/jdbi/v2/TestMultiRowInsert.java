@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import junit.framework.TestCase;
+
+public class TestMultiRowInsert extends TestCase
+{
+    public void testExpandsSingleRowInsert() throws Exception
+    {
+        MultiRowInsert insert = MultiRowInsert.parse("insert into something (id, name) values (?, lower(?))");
+
+        assertEquals(2, insert.getParameters());
+        assertEquals("insert into something (id, name) values (?, lower(?))", insert.expand(1));
+        assertEquals("insert into something (id, name) values (?, lower(?)), (?, lower(?)), (?, lower(?))",
+                     insert.expand(3));
+        assertSame(insert.expand(3), insert.expand(3));
+    }
+
+    public void testIgnoresQuotedText() throws Exception
+    {
+        MultiRowInsert insert = MultiRowInsert.parse("INSERT INTO \"values\" (id, name) VALUES (?, 'it''s a ?)')");
+
+        assertEquals(1, insert.getParameters());
+        assertEquals("INSERT INTO \"values\" (id, name) VALUES (?, 'it''s a ?)'), (?, 'it''s a ?)')", insert.expand(2));
+    }
+
+    public void testRejectsOtherStatements() throws Exception
+    {
+        assertNull(MultiRowInsert.parse("update something set name = ? where id = ?"));
+        assertNull(MultiRowInsert.parse("insert into something (id, name) select id, ? from other where id = ?"));
+        assertNull(MultiRowInsert.parse("insert into something (id, name) values (?, ?), (?, ?)"));
+        assertNull(MultiRowInsert.parse("insert into something (id, name) values (?, ?) on duplicate key update name = ?"));
+        assertNull(MultiRowInsert.parse("insert into something (id, name) values (1, 'Keith')"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.UnableToCreateStatementException;
+import org.skife.jdbi.v2.logging.PrintStreamLog;
+import org.skife.jdbi.v2.util.IntegerMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestOpenCursors
+{
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        handle = new DBI("jdbc:h2:mem:" + UUID.randomUUID()).open();
+        handle.execute("create table something (id int primary key, name varchar(50))");
+        handle.insert("insert into something (id, name) values (1, 'brian')");
+        handle.insert("insert into something (id, name) values (2, 'keith')");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.close();
+    }
+
+    private ResultIterator<Integer> ids()
+    {
+        return handle.createQuery("select id from something order by id").map(IntegerMapper.FIRST).iterator();
+    }
+
+    @Test
+    public void testCountsOpenIterators() throws Exception
+    {
+        ResultIterator<Integer> first = ids();
+        ResultIterator<Integer> second = ids();
+        assertThat(handle.getOpenCursorCount(), equalTo(2));
+
+        first.close();
+        assertThat(handle.getOpenCursorCount(), equalTo(1));
+
+        while (second.hasNext()) {
+            second.next();
+        }
+        assertThat(handle.getOpenCursorCount(), equalTo(0));
+
+        second.close();
+        assertThat(handle.getOpenCursorCount(), equalTo(0));
+    }
+
+    @Test
+    public void testMaximum() throws Exception
+    {
+        handle.setMaxOpenCursors(2);
+        ResultIterator<Integer> first = ids();
+        ResultIterator<Integer> second = ids();
+        try {
+            ids();
+            fail("should have been over the maximum");
+        }
+        catch (UnableToCreateStatementException e) {
+            // expected
+        }
+
+        first.close();
+        ResultIterator<Integer> third = ids();
+        assertThat(third.next(), equalTo(1));
+        third.close();
+        second.close();
+    }
+
+    @Test
+    public void testMaximumCoversGeneratedKeys() throws Exception
+    {
+        handle.execute("create table counter (id identity, name varchar(50))");
+        handle.setMaxOpenCursors(1);
+        ResultIterator<Integer> first = ids();
+        try {
+            handle.createStatement("insert into counter (name) values ('brian')")
+                  .executeAndReturnGeneratedKeys(IntegerMapper.FIRST)
+                  .iterator();
+            fail("should have been over the maximum");
+        }
+        catch (UnableToCreateStatementException e) {
+            // expected
+        }
+        first.close();
+
+        ResultIterator<Integer> keys = handle.createStatement("insert into counter (name) values ('keith')")
+                                             .executeAndReturnGeneratedKeys(IntegerMapper.FIRST)
+                                             .iterator();
+        assertThat(handle.getOpenCursorCount(), equalTo(1));
+        keys.close();
+        assertThat(handle.getOpenCursorCount(), equalTo(0));
+    }
+
+    @Test
+    public void testReclaimsDroppedIterators() throws Exception
+    {
+        final ByteArrayOutputStream logged = new ByteArrayOutputStream();
+        handle.setSQLLog(new PrintStreamLog(new PrintStream(logged)));
+        handle.setMaxOpenCursors(1);
+
+        openAndDrop();
+        assertThat(handle.getOpenCursorCount(), equalTo(1));
+
+        ResultIterator<Integer> next = null;
+        for (int i = 0; next == null && i < 100; i++) {
+            System.gc();
+            Thread.sleep(10);
+            try {
+                next = ids();
+            }
+            catch (UnableToCreateStatementException e) {
+                // not collected yet
+            }
+        }
+        if (next == null) {
+            fail("dropped iterator was not reclaimed");
+        }
+        assertThat(handle.getOpenCursorCount(), equalTo(1));
+        assertThat(next.next(), equalTo(1));
+        next.close();
+
+        assertThat(logged.toString(), containsString("was never closed"));
+        assertThat(logged.toString(), containsString("openAndDrop"));
+    }
+
+    private void openAndDrop()
+    {
+        assertThat(ids().next(), equalTo(1));
+    }
+}
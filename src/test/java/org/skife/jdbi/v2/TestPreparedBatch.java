@@ -16,11 +16,16 @@
 package org.skife.jdbi.v2;
 
 import org.skife.jdbi.derby.Tools;
+import org.skife.jdbi.v2.logging.FormattedLog;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
+import org.skife.jdbi.v2.util.IntegerMapper;
 import org.skife.jdbi.v2.util.StringMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -161,4 +166,327 @@ public class TestPreparedBatch extends DBITestCase
         assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
                      Arrays.asList("Jeff", "Tom"));
     }
+
+    public void testStreamingBatch() throws Exception
+    {
+        Handle h = openHandle();
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)").flushEvery(2);
+
+        for (int i = 0; i < 5; i++) {
+            b.add().bind("id", i).bind("name", "A Name");
+        }
+        assertEquals(5, b.size());
+        assertEquals(4, countSomethings(h));
+
+        UpdateCounts counts = b.executeForCounts();
+        assertEquals(5, counts.size());
+        assertEquals(5L, counts.getTotal());
+        assertEquals(5, countSomethings(h));
+        assertEquals(0, b.size());
+    }
+
+    public void testStreamingBatchBySize() throws Exception
+    {
+        Handle h = openHandle();
+        // each part binds an int and a six character string, so counts as 20 bytes
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)").flushEveryBytes(50);
+
+        for (int i = 0; i < 5; i++) {
+            b.add().bind("id", i).bind("name", "A Name");
+        }
+        assertEquals(3, countSomethings(h));
+
+        assertEquals(5L, b.executeForCounts().getTotal());
+        assertEquals(5, countSomethings(h));
+    }
+
+    public void testStreamingBatchSetOnTheBatchItself() throws Exception
+    {
+        Handle h = openHandle();
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)").flushEvery(1);
+
+        b.bind("id", 1);
+        b.bind("name", "Jeff");
+        b.add();
+
+        b.bind("id", 2);
+        b.bind("name", "Tom");
+        b.add();
+
+        assertTrue(Arrays.equals(new int[]{1, 1}, b.execute()));
+        assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                     Arrays.asList("Jeff", "Tom"));
+    }
+
+    public void testStreamingBatchIsReusable() throws Exception
+    {
+        Handle h = openHandle();
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (?, ?)").flushEvery(10);
+
+        b.add(1, "Keith").add(2, "Eric");
+        assertEquals(2, b.executeForCounts().size());
+        assertEquals(0, b.execute().length);
+
+        b.add(3, "Brian");
+        assertEquals(1, b.execute().length);
+        assertEquals(3, countSomethings(h));
+    }
+
+    public void testUpdateCounts() throws Exception
+    {
+        UpdateCounts counts = UpdateCounts.of(new int[]{1, 1, 1, 0, 2, 2, -2});
+        counts.add(new int[]{-2, 1});
+
+        assertEquals(9, counts.size());
+        assertEquals(8L, counts.getTotal());
+        assertEquals(1, counts.get(2));
+        assertEquals(0, counts.get(3));
+        assertEquals(2, counts.get(5));
+        assertEquals(-2, counts.get(7));
+        assertEquals(1, counts.get(8));
+        assertTrue(Arrays.equals(new int[]{1, 1, 1, 0, 2, 2, -2, -2, 1}, counts.toArray()));
+    }
+
+    public void testBuffer() throws Exception
+    {
+        Handle h = openHandle();
+        BatchBuffer buffer = h.prepareBatch("insert into something (id, name, integerValue) values (:id, :name, :value)")
+                              .buffer(3);
+
+        for (int i = 0; i < 7; i++) {
+            buffer.bind("id", i).bind("name", i % 2 == 0 ? "Even" : null);
+            if (i % 3 != 0) {
+                buffer.bind("value", i * 10);
+            }
+            buffer.add();
+        }
+        assertEquals(6, countSomethings(h));
+
+        UpdateCounts counts = buffer.execute();
+        assertEquals(7, counts.size());
+        assertEquals(7L, counts.getTotal());
+
+        List<Something> r = h.createQuery("select * from something order by id").map(Something.class).list();
+        assertEquals(7, r.size());
+        assertEquals("Even", r.get(4).getName());
+        assertNull(r.get(5).getName());
+        assertNull(r.get(3).getIntegerValue());
+        assertEquals(Integer.valueOf(50), r.get(5).getIntegerValue());
+    }
+
+    public void testBufferColumnFirstBoundInLaterRow() throws Exception
+    {
+        Handle h = openHandle();
+        BatchBuffer buffer = h.prepareBatch("insert into something (id, name, integerValue) values (:id, :name, :value)")
+                              .buffer(10);
+
+        buffer.bind("id", 1).bind("name", "Keith").add();
+        buffer.bind("id", 2).bind("name", "Eric").add();
+        buffer.bind("id", 3).bind("name", "Brian").bind("value", 30).add();
+        buffer.execute();
+
+        List<Something> r = h.createQuery("select * from something order by id").map(Something.class).list();
+        assertNull(r.get(0).getIntegerValue());
+        assertNull(r.get(1).getIntegerValue());
+        assertEquals(Integer.valueOf(30), r.get(2).getIntegerValue());
+    }
+
+    public void testPositionalBuffer() throws Exception
+    {
+        Handle h = openHandle();
+        BatchBuffer buffer = h.prepareBatch("insert into something (id, name) values (?, ?)").buffer(100)
+                              .flushEveryBytes(20);
+
+        buffer.bind(0, 1).bind(1, "Keith").add();
+        assertEquals(0, countSomethings(h));
+        buffer.bind(0, 2).bind(1, "Eric").add();
+        assertEquals(2, countSomethings(h));
+        buffer.bind(0, 3).bindNull(1, Types.VARCHAR).add();
+
+        assertEquals(3, buffer.size());
+        assertEquals(3, buffer.execute().size());
+        assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                     Arrays.asList("Keith", "Eric", null));
+    }
+
+    public void testBufferRejectsMixedTypes() throws Exception
+    {
+        BatchBuffer buffer = openHandle().prepareBatch("insert into something (id, name) values (:id, :name)")
+                                         .buffer(10);
+        buffer.bind("id", 1).bind("name", "Keith").add();
+        try {
+            buffer.bind("id", "two");
+            fail("a String can not go in an int column");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("column id holds int values, not String", e.getMessage());
+        }
+    }
+
+    public void testMultiRowInserts() throws Exception
+    {
+        Handle h = openHandle();
+        final List<String> logged = new ArrayList<String>();
+        h.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                logged.add(msg);
+            }
+        });
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)").multiRowInserts(5);
+
+        for (int i = 0; i < 5; i++) {
+            b.add().bind("id", i).bind("name", "Name " + i);
+        }
+
+        assertTrue(Arrays.equals(new int[]{1, 1, 1, 1, 1}, b.execute()));
+        assertEquals(Arrays.asList("prepared batch with 2 parts:[insert into something (id, name) values (?, ?), (?, ?)] took 0 millis",
+                                   "prepared batch with 1 parts:[insert into something (id, name) values (?, ?)] took 0 millis"),
+                     Arrays.asList(logged.get(0).replaceAll("took \\d+", "took 0"), logged.get(1).replaceAll("took \\d+", "took 0")));
+        assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                     Arrays.asList("Name 0", "Name 1", "Name 2", "Name 3", "Name 4"));
+    }
+
+    public void testMultiRowInsertRemainders() throws Exception
+    {
+        Handle h = openHandle();
+        final List<String> logged = new ArrayList<String>();
+        h.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                logged.add(msg.replaceAll(" took \\d+ millis", "").replaceAll("\\(\\?, \\?\\)", "r"));
+            }
+        });
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)").multiRowInserts(16);
+
+        for (int i = 0; i < 21; i++) {
+            b.add().bind("id", i).bind("name", "Name " + i);
+        }
+
+        assertEquals(21, b.execute().length);
+        assertEquals(Arrays.asList("prepared batch with 2 parts:[insert into something (id, name) values r, r, r, r, r, r, r, r]",
+                                   "prepared batch with 1 parts:[insert into something (id, name) values r, r, r, r]",
+                                   "prepared batch with 1 parts:[insert into something (id, name) values r]"),
+                     logged);
+        assertEquals(21, countSomethings(h));
+    }
+
+    public void testMultiRowInsertsLeaveOtherStatementsAlone() throws Exception
+    {
+        Handle h = openHandle();
+        h.execute("insert into something (id, name) values (1, 'Keith')");
+        h.execute("insert into something (id, name) values (2, 'Eric')");
+
+        PreparedBatch b = h.prepareBatch("update something set name = :name where id = :id").multiRowInserts(100);
+        b.add().bind("id", 1).bind("name", "Brian");
+        b.add().bind("id", 2).bind("name", "Tom");
+
+        assertTrue(Arrays.equals(new int[]{1, 1}, b.execute()));
+        assertEquals(h.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                     Arrays.asList("Brian", "Tom"));
+    }
+
+    public void testIsolateFailures() throws Exception
+    {
+        Handle h = openHandle();
+        final List<String> logged = new ArrayList<String>();
+        h.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                logged.add(msg);
+            }
+        });
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+        char[] tooLong = new char[100];
+        Arrays.fill(tooLong, 'x');
+        for (int i = 0; i < 16; i++) {
+            b.add().bind("id", i).bind("name", i == 3 || i == 11 ? new String(tooLong) : "Name " + i);
+        }
+
+        BatchResult result = b.executeIsolatingFailures();
+
+        assertTrue(result.hasFailures());
+        assertTrue(Arrays.equals(new int[]{3, 11}, result.getFailedRows()));
+        assertEquals(2, result.getFailures().size());
+        assertEquals(16, result.getCounts().size());
+        assertEquals(14L, result.getCounts().getTotal());
+        assertEquals(Statement.EXECUTE_FAILED, result.getCounts().get(3));
+        assertEquals(1, result.getCounts().get(4));
+        assertEquals(14, countSomethings(h));
+        assertFalse(h.isInTransaction());
+
+        int batches = 0;
+        for (String msg : logged) {
+            if (msg.startsWith("prepared batch")) {
+                batches++;
+            }
+        }
+        // only successful executions are logged: halves of 4 and 2 and single rows beside each failure
+        assertEquals(2 + 2 + 2, batches);
+    }
+
+    public void testIsolateFailuresInTransaction() throws Exception
+    {
+        Handle h = openHandle();
+        h.begin();
+        try {
+            h.execute("insert into something (id, name) values (1, 'Keith')");
+            PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+            b.add().bind("id", 2).bind("name", "Eric");
+            b.add().bind("id", 3).bind("name", "a name which is much too long for the name column of something");
+
+            BatchResult result = b.executeIsolatingFailures();
+
+            assertTrue(Arrays.equals(new int[]{1}, result.getFailedRows()));
+            assertTrue(h.isInTransaction());
+            assertEquals(2, countSomethings(h));
+        }
+        finally {
+            h.rollback();
+        }
+        assertEquals(0, countSomethings(h));
+    }
+
+    public void testIsolateFailuresWithoutFailures() throws Exception
+    {
+        Handle h = openHandle();
+        PreparedBatch b = h.prepareBatch("insert into something (id, name) values (:id, :name)");
+        b.add().bind("id", 1).bind("name", "Eric");
+        b.add().bind("id", 2).bind("name", "Brian");
+
+        BatchResult result = b.executeIsolatingFailures();
+
+        assertFalse(result.hasFailures());
+        assertTrue(Arrays.equals(new int[]{1, 1}, result.getCounts().toArray()));
+        assertEquals(0, b.size());
+    }
+
+    private static int countSomethings(Handle h)
+    {
+        return h.createQuery("select count(id) from something").map(IntegerMapper.FIRST).first();
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.logging.FormattedLog;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.Transaction;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestReplicas
+{
+    private List<Handle>       keepAlive;
+    private ConnectionFactory primary;
+    private ConnectionFactory replica1;
+    private ConnectionFactory replica2;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        keepAlive = new ArrayList<Handle>();
+        primary = server("primary");
+        replica1 = server("replica1");
+        replica2 = server("replica2");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Handle h : keepAlive) {
+            h.close();
+        }
+    }
+
+    private ConnectionFactory server(String name)
+    {
+        final JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        final ConnectionFactory factory = new DataSourceConnectionFactory(ds);
+        final Handle h = new DBI(factory).open();
+        h.execute("create table server (name varchar(50))");
+        h.insert("insert into server (name) values (?)", name);
+        keepAlive.add(h);
+        return factory;
+    }
+
+    private static String server(Handle h)
+    {
+        return h.createQuery("select name from server").map(StringMapper.FIRST).first();
+    }
+
+    @Test
+    public void testReadsGoToLeastBusyReplica() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1, replica2);
+
+        Handle a = dbi.openReadOnly();
+        Handle b = dbi.openReadOnly();
+        assertThat(server(a).startsWith("replica"), equalTo(true));
+        assertThat(server(b).startsWith("replica"), equalTo(true));
+        assertThat(server(a).equals(server(b)), equalTo(false));
+        assertThat(dbi.getReplicaHandleCounts(), equalTo(new int[]{1, 1}));
+
+        String freed = server(a);
+        a.close();
+        Handle c = dbi.openReadOnly();
+        assertThat(server(c), equalTo(freed));
+
+        b.close();
+        c.close();
+        assertThat(dbi.getReplicaHandleCounts(), equalTo(new int[]{0, 0}));
+    }
+
+    @Test
+    public void testWritesGoToPrimary() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1, replica2);
+        Handle h = dbi.open();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+        assertThat(dbi.getReplicaHandleCounts(), equalTo(new int[]{0, 0}));
+    }
+
+    @Test
+    public void testNoReplicas() throws Exception
+    {
+        DBI dbi = new DBI(primary);
+        Handle h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+    }
+
+    @Test
+    public void testFailingReplica() throws Exception
+    {
+        ConnectionFactory broken = new ConnectionFactory()
+        {
+            public Connection openConnection() throws SQLException
+            {
+                throw new SQLException("replica is down");
+            }
+        };
+
+        DBI dbi = new DBI(primary, broken, replica1);
+        for (int i = 0; i < 4; i++) {
+            Handle h = dbi.openReadOnly();
+            assertThat(server(h), equalTo("replica1"));
+            h.close();
+        }
+
+        final List<String> logged = new ArrayList<String>();
+        dbi = new DBI(primary, broken);
+        dbi.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                if (msg.startsWith("connecting to replica")) {
+                    logged.add(msg);
+                }
+            }
+        });
+        Handle h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+        assertThat(dbi.getReplicaFailureCount(), equalTo(1L));
+        assertThat(logged, equalTo(Arrays.asList("connecting to replica 0 failed: java.sql.SQLException: replica is down")));
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        dbi.setReadYourWritesWindow(1, TimeUnit.HOURS);
+
+        Handle h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("replica1"));
+        h.close();
+
+        h = dbi.open();
+        h.execute("update server set name = name");
+        h.close();
+
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+
+        dbi.setReadYourWritesWindow(0, TimeUnit.HOURS);
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("replica1"));
+        h.close();
+    }
+
+    @Test
+    public void testReadsDoNotPinToPrimary() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        dbi.setReadYourWritesWindow(1, TimeUnit.HOURS);
+
+        Handle h = dbi.open();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("replica1"));
+        h.close();
+    }
+
+    @Test
+    public void testCommitPinsToPrimary() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        dbi.setReadYourWritesWindow(1, TimeUnit.HOURS);
+
+        Handle h = dbi.open();
+        h.begin();
+        h.execute("update server set name = name");
+        h.rollback();
+        h.close();
+
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("replica1"));
+        h.close();
+
+        dbi.inTransaction(new TransactionCallback<Object>()
+        {
+            public Object inTransaction(Handle handle, TransactionStatus status) throws Exception
+            {
+                handle.execute("update server set name = name");
+                return null;
+            }
+        });
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("primary"));
+        h.close();
+    }
+
+    @Test
+    public void testPinnedReadsDoNotRenewPin() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        dbi.setReadYourWritesWindow(500, TimeUnit.MILLISECONDS);
+
+        Handle h = dbi.open();
+        h.execute("update server set name = name");
+        h.close();
+
+        Thread.sleep(250);
+        for (int i = 0; i < 3; i++) {
+            h = dbi.openReadOnly();
+            assertThat(server(h), equalTo("primary"));
+            h.close();
+        }
+
+        // past the window from the write, though not from the reads on the primary
+        Thread.sleep(300);
+        h = dbi.openReadOnly();
+        assertThat(server(h), equalTo("replica1"));
+        h.close();
+    }
+
+    @Test
+    public void testReadOnlyTransaction() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        String name = dbi.inReadOnlyTransaction(new TransactionCallback<String>()
+        {
+            public String inTransaction(Handle handle, TransactionStatus status) throws Exception
+            {
+                return server(handle);
+            }
+        });
+        assertThat(name, equalTo("replica1"));
+    }
+
+    @Test
+    public void testReadOnlyTransactionAnnotation() throws Exception
+    {
+        DBI dbi = new DBI(primary, replica1);
+        Servers servers = dbi.onDemand(Servers.class);
+
+        assertThat(servers.name(), equalTo("primary"));
+        assertThat(servers.readOnlyName(), equalTo("replica1"));
+        assertThat(dbi.getReplicaHandleCounts(), equalTo(new int[]{0}));
+    }
+
+    public static abstract class Servers
+    {
+        @SqlQuery("select name from server")
+        public abstract String name();
+
+        @Transaction(readOnly = true)
+        public String readOnlyName()
+        {
+            return name();
+        }
+    }
+}
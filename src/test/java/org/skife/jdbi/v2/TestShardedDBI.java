@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.CallbackFailedException;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.ShardKey;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.skife.jdbi.v2.tweak.ShardRouter;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestShardedDBI
+{
+    private List<Handle> handles;
+    private ShardedDBI   sharded;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        handles = new ArrayList<Handle>();
+        List<DBI> shards = new ArrayList<DBI>();
+        for (int i = 0; i < 3; i++) {
+            DBI dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+            Handle h = dbi.open();
+            h.execute("create table something (id int primary key, name varchar(100))");
+            handles.add(h);
+            shards.add(dbi);
+        }
+        // shard by id modulo the shard count, so the tests know where rows go
+        sharded = new ShardedDBI(shards, new ShardRouter()
+        {
+            public int shardFor(Object key, int shards)
+            {
+                return ((Integer) key) % shards;
+            }
+        }, Executors.newCachedThreadPool());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Handle h : handles) {
+            h.close();
+        }
+    }
+
+    private List<Integer> idsOnShard(int shard)
+    {
+        return handles.get(shard).createQuery("select id from something order by id").map(IntegerMapper.FIRST).list();
+    }
+
+    @Test
+    public void testExplicitKey() throws Exception
+    {
+        for (int i = 0; i < 7; i++) {
+            final int id = i;
+            sharded.withHandle(id, new HandleCallback<Object>()
+            {
+                public Object withHandle(Handle handle) throws Exception
+                {
+                    return handle.insert("insert into something (id, name) values (?, ?)", id, "Name " + id);
+                }
+            });
+        }
+
+        assertThat(idsOnShard(0), equalTo(Arrays.asList(0, 3, 6)));
+        assertThat(idsOnShard(1), equalTo(Arrays.asList(1, 4)));
+        assertThat(idsOnShard(2), equalTo(Arrays.asList(2, 5)));
+    }
+
+    @Test
+    public void testShardKeyArgument() throws Exception
+    {
+        Dao dao = sharded.onDemand(Dao.class);
+        dao.insert(4, "Brian");
+        dao.insert(5, "Eric");
+
+        assertThat(idsOnShard(1), equalTo(Arrays.asList(4)));
+        assertThat(idsOnShard(2), equalTo(Arrays.asList(5)));
+        assertThat(dao.findName(4), equalTo("Brian"));
+        assertThat(dao.findName(5), equalTo("Eric"));
+        assertThat(dao.equals(dao), equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingShardKey() throws Exception
+    {
+        sharded.onDemand(Unsharded.class);
+    }
+
+    @Test
+    public void testGather() throws Exception
+    {
+        Dao dao = sharded.onDemand(Dao.class);
+        for (int i = 0; i < 10; i++) {
+            dao.insert(i, "Name " + i);
+        }
+
+        List<Integer> ids = sharded.gather(new HandleCallback<List<Integer>>()
+        {
+            public List<Integer> withHandle(Handle handle) throws Exception
+            {
+                return handle.createQuery("select id from something order by id").map(IntegerMapper.FIRST).list();
+            }
+        });
+        assertThat(ids, equalTo(Arrays.asList(0, 3, 6, 9, 1, 4, 7, 2, 5, 8)));
+    }
+
+    @Test
+    public void testSortedGather() throws Exception
+    {
+        Dao dao = sharded.onDemand(Dao.class);
+        for (int i = 0; i < 10; i++) {
+            dao.insert(i, "Name " + (9 - i));
+        }
+
+        List<String> names = sharded.gather(new HandleCallback<List<String>>()
+        {
+            public List<String> withHandle(Handle handle) throws Exception
+            {
+                return handle.createQuery("select name from something order by name").map(StringMapper.FIRST).list();
+            }
+        }, new Comparator<String>()
+        {
+            public int compare(String a, String b)
+            {
+                return a.compareTo(b);
+            }
+        });
+        assertThat(names, equalTo(Arrays.asList("Name 0", "Name 1", "Name 2", "Name 3", "Name 4",
+                                                "Name 5", "Name 6", "Name 7", "Name 8", "Name 9")));
+    }
+
+    @Test
+    public void testGatherFailure() throws Exception
+    {
+        handles.get(1).execute("drop table something");
+        try {
+            sharded.gather(new HandleCallback<List<Integer>>()
+            {
+                public List<Integer> withHandle(Handle handle) throws Exception
+                {
+                    return handle.createQuery("select id from something").map(IntegerMapper.FIRST).list();
+                }
+            });
+            fail("should have failed");
+        }
+        catch (CallbackFailedException e) {
+            // expected
+        }
+        finally {
+            handles.get(1).execute("create table something (id int primary key, name varchar(100))");
+        }
+    }
+
+    @Test
+    public void testHashRouter() throws Exception
+    {
+        int[] counts = new int[16];
+        for (int i = 0; i < 1600; i++) {
+            int shard = ShardRouter.HASH.shardFor("key " + i, 16);
+            assertThat(ShardRouter.HASH.shardFor("key " + i, 16), equalTo(shard));
+            counts[shard]++;
+        }
+        for (int count : counts) {
+            assertThat(count > 50, equalTo(true));
+        }
+    }
+
+    public interface Dao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        void insert(@ShardKey @Bind("id") int id, @Bind("name") String name);
+
+        @SqlQuery("select name from something where id = :id")
+        String findName(@ShardKey @Bind("id") int id);
+    }
+
+    public interface Unsharded
+    {
+        @SqlQuery("select name from something where id = :id")
+        String findName(@Bind("id") int id);
+    }
+}
@@ -18,9 +18,13 @@ package org.skife.jdbi.v2;
 import org.skife.jdbi.v2.exceptions.DBIException;
 import org.skife.jdbi.v2.exceptions.TransactionException;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+import org.skife.jdbi.v2.tweak.transactions.LocalTransactionHandler;
 import org.skife.jdbi.v2.util.IntegerMapper;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.List;
 
 public class TestTransactions extends DBITestCase
@@ -146,6 +150,66 @@ public class TestTransactions extends DBITestCase
         }
     }
 
+    public void testCheckpointOutsideTx() throws Exception
+    {
+        Handle h = openHandle();
+        try {
+            h.checkpoint("first");
+            fail("Should have thrown an exception");
+        }
+        catch (TransactionException e) {
+            assertTrue(true);
+        }
+    }
+
+    public void testTransactionStateKeptOnHandle() throws Exception
+    {
+        Handle h = openHandle();
+        LocalTransactionHandler tx = new LocalTransactionHandler();
+        tx.begin(h);
+        assertNotNull(TransactionHandlerState.get(h, tx));
+        assertNull(TransactionHandlerState.get(h, new LocalTransactionHandler()));
+        tx.commit(h);
+        assertNull(TransactionHandlerState.get(h, tx));
+
+        h.begin();
+        h.checkpoint("first");
+        h.commit();
+
+        h.begin();
+        try {
+            h.rollback("first");
+            fail("Checkpoints should not outlive their transaction");
+        }
+        catch (TransactionException e) {
+            h.rollback();
+        }
+        assertTrue(h.getConnection().getAutoCommit());
+    }
+
+    public void testTransactionStateOfOtherHandles() throws Exception
+    {
+        final Handle h = openHandle();
+        Handle wrapped = (Handle) Proxy.newProxyInstance(Handle.class.getClassLoader(),
+                                                         new Class[]{Handle.class},
+                                                         new InvocationHandler()
+                                                         {
+                                                             public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                                                             {
+                                                                 return method.invoke(h, args);
+                                                             }
+                                                         });
+        LocalTransactionHandler tx = new LocalTransactionHandler();
+        tx.begin(wrapped);
+        assertTrue(tx.isInTransaction(wrapped));
+        tx.checkpoint(wrapped, "first");
+        tx.rollback(wrapped, "first");
+        tx.rollback(wrapped);
+
+        assertFalse(tx.isInTransaction(wrapped));
+        assertTrue(h.getConnection().getAutoCommit());
+    }
+
     public void testThrowingRuntimeExceptionPercolatesOriginal() throws Exception
     {
         Handle h = openHandle();
@@ -16,10 +16,13 @@
 package org.skife.jdbi.v2;
 
 import org.skife.jdbi.derby.Tools;
+import org.skife.jdbi.v2.util.IntegerMapper;
 import org.skife.jdbi.v2.util.LongMapper;
+import org.skife.jdbi.v2.util.StringMapper;
 
 import java.sql.Connection;
 import java.sql.Statement;
+import java.util.List;
 
 public class TestUpdateGeneratedKeys extends DBITestCase
 {
@@ -96,4 +99,65 @@ public class TestUpdateGeneratedKeys extends DBITestCase
 
         assertNull(id2);
     }
+
+    public void testKeysIntoContainer() throws Exception
+    {
+        Handle h = openHandle();
+
+        Update insert = h.createStatement("insert into something_else (name) values (:name)");
+        insert.bind("name", "Brian");
+        List<Long> ids = insert.executeAndReturnGeneratedKeys(LongMapper.FIRST).list(List.class);
+
+        assertEquals(1, ids.size());
+        assertEquals("Brian", h.createQuery("select name from something_else where id = :id")
+                               .bind("id", ids.get(0))
+                               .map(StringMapper.FIRST)
+                               .first());
+    }
+
+    public void testBatch() throws Exception
+    {
+        Handle h = openHandle();
+
+        PreparedBatch batch = h.prepareBatch("insert into something_else (name) values (:name)");
+        batch.add().bind("name", "Brian");
+        batch.add().bind("name", "Tom");
+        batch.add().bind("name", "Eric");
+        List<Long> ids = batch.executeAndGenerateKeys(LongMapper.FIRST).list();
+
+        // derby reports only the key of the last row of a batch, so the rows are inserted one at a time
+        assertEquals(3, ids.size());
+        String[] names = {"Brian", "Tom", "Eric"};
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], h.createQuery("select name from something_else where id = :id")
+                                    .bind("id", ids.get(i))
+                                    .map(StringMapper.FIRST)
+                                    .first());
+        }
+        assertEquals(3, h.createQuery("select count(*) from something_else").map(IntegerMapper.FIRST).first().intValue());
+    }
+
+    public void testBatchOfKeyColumn() throws Exception
+    {
+        Handle h = openHandle();
+
+        PreparedBatch batch = h.prepareBatch("insert into something_else (name) values (:name)");
+        batch.add().bind("name", "Brian");
+        Long id = batch.executeAndGenerateKeys(LongMapper.FIRST, "ID").first();
+
+        assertEquals("Brian", h.createQuery("select name from something_else where id = :id")
+                               .bind("id", id)
+                               .map(StringMapper.FIRST)
+                               .first());
+    }
+
+    public void testEmptyBatch() throws Exception
+    {
+        Handle h = openHandle();
+
+        PreparedBatch batch = h.prepareBatch("insert into something_else (name) values (:name)");
+
+        assertTrue(batch.executeAndGenerateKeys(LongMapper.FIRST).list().isEmpty());
+        assertFalse(batch.executeAndGenerateKeys().iterator().hasNext());
+    }
 }
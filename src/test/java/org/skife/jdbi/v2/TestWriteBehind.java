@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
+import org.skife.jdbi.v2.logging.FormattedLog;
+import org.skife.jdbi.v2.util.IntegerMapper;
+import org.skife.jdbi.v2.util.StringMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestWriteBehind
+{
+    private String url;
+    private DBI    dbi;
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        url = "jdbc:h2:mem:" + UUID.randomUUID();
+        dbi = new DBI(url);
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100))");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.close();
+    }
+
+    @Test
+    public void testManyProducers() throws Exception
+    {
+        final WriteBehind writes = new WriteBehind(dbi, new WriteBehind.Configuration().withMaxQueuedRows(10)
+                                                                                       .withMaxBatchSize(7));
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<Future<Integer>>> rows = new ArrayList<Future<Future<Integer>>>();
+        for (int i = 0; i < 100; i++) {
+            final int id = i;
+            rows.add(producers.submit(new Callable<Future<Integer>>()
+            {
+                public Future<Integer> call()
+                {
+                    return writes.enqueue("insert into something (id, name) values (?, ?)", id, "Name " + id);
+                }
+            }));
+        }
+        for (Future<Future<Integer>> row : rows) {
+            row.get();
+        }
+        producers.shutdown();
+        writes.close();
+
+        for (Future<Future<Integer>> row : rows) {
+            assertThat(row.get().get(0, TimeUnit.SECONDS), equalTo(1));
+        }
+        assertThat(count(), equalTo(100));
+    }
+
+    @Test
+    public void testFlushOnSize() throws Exception
+    {
+        WriteBehind writes = new WriteBehind(dbi, new WriteBehind.Configuration().withMaxBatchSize(2)
+                                                                                 .withFlushInterval(1, TimeUnit.HOURS));
+        try {
+            writes.enqueue("insert into something (id, name) values (:id, :name)", map(1, "Keith"));
+            Future<Integer> second = writes.enqueue("insert into something (id, name) values (:id, :name)", map(2, "Eric"));
+
+            assertThat(second.get(10, TimeUnit.SECONDS), equalTo(1));
+            assertThat(count(), equalTo(2));
+        }
+        finally {
+            writes.close();
+        }
+    }
+
+    @Test
+    public void testFlushOnInterval() throws Exception
+    {
+        WriteBehind writes = new WriteBehind(dbi, new WriteBehind.Configuration().withFlushInterval(10, TimeUnit.MILLISECONDS));
+        try {
+            Future<Integer> row = writes.enqueue("insert into something (id, name) values (?, ?)", 1, "Keith");
+
+            assertThat(row.get(10, TimeUnit.SECONDS), equalTo(1));
+        }
+        finally {
+            writes.close();
+        }
+    }
+
+    @Test
+    public void testInterleavedStatementsAreGrouped() throws Exception
+    {
+        handle.execute("create table audit (id int, action varchar(100))");
+        final List<String> batches = new ArrayList<String>();
+        dbi.setSQLLog(new FormattedLog()
+        {
+            @Override
+            protected boolean isEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            protected void log(String msg)
+            {
+                if (msg.startsWith("prepared batch")) {
+                    synchronized (batches) {
+                        batches.add(msg.replaceAll(" took \\d+ millis", ""));
+                    }
+                }
+            }
+        });
+        WriteBehind writes = new WriteBehind(dbi, new WriteBehind.Configuration().withFlushInterval(1, TimeUnit.HOURS));
+        try {
+            for (int i = 0; i < 3; i++) {
+                writes.enqueue("insert into something (id, name) values (?, ?)", i, "Name " + i);
+                writes.enqueue("insert into audit (id, action) values (?, ?)", i, "insert");
+            }
+            writes.flush();
+
+            assertThat(batches, equalTo(Arrays.asList(
+                "prepared batch with 3 parts:[insert into something (id, name) values (?, ?)]",
+                "prepared batch with 3 parts:[insert into audit (id, action) values (?, ?)]")));
+            assertThat(handle.createQuery("select name from something order by id").map(StringMapper.FIRST).list(),
+                       equalTo(Arrays.asList("Name 0", "Name 1", "Name 2")));
+        }
+        finally {
+            writes.close();
+        }
+    }
+
+    @Test
+    public void testErrorFailsItsRowsOnly() throws Exception
+    {
+        final boolean[] broken = {true};
+        DBI breaking = new DBI(url)
+        {
+            @Override
+            public Handle open()
+            {
+                if (broken[0]) {
+                    broken[0] = false;
+                    throw new AssertionError("broken");
+                }
+                return super.open();
+            }
+        };
+        WriteBehind writes = new WriteBehind(breaking, new WriteBehind.Configuration().withFlushInterval(1, TimeUnit.HOURS));
+        try {
+            Future<Integer> first = writes.enqueue("insert into something (id, name) values (?, ?)", 1, "Keith");
+            writes.flush();
+            try {
+                first.get();
+                fail("the batch should have failed");
+            }
+            catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(AssertionError.class));
+            }
+
+            Future<Integer> later = writes.enqueue("insert into something (id, name) values (?, ?)", 2, "Eric");
+            writes.flush();
+            assertThat(later.get(), equalTo(1));
+        }
+        finally {
+            writes.close();
+        }
+    }
+
+    @Test
+    public void testFailedRowFailsOnlyItself() throws Exception
+    {
+        handle.execute("insert into something (id, name) values (1, 'Keith')");
+        WriteBehind writes = new WriteBehind(dbi, new WriteBehind.Configuration().withFlushInterval(1, TimeUnit.HOURS));
+        try {
+            Future<Integer> fine = writes.enqueue("insert into something (id, name) values (?, ?)", 2, "Eric");
+            Future<Integer> duplicate = writes.enqueue("insert into something (id, name) values (?, ?)", 1, "Keith");
+            Future<Integer> other = writes.enqueue("update something set name = ? where id = ?", "Keith Jr", 1);
+            writes.flush();
+
+            try {
+                duplicate.get();
+                fail("the row should have failed");
+            }
+            catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(UnableToExecuteStatementException.class));
+            }
+            assertThat(fine.get(), equalTo(1));
+            assertThat(other.get(), equalTo(1));
+            assertThat(count(), equalTo(2));
+
+            Future<Integer> later = writes.enqueue("insert into something (id, name) values (?, ?)", 3, "Brian");
+            writes.flush();
+            assertThat(later.get(), equalTo(1));
+        }
+        finally {
+            writes.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws Exception
+    {
+        WriteBehind writes = new WriteBehind(dbi);
+        writes.close();
+        writes.enqueue("insert into something (id, name) values (?, ?)", 1, "Keith");
+    }
+
+    private int count()
+    {
+        return handle.createQuery("select count(*) from something").map(IntegerMapper.FIRST).first();
+    }
+
+    private static Map<String, Object> map(int id, String name)
+    {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("name", name);
+        return Collections.unmodifiableMap(row);
+    }
+}
@@ -19,17 +19,27 @@ import org.h2.jdbcx.JdbcDataSource;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.skife.jdbi.v2.BatchResult;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.Something;
+import org.skife.jdbi.v2.UpdateCounts;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 import org.skife.jdbi.v2.sqlobject.customizers.BatchChunkSize;
+import org.skife.jdbi.v2.sqlobject.customizers.MultiRowInserts;
 import org.skife.jdbi.v2.sqlobject.stringtemplate.UseStringTemplate3StatementLocator;
+import org.skife.jdbi.v2.util.IntegerMapper;
 import org.skife.jdbi.v2.util.StringMapper;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -152,6 +162,143 @@ public class TestBatching
         }
     }
 
+    @Test
+    public void testMultiRowInserts() throws Exception
+    {
+        UsesBatching b = handle.attach(UsesBatching.class);
+        List<Something> things = Arrays.asList(new Something(1, "Brian"),
+                                               new Something(2, "Henri"),
+                                               new Something(3, "Patrick"));
+        int[] counts = b.insertMultiRow(things);
+        assertThat(counts.length, equalTo(3));
+        for (int count : counts) {
+            assertThat(count, equalTo(1));
+        }
+        assertThat(b.size(), equalTo(3));
+    }
+
+    @Test
+    public void testParallelChunksKeepInputOrder() throws Exception
+    {
+        handle.execute("create table other (id int)");
+        UsesBatching b = handle.attach(UsesBatching.class);
+        b.insertBeans(Arrays.asList(new Something(1, "a"), new Something(2, "b"), new Something(3, "c"),
+                                    new Something(4, "d"), new Something(5, "e"), new Something(6, "f")));
+
+        List<Integer> ids = Arrays.asList(3, 1, 4, 1, 5, 6, 2, 6, 5, 3, 5);
+        int[] counts = dbi.onDemand(UsesBatching.class).copyUpTo(ids);
+
+        int[] expected = new int[ids.size()];
+        int total = 0;
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = ids.get(i);
+            total += ids.get(i);
+        }
+        assertThat(counts, equalTo(expected));
+        assertThat(handle.createQuery("select count(*) from other").map(IntegerMapper.FIRST).first(), equalTo(total));
+    }
+
+    @Test
+    public void testParallelChunksOnAttachedSqlObjectRunInSequence() throws Exception
+    {
+        handle.execute("create table other (id int)");
+        UsesBatching b = handle.attach(UsesBatching.class);
+        b.insertBeans(Arrays.asList(new Something(1, "a"), new Something(2, "b")));
+
+        assertThat(b.copyUpTo(Arrays.asList(2, 1, 2)), equalTo(new int[]{2, 1, 2}));
+    }
+
+    @Test
+    public void testCompactCounts() throws Exception
+    {
+        UsesBatching b = handle.attach(UsesBatching.class);
+        List<Something> things = new ArrayList<Something>();
+        for (int i = 0; i < 10; i++) {
+            things.add(new Something(i, "thing " + i));
+        }
+
+        UpdateCounts counts = b.insertForCounts(things);
+
+        assertThat(counts.size(), equalTo(10));
+        assertThat(counts.getTotal(), equalTo(10L));
+        assertThat(counts.get(9), equalTo(1));
+        assertThat(b.size(), equalTo(10));
+    }
+
+    @Test
+    public void testTotalCount() throws Exception
+    {
+        UsesBatching b = handle.attach(UsesBatching.class);
+        b.insertBeans(Arrays.asList(new Something(1, "a"), new Something(2, "b"), new Something(3, "c")));
+
+        long total = b.rename(Arrays.asList(1, 2, 3, 4, 5, 6), "renamed");
+
+        assertThat(total, equalTo(3L));
+    }
+
+    @Test
+    public void testNoResult() throws Exception
+    {
+        UsesBatching b = handle.attach(UsesBatching.class);
+
+        b.insertIgnoringCounts(Arrays.asList(new Something(1, "a"), new Something(2, "b"), new Something(3, "c"),
+                                             new Something(4, "d"), new Something(5, "e")));
+
+        assertThat(b.size(), equalTo(5));
+    }
+
+    @Test
+    public void testIsolateFailures() throws Exception
+    {
+        UsesBatching b = handle.attach(UsesBatching.class);
+        b.insertBeans(Arrays.asList(new Something(2, "two"), new Something(7, "seven")));
+
+        List<Something> things = new ArrayList<Something>();
+        for (int i = 0; i < 10; i++) {
+            things.add(new Something(i, "thing " + i));
+        }
+        BatchResult result = b.insertIsolatingFailures(things);
+
+        assertThat(result.getFailedRows(), equalTo(new int[]{2, 7}));
+        assertThat(result.getCounts().size(), equalTo(10));
+        assertThat(result.getCounts().getTotal(), equalTo(8L));
+        assertThat(b.size(), equalTo(10));
+    }
+
+    @Test
+    public void testParallelChunksRunOnTheDbiExecutor() throws Exception
+    {
+        final AtomicInteger submitted = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>())
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                submitted.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        try {
+            dbi.setExecutor(executor);
+            UsesBatching b = dbi.onDemand(UsesBatching.class);
+            b.insertParallel(Arrays.asList(new Something(1, "a"), new Something(2, "b"), new Something(3, "c")));
+
+            assertThat(b.size(), equalTo(3));
+            assertThat(submitted.get(), equalTo(3));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = UnableToExecuteStatementException.class)
+    public void testParallelChunkFailure() throws Exception
+    {
+        UsesBatching b = dbi.onDemand(UsesBatching.class);
+        b.insertParallel(Arrays.asList(new Something(1, "a"), new Something(2, "b"), new Something(3, "c"),
+                                       new Something(4, "d"), new Something(3, "duplicate")));
+    }
+
     @BatchChunkSize(4)
     @UseStringTemplate3StatementLocator
     public static interface UsesBatching
@@ -175,6 +322,30 @@ public class TestBatching
         @SqlBatch
         public int[] insertChunked(@BatchChunkSize int size, @BindBean("it") Iterable<Something> its);
 
+        @SqlBatch("insert into something (id, name) values (:id, :name)")
+        @MultiRowInserts(100)
+        public int[] insertMultiRow(@BindBean Iterable<Something> elements);
+
+        @SqlBatch(value = "insert into other (id) select id from something where not id > :id", parallelism = 3)
+        @BatchChunkSize(2)
+        public int[] copyUpTo(@Bind("id") List<Integer> ids);
+
+        @SqlBatch(value = "insert into something (id, name) values (:id, :name)", transactional = false, parallelism = 2)
+        @BatchChunkSize(1)
+        public int[] insertParallel(@BindBean Iterable<Something> elements);
+
+        @SqlBatch("insert into something (id, name) values (:id, :name)")
+        public UpdateCounts insertForCounts(@BindBean Iterable<Something> elements);
+
+        @SqlBatch("update something set name = :name where id = :id")
+        public long rename(@Bind("id") Iterable<Integer> ids, @Bind("name") String name);
+
+        @SqlBatch("insert into something (id, name) values (:id, :name)")
+        public void insertIgnoringCounts(@BindBean Iterable<Something> elements);
+
+        @SqlBatch("insert into something (id, name) values (:id, :name)")
+        public BatchResult insertIsolatingFailures(@BindBean Iterable<Something> elements);
+
         @SqlQuery("select count(*) from something")
         public int size();
     }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterArgumentFactory;
+import org.skife.jdbi.v2.tweak.Argument;
+import org.skife.jdbi.v2.tweak.ArgumentFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestDeclaredTypeBinding
+{
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        DBI dbi = new DBI("jdbc:h2:mem:" + UUID.randomUUID());
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100), flag boolean, code char(1))");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.execute("drop table something");
+        handle.close();
+    }
+
+    @Test
+    public void testPrimitivesAndStrings() throws Exception
+    {
+        Dao dao = handle.attach(Dao.class);
+        dao.insert(1, "Brian", true, 'b');
+
+        assertThat(dao.findName(1), equalTo("Brian"));
+        assertThat(dao.findFlag(1L), equalTo(true));
+        assertThat(dao.findCode((short) 1), equalTo("b"));
+    }
+
+    @Test
+    public void testNulls() throws Exception
+    {
+        Dao dao = handle.attach(Dao.class);
+        dao.insertNullable(2, null, null);
+
+        assertThat(dao.findName(2), nullValue());
+        assertThat(dao.countNullFlags(2L), equalTo(1));
+    }
+
+    @Test
+    public void testUndeclaredTypesStillResolveFromTheValue() throws Exception
+    {
+        Dao dao = handle.attach(Dao.class);
+        dao.insertObjects(3, "Keith");
+
+        assertThat(dao.findName(3), equalTo("Keith"));
+    }
+
+    @Test
+    public void testFactoriesAreConsultedAsForObjects() throws Exception
+    {
+        Shouty dao = handle.attach(Shouty.class);
+        dao.insert(4, "Eric");
+
+        assertThat(handle.attach(Dao.class).findName(4), equalTo("ERIC"));
+    }
+
+    public static interface Dao
+    {
+        @SqlUpdate("insert into something (id, name, flag, code) values (:id, :name, :flag, :code)")
+        void insert(@Bind("id") int id, @Bind("name") String name, @Bind("flag") boolean flag, @Bind("code") char code);
+
+        @SqlUpdate("insert into something (id, name, flag) values (:id, :name, :flag)")
+        void insertNullable(@Bind("id") Integer id, @Bind("name") String name, @Bind("flag") Boolean flag);
+
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        void insertObjects(@Bind("id") Object id, @Bind("name") Object name);
+
+        @SqlQuery("select name from something where id = :id")
+        String findName(@Bind("id") int id);
+
+        @SqlQuery("select flag from something where id = :id")
+        Boolean findFlag(@Bind("id") Long id);
+
+        @SqlQuery("select count(*) from something where id = :id and flag is null")
+        int countNullFlags(@Bind("id") long id);
+
+        @SqlQuery("select code from something where id = :id")
+        String findCode(@Bind("id") short id);
+    }
+
+    @RegisterArgumentFactory(UpperCaseAF.class)
+    public static interface Shouty
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        void insert(@Bind("id") int id, @Bind("name") String name);
+    }
+
+    public static class UpperCaseAF implements ArgumentFactory<String>
+    {
+        public boolean accepts(Class<?> expectedType, Object value, StatementContext ctx)
+        {
+            return expectedType == Object.class && value instanceof String;
+        }
+
+        public Argument build(Class<?> expectedType, final String value, StatementContext ctx)
+        {
+            return new Argument()
+            {
+                public void apply(int position, PreparedStatement statement, StatementContext ctx) throws SQLException
+                {
+                    statement.setString(position, value.toUpperCase());
+                }
+            };
+        }
+    }
+}
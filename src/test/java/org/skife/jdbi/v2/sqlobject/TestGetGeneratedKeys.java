@@ -24,6 +24,8 @@ import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.sqlobject.mixins.CloseMe;
 import org.skife.jdbi.v2.tweak.HandleCallback;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -63,6 +65,14 @@ public class TestGetGeneratedKeys
         @GetGeneratedKeys
         public long insert(@Bind String name);
 
+        @SqlUpdate("insert into something (name) values (:it)")
+        @GetGeneratedKeys
+        public List<Long> insertForList(@Bind String name);
+
+        @SqlBatch("insert into something (name) values (:it)")
+        @GetGeneratedKeys
+        public List<Long> insertAll(@Bind List<String> names);
+
         @SqlQuery("select name from something where id = :it")
         public String findNameById(@Bind long id);
     }
@@ -81,4 +91,32 @@ public class TestGetGeneratedKeys
         dao.close();
     }
 
+    @Test
+    public void testList() throws Exception
+    {
+        DAO dao = dbi.open(DAO.class);
+
+        List<Long> ids = dao.insertForList("Brian");
+
+        assertThat(ids.size(), equalTo(1));
+        assertThat(dao.findNameById(ids.get(0)), equalTo("Brian"));
+
+        dao.close();
+    }
+
+    @Test
+    public void testBatch() throws Exception
+    {
+        DAO dao = dbi.open(DAO.class);
+
+        // h2 reports only the key of the last row of a batch, so the rows are inserted one at a time
+        List<Long> ids = dao.insertAll(Arrays.asList("Brian", "Keith", "Eric"));
+
+        assertThat(ids.size(), equalTo(3));
+        assertThat(dao.findNameById(ids.get(0)), equalTo("Brian"));
+        assertThat(dao.findNameById(ids.get(1)), equalTo("Keith"));
+        assertThat(dao.findNameById(ids.get(2)), equalTo("Eric"));
+
+        dao.close();
+    }
 }
@@ -16,12 +16,14 @@
 package org.skife.jdbi.v2.sqlobject;
 
 import org.h2.jdbcx.JdbcDataSource;
+import org.skife.jdbi.v2.AdmissionControl;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.Something;
 import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
 import org.skife.jdbi.v2.sqlobject.mixins.GetHandle;
 import org.skife.jdbi.v2.sqlobject.mixins.Transactional;
+import org.skife.jdbi.v2.util.IntegerMapper;
 import org.skife.jdbi.v2.util.StringMapper;
 
 import java.util.Iterator;
@@ -65,6 +67,19 @@ public class TestOnDemandSqlObject extends TestCase
         assertEquals("Bill", bill);
     }
 
+    public void testReleasingUnheldNameKeepsHandle() throws Exception
+    {
+        OnDemandHandleDing ding = new OnDemandHandleDing(dbi, AdmissionControl.Priority.NORMAL);
+        Handle h = ding.getHandle();
+        ding.release("never-retained");
+
+        assertSame(h, ding.getHandle());
+        assertEquals(Integer.valueOf(1), h.createQuery("select 1").map(IntegerMapper.FIRST).first());
+
+        ding.retain("held");
+        ding.release("held");
+    }
+
     public void testTransactionBindsTheHandle() throws Exception
     {
         TransactionStuff txl = SqlObjectBuilder.onDemand(dbi, TransactionStuff.class);
@@ -108,6 +123,13 @@ public class TestOnDemandSqlObject extends TestCase
 
     }
 
+    public void testNestedCallsOfTheSameMethodKeepTheHandle() throws Exception
+    {
+        Recursive r = SqlObjectBuilder.onDemand(dbi, Recursive.class);
+
+        assertTrue(r.sameHandleThroughout(2));
+    }
+
     public void testSqlFromExternalFileWorks() throws Exception
     {
         Spiffy spiffy = SqlObjectBuilder.onDemand(dbi, Spiffy.class);
@@ -152,4 +174,14 @@ public class TestOnDemandSqlObject extends TestCase
         @Mapper(SomethingMapper.class)
         Iterator<Something> findAll();
     }
+
+    public static abstract class Recursive implements GetHandle
+    {
+        public boolean sameHandleThroughout(int depth)
+        {
+            Handle before = getHandle();
+            boolean nested = depth == 0 || sameHandleThroughout(depth - 1);
+            return nested && before == getHandle();
+        }
+    }
 }
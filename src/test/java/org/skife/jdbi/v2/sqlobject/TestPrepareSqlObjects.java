@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Something;
+import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class TestPrepareSqlObjects
+{
+    private DBI    dbi;
+    private Handle handle;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        dbi = new DBI(ds);
+        handle = dbi.open();
+
+        handle.execute("create table something (id int primary key, name varchar(100))");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.execute("drop table something");
+        handle.close();
+    }
+
+    @Test
+    public void testPreparedTypeIsUsable() throws Exception
+    {
+        SqlObjectBuilder.prepare(Dao.class);
+
+        Dao dao = dbi.onDemand(Dao.class);
+        dao.insert(1, "Brian");
+        assertThat(dao.findById(1).getName(), equalTo("Brian"));
+    }
+
+    @Test
+    public void testPrepareInParallel() throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            SqlObjectBuilder.prepare(pool, Dao.class, OtherDao.class);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        handle.attach(OtherDao.class).insert(2, "Keith");
+        assertThat(handle.attach(Dao.class).findById(2).getName(), equalTo("Keith"));
+    }
+
+    @Test
+    public void testMisconfiguredTypeFailsFast() throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            SqlObjectBuilder.prepare(pool, Dao.class, Broken.class);
+            fail("should have raised an exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    public static interface Dao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        public void insert(@Bind("id") int id, @Bind("name") String name);
+
+        @SqlQuery("select id, name from something where id = :id")
+        @Mapper(SomethingMapper.class)
+        public Something findById(@Bind("id") int id);
+    }
+
+    public static interface OtherDao
+    {
+        @SqlUpdate("insert into something (id, name) values (:id, :name)")
+        public void insert(@Bind("id") int id, @Bind("name") String name);
+    }
+
+    public static interface Broken
+    {
+        @SqlQuery("select name from something")
+        public void nothingToReturn();
+    }
+}
@@ -114,6 +114,19 @@ public class TestStringTemplate3Locator
         badass.insert("something", new Something(2, "Fred"));
     }
 
+    @Test
+    public void testDefinesDoNotLeakBetweenCalls() throws Exception
+    {
+        handle.execute("create table something_else (id int primary key, name varchar(100))");
+        HoneyBadger badass = handle.attach(HoneyBadger.class);
+
+        badass.insert("something", new Something(1, "Ted"));
+        badass.insert("something_else", new Something(1, "Fred"));
+
+        assertThat(badass.findById("something", 1L), equalTo(new Something(1, "Ted")));
+        assertThat(badass.findById("something_else", 1L), equalTo(new Something(1, "Fred")));
+    }
+
     @UseStringTemplate3StatementLocator
     @RegisterMapper(SomethingMapper.class)
     static interface HoneyBadger
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2004 - 2013 Brian McCallister
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.skife.jdbi.v2.sqlobject.processor;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Something;
+import org.skife.jdbi.v2.sqlobject.GeneratedSqlObject;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSqlObjectProcessor
+{
+    private static final String DAO = "package com.example;\n" +
+                                      "import java.util.List;\n" +
+                                      "import org.skife.jdbi.v2.Something;\n" +
+                                      "import org.skife.jdbi.v2.sqlobject.*;\n" +
+                                      "import org.skife.jdbi.v2.sqlobject.customizers.Mapper;\n" +
+                                      "public interface Dao {\n" +
+                                      "  @SqlUpdate(\"insert into something (id, name) values (:id, :name)\")\n" +
+                                      "  int insert(@Bind(\"id\") int id, @Bind(\"name\") String name);\n" +
+                                      "  @SqlBatch(\"insert into something (id, name) values (:id, :name)\")\n" +
+                                      "  int[] insertAll(@Bind(\"id\") List<Integer> ids, @Bind(\"name\") String name);\n" +
+                                      "  @SqlQuery(\"select name from something where id = :id\")\n" +
+                                      "  String findName(@ShardKey @Bind(\"id\") long id);\n" +
+                                      "  @SqlQuery(\"select id, name from something order by id\")\n" +
+                                      "  @Mapper(org.skife.jdbi.v2.sqlobject.SomethingMapper.class)\n" +
+                                      "  List<Something> findAll();\n" +
+                                      "  @SqlQuery(\"select count(*) from something\")\n" +
+                                      "  int count();\n" +
+                                      "}\n";
+
+    private static final String CUSTOMIZED = "package com.example;\n" +
+                                             "import org.skife.jdbi.v2.sqlobject.*;\n" +
+                                             "import org.skife.jdbi.v2.sqlobject.customizers.FetchSize;\n" +
+                                             "public interface Customized {\n" +
+                                             "  @SqlQuery(\"select name from something where id = :id\")\n" +
+                                             "  @FetchSize(10)\n" +
+                                             "  String findName(@Bind(\"id\") long id);\n" +
+                                             "}\n";
+
+    private DBI         dbi;
+    private Handle      handle;
+    private ClassLoader loader;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        dbi = new DBI(ds);
+        handle = dbi.open();
+        handle.execute("create table something (id int primary key, name varchar(100))");
+
+        loader = compile(DAO, CUSTOMIZED);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        handle.execute("drop table something");
+        handle.close();
+    }
+
+    @Test
+    public void testGeneratedImplementationIsUsed() throws Exception
+    {
+        Class<?> dao_type = loader.loadClass("com.example.Dao");
+        Object dao = dbi.onDemand(dao_type);
+
+        assertThat(dao, instanceOf(GeneratedSqlObject.class));
+        assertThat(dao, instanceOf(loader.loadClass("com.example.Dao" + GeneratedSqlObject.SUFFIX)));
+
+        assertThat((Integer) call(dao, "insert", 1, "Brian"), equalTo(1));
+        assertThat((int[]) call(dao, "insertAll", Arrays.asList(2, 3), "Keith"), equalTo(new int[]{1, 1}));
+        assertThat((String) call(dao, "findName", 1L), equalTo("Brian"));
+        assertThat((Integer) call(dao, "count"), equalTo(3));
+
+        @SuppressWarnings("unchecked")
+        List<Something> all = (List<Something>) call(dao, "findAll");
+        assertThat(all, equalTo(Arrays.asList(new Something(1, "Brian"),
+                                              new Something(2, "Keith"),
+                                              new Something(3, "Keith"))));
+    }
+
+    @Test
+    public void testAttachedGeneratedImplementationCanBeClosed() throws Exception
+    {
+        Handle h = dbi.open();
+        Object dao = h.attach(loader.loadClass("com.example.Dao"));
+        call(dao, "insert", 1, "Brian");
+        dbi.close(dao);
+
+        try {
+            h.createQuery("select 1").list();
+            fail("handle should be closed");
+        }
+        catch (Exception e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRuntimeOnlyFeaturesFallBackToProxy() throws Exception
+    {
+        try {
+            loader.loadClass("com.example.Customized" + GeneratedSqlObject.SUFFIX);
+            fail("should not have generated an implementation");
+        }
+        catch (ClassNotFoundException e) {
+            // expected
+        }
+
+        handle.insert("insert into something (id, name) values (1, 'Brian')");
+        Object customized = dbi.onDemand(loader.loadClass("com.example.Customized"));
+        assertTrue(!(customized instanceof GeneratedSqlObject));
+        assertThat((String) call(customized, "findName", 1L), equalTo("Brian"));
+    }
+
+    private static Object call(Object target, String name, Object... args) throws Exception
+    {
+        for (Method m : target.getClass().getMethods()) {
+            if (m.getName().equals(name) && m.getParameterTypes().length == args.length && !m.isBridge()) {
+                return m.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private static ClassLoader compile(String... sources) throws Exception
+    {
+        File out = new File(System.getProperty("java.io.tmpdir"), "jdbi-apt-" + UUID.randomUUID());
+        assertTrue(out.mkdirs());
+
+        List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+        for (final String source : sources) {
+            final String name = source.substring(source.indexOf("interface ") + 10, source.indexOf(" {"));
+            units.add(new SimpleJavaFileObject(URI.create("string:///com/example/" + name + ".java"), JavaFileObject.Kind.SOURCE)
+            {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors)
+                {
+                    return source;
+                }
+            });
+        }
+
+        // surefire may hide the real class path behind a manifest jar, so point at the class directories directly
+        String classpath = location(SqlQuery.class) + File.pathSeparator + location(Something.class);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+        files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(out));
+        files.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(out));
+        List<String> options = Arrays.asList("-classpath", classpath,
+                                             "-processor", SqlObjectProcessor.class.getName());
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        assertTrue(String.valueOf(diagnostics.getDiagnostics()),
+                   compiler.getTask(null, files, diagnostics, options, null, units).call());
+        files.close();
+
+        return new URLClassLoader(new URL[]{out.toURI().toURL()}, TestSqlObjectProcessor.class.getClassLoader());
+    }
+
+    private static String location(Class<?> type) throws Exception
+    {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+}
@@ -16,6 +16,7 @@
 package org.skife.jdbi.v2.tweak.transactions;
 
 import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
@@ -30,10 +31,12 @@ import org.skife.jdbi.v2.tweak.TransactionHandler;
 
 public class TestSerializableTransactionRunner extends DBITestCase
 {
+    private SerializableTransactionRunner runner = new SerializableTransactionRunner();
+
     @Override
     protected TransactionHandler getTransactionHandler()
     {
-        return new SerializableTransactionRunner();
+        return runner;
     }
 
     @Test
@@ -78,4 +81,109 @@ public class TestSerializableTransactionRunner extends DBITestCase
 
         Assert.assertEquals(0, tries.get());
     }
+
+    @Test
+    public void testRetriesDeadlocks() throws Exception
+    {
+        Handle handle = openHandle();
+
+        Assert.assertEquals("done", handle.inTransaction(new FailingCallback(2, "40P01")));
+
+        Assert.assertEquals(1, runner.getTransactionCount());
+        Assert.assertEquals(2, runner.getRetryCount());
+        Assert.assertEquals(0, runner.getFailureCount());
+        Assert.assertArrayEquals(new long[]{0, 0, 1, 0, 0}, runner.getAttemptHistogram());
+    }
+
+    @Test
+    public void testDoesNotRetryOtherStates() throws Exception
+    {
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration()
+                                                       .withRetrySqlStates("40001"),
+                                                   new LocalTransactionHandler());
+        Handle handle = openHandle();
+        FailingCallback callback = new FailingCallback(1, "40P01");
+
+        try {
+            handle.inTransaction(callback);
+            Assert.fail("expected the transaction to fail");
+        }
+        catch (TransactionFailedException e) {
+            Assert.assertEquals("40P01", ((SQLException) e.getCause()).getSQLState());
+        }
+        Assert.assertEquals(1, callback.calls);
+        Assert.assertEquals(0, runner.getRetryCount());
+    }
+
+    @Test
+    public void testBacksOff() throws Exception
+    {
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration()
+                                                       .withBackoff(20, 20, TimeUnit.MILLISECONDS),
+                                                   new LocalTransactionHandler());
+        Handle handle = openHandle();
+
+        long start = System.nanoTime();
+        handle.inTransaction(new FailingCallback(4, "40001"));
+        long elapsed = System.nanoTime() - start;
+
+        Assert.assertEquals(4, runner.getRetryCount());
+        long backoff = runner.getBackoffTime(TimeUnit.NANOSECONDS);
+        Assert.assertTrue(backoff > 0);
+        Assert.assertTrue(backoff <= TimeUnit.MILLISECONDS.toNanos(80));
+        Assert.assertTrue(elapsed >= backoff);
+        Assert.assertArrayEquals(new long[]{0, 0, 0, 0, 1}, runner.getAttemptHistogram());
+    }
+
+    @Test
+    public void testStopsAtTimeBudget() throws Exception
+    {
+        runner = new SerializableTransactionRunner(new SerializableTransactionRunner.Configuration()
+                                                       .withMaxRetries(1000)
+                                                       .withBackoff(0, 0, TimeUnit.MILLISECONDS)
+                                                       .withTimeBudget(100, TimeUnit.MILLISECONDS),
+                                                   new LocalTransactionHandler());
+        Handle handle = openHandle();
+        FailingCallback callback = new FailingCallback(Integer.MAX_VALUE, "40001")
+        {
+            @Override
+            public String inTransaction(Handle conn, TransactionStatus status) throws Exception
+            {
+                Thread.sleep(30);
+                return super.inTransaction(conn, status);
+            }
+        };
+
+        try {
+            handle.inTransaction(callback);
+            Assert.fail("expected the transaction to fail");
+        }
+        catch (TransactionFailedException e) {
+            Assert.assertEquals("40001", ((SQLException) e.getCause()).getSQLState());
+        }
+        // each call takes 30ms of the 100ms budget, so a slow machine stops sooner, never later
+        Assert.assertTrue(callback.calls >= 1 && callback.calls < 100);
+        Assert.assertEquals(1, runner.getFailureCount());
+    }
+
+    private static class FailingCallback implements TransactionCallback<String>
+    {
+        private final int    failures;
+        private final String sqlState;
+        private int          calls = 0;
+
+        FailingCallback(int failures, String sqlState)
+        {
+            this.failures = failures;
+            this.sqlState = sqlState;
+        }
+
+        public String inTransaction(Handle conn, TransactionStatus status) throws Exception
+        {
+            if (calls++ < failures) {
+                throw new SQLException("conflict", sqlState);
+            }
+            return "done";
+        }
+    }
 }